@@ -15,6 +15,10 @@ package org.monetdb.jdbc;
 import java.io.*;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.sql.CallableStatement;
 import java.sql.Connection;
@@ -31,7 +35,17 @@ import java.sql.Savepoint;
 import java.sql.Statement;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 
 import org.monetdb.mcl.io.BufferedMCLReader;
 import org.monetdb.mcl.io.BufferedMCLWriter;
@@ -40,9 +54,12 @@ import org.monetdb.mcl.net.ClientInfo;
 import org.monetdb.mcl.net.MapiSocket;
 import org.monetdb.mcl.net.Target;
 import org.monetdb.mcl.net.ValidationError;
+import org.monetdb.mcl.parser.BinaryBlock;
+import org.monetdb.mcl.parser.BinaryBlockParser;
 import org.monetdb.mcl.parser.HeaderLineParser;
 import org.monetdb.mcl.parser.MCLParseException;
 import org.monetdb.mcl.parser.StartOfHeaderParser;
+import org.monetdb.mcl.parser.TupleLineParser;
 
 /**
  *<pre>
@@ -93,6 +110,9 @@ public class MonetConnection
 
 	/** Whether this Connection is in autocommit mode */
 	private boolean autoCommit = true;
+	/** The auto commit mode and time zone offset (in seconds) set up when connecting, restored by resetSession() */
+	private boolean initialAutoCommit = true;
+	private int initialTimezoneOffset;
 
 	/** The stack of warnings for this Connection object */
 	private SQLWarning warnings;
@@ -135,6 +155,38 @@ public class MonetConnection
 	/** The language which is used */
 	private final int lang;
 
+	/** Whether result set blocks may be fetched in binary form, see the binary= connection property */
+	private boolean binaryResults;
+
+	/** The number of result set blocks which may be requested ahead, see the prefetch_blocks= connection property */
+	private int prefetchBlocks;
+	/** The percentage of a block to be read before the next blocks are requested */
+	private int prefetchThreshold;
+	/** The maximum number of blocks a scrollable result set keeps in memory, 0 means no limit */
+	private int maxCachedBlocks;
+	/** Whether blocks evicted because of maxCachedBlocks are kept in a temporary file */
+	private boolean spillBlocks;
+	/** isValid() does not contact the server if it received data in the last this many milliseconds */
+	private int validationWindow;
+	/** The number of executeBatch() chunks a Statement sends before reading the replies to the first one, see the batch_pipeline= connection property */
+	int batchPipeline;
+	/** The maximum number of rows of a prepared INSERT batch sent as one multi-row INSERT, 0 for none, see the batch_insert_rows= connection property */
+	int batchInsertRows;
+	/** The maximum number of entries in preparedCache */
+	private int preparedCacheSize;
+	/** Server side prepared statements kept for reuse, by SQL text, least
+	 *  recently used first.  Null when caching is disabled, guarded by itself. */
+	private LinkedHashMap<String, MonetPreparedStatement.Prepared> preparedCache;
+	/** Set when the schema may have changed, so the statements in preparedCache may be bound to the wrong objects */
+	private volatile boolean preparedCacheStale;
+	/** Finds a SET SCHEMA statement in a query, to detect a schema change */
+	private static final Pattern SET_SCHEMA = Pattern.compile("\\bset\\s+schema\\b", Pattern.CASE_INSENSITIVE);
+	/** The commands, such as result set blocks requested ahead and pipelined
+	 *  queries, whose replies have not been read yet, oldest first.  Guarded by server. */
+	private final ArrayDeque<PendingReply> pendingReplies = new ArrayDeque<PendingReply>();
+	/** The maximum number of pipelined queries in flight, see sendPipelined() */
+	private static final int MAX_PENDING_REPLIES = 16;
+
 	/** The last set query timeout on the server as used by Statement, PreparedStatement and CallableStatement */
 	protected int lastSetQueryTimeout = 0;	// 0 means no timeout, which is the default on the server
 
@@ -252,6 +304,21 @@ public class MonetConnection
 
 		// Now take care of any options not handled during the handshake
 		curReplySize = defaultFetchSize;
+		binaryResults = lang == LANG_SQL && server.getBinaryLevel() > 0;
+		prefetchBlocks = validated.getPrefetchBlocks();
+		if (validated.getFetchBudget() > 0)
+			fetchSizePolicy = new AdaptiveFetchSizePolicy(validated.getFetchBudget());
+		prefetchThreshold = validated.getPrefetchThreshold();
+		maxCachedBlocks = validated.getMaxCachedBlocks();
+		spillBlocks = validated.isSpillBlocks();
+		validationWindow = validated.getValidationWindow();
+		batchPipeline = validated.getBatchPipeline();
+		batchInsertRows = validated.getBatchInsertRows();
+		preparedCacheSize = validated.getPreparedCacheSize();
+		if (preparedCacheSize > 0)
+			preparedCache = new LinkedHashMap<String, MonetPreparedStatement.Prepared>(16, 0.75f, true);
+		initialAutoCommit = validated.isAutocommit();
+		initialTimezoneOffset = 60 * validated.getTimezone();
 		if (lang == LANG_SQL) {
 			if (autoCommit != validated.isAutocommit()) {
 				setAutoCommit(validated.isAutocommit());
@@ -260,7 +327,7 @@ public class MonetConnection
 				sendControlCommand("sizeheader 1");
 			}
 			if (!callback.timeZoneSet) {
-				setTimezone(60 * validated.getTimezone());
+				setTimezone(initialTimezoneOffset);
 			}
 		}
 
@@ -318,7 +385,58 @@ public class MonetConnection
 			server.close();
 			// report ourselves as closed
 			closed = true;
+			// nobody is going to read the outstanding replies anymore
+			final SQLException ex = new SQLException("Connection is closed", "M1M20");
+			for (PendingReply pr : pendingReplies)
+				pr.fail(ex);
+			pendingReplies.clear();
+			if (asyncReader != null) {
+				asyncReader.shutdown();
+				asyncReader = null;
+			}
+		}
+	}
+
+	/**
+	 * Restores the session state of this Connection to what it was right
+	 * after connecting, so it can be handed out again by a connection pool.
+	 * Open statements are closed and a pending transaction is rolled
+	 * back.  The schema and time zone can only have been changed through
+	 * statements, so they are only restored when statements have been
+	 * used, together in a single round trip.  The reply_size needs no
+	 * reset, as it is sent along with the next query whenever it differs
+	 * from the fetch size of the executing statement.  The prepared
+	 * statement cache is kept, so the next user can reuse it.
+	 *
+	 * @param schema the schema to return to, or null to leave it alone
+	 * @param statementsUsed whether statements may have changed the session
+	 * @throws SQLException if a database access error occurs or this
+	 *         Connection is closed
+	 */
+	void resetSession(final String schema, final boolean statementsUsed) throws SQLException {
+		checkNotClosed();
+		final ArrayList<Statement> open;
+		synchronized (server) {
+			open = new ArrayList<Statement>(statements.keySet());
+			statements.clear();
+		}
+		for (Statement st : open)
+			st.close();
+		if (!autoCommit)
+			rollback();
+		setAutoCommit(initialAutoCommit);
+		if (statementsUsed && lang == LANG_SQL) {
+			final StringBuilder reset = new StringBuilder(128);
+			if (schema != null)
+				reset.append("SET SCHEMA \"").append(schema.replaceAll("\"", "\"\"")).append("\";\n");
+			reset.append(timezoneStatement(initialTimezoneOffset));
+			sendIndependentCommand(reset.toString());
+			// cached statements may refer to objects in the schema used by the handle
+			clearPreparedCache();
 		}
+		uploadHandler = null;
+		downloadHandler = null;
+		clearWarnings();
 	}
 
 	/**
@@ -1211,8 +1329,21 @@ public class MonetConnection
 	 * some other mechanism that positively verifies the connection is
 	 * still valid when this method is called.
 	 *
-	 * The query submitted by the driver to validate the connection
-	 * shall be executed in the context of the current transaction.
+	 * No statement is created and the query timeout is left alone.
+	 * In SQL mode the current reply size is sent to the server as a
+	 * control command, which the server answers without touching the
+	 * current transaction.  The timeout is applied as a temporary
+	 * network timeout on the socket, only while the ping is sent and
+	 * its reply is read.  Replies to pipelined queries or prefetched
+	 * blocks which are still outstanding are read first, under the same
+	 * timeout.  If the server does not reply in time, the connection is
+	 * closed, as the reply it was reading can no longer be skipped
+	 * reliably, and false is returned.
+	 *
+	 * If the validation_window= connection property is set and data
+	 * was received from the server less than that many milliseconds
+	 * ago, the connection is assumed to be valid without contacting
+	 * the server.
 	 *
 	 * @param timeout The time in seconds to wait for the database
 	 *        operation used to validate the connection to complete. If
@@ -1229,49 +1360,52 @@ public class MonetConnection
 			throw new SQLException("timeout is less than 0", "M1M05");
 		if (closed)
 			return false;
+		if (validationWindow > 0 && server.getMillisSinceLastReceived() < validationWindow)
+			return true;
 
-		// ping monetdb server using query: select 1;
-		Statement stmt = null;
-		ResultSet rs = null;
-		boolean isValid = false;
-		final int original_timeout = this.lastSetQueryTimeout;
-		try {
-			stmt = createStatement();
-			if (stmt != null) {
-				if (timeout > 0 && original_timeout != timeout) {
-					// we need to change the requested timeout for this test query
-					stmt.setQueryTimeout(timeout);
-				}
-				rs = stmt.executeQuery("SELECT 1");
-				if (rs != null && rs.next()) {
-					isValid = true;
+		synchronized (server) {
+			if (closed)
+				return false;
+
+			int originalSoTimeout = -1;
+			try {
+				if (timeout > 0) {
+					final int millis = (int) Math.min(timeout * 1000L, Integer.MAX_VALUE);
+					final int current = server.getSoTimeout();
+					if (current == 0 || current > millis) {
+						server.setSoTimeout(millis);
+						originalSoTimeout = current;
+					}
 				}
-			}
-		} catch (SQLException se) {
-			final String msg = se.getMessage();
-			// System.out.println(se.getSQLState() + " Con.isValid(): " + msg);
-			if (msg != null && msg.equalsIgnoreCase("Current transaction is aborted (please ROLLBACK)")) {
-				// Must use equalsIgnoreCase() here because up to Jul2017 release 'Current' was 'current' so with lowercase c.
-				// It changed to 'Current' after Jul2017 release. We need to support all server versions.
-				// SQLState = 25005
-				isValid = true;
-			}
-			/* ignore stmt errors/exceptions, we are only testing if the connection is still alive and usable */
-		} finally {
-			closeResultsetStatement(rs, stmt);
-			/* when changed, reset the original server timeout value on the server */
-			if (timeout > 0 && original_timeout != this.lastSetQueryTimeout) {
-				this.lastSetQueryTimeout = original_timeout;
-				try {
-					/* we have to set in the server explicitly, because the test 'queryTimeout != connection.lastSetQueryTimeout'
-					   on MonetStatement.internalExecute(sql) won't pass and the server won't be set back */
-					setQueryTimeout(original_timeout);
-				} catch (SQLException se) {
-					/* ignore stmt errors/exceptions, we are only testing if the connection is still alive and usable */
+				// the outstanding replies must be read before the ping's reply
+				readPendingReplies();
+				in.discardRemainder();
+				// ping the server with a command which does not change anything
+				if (lang == LANG_SQL)
+					out.writeLine(commandTempl[0] + "reply_size " + curReplySize + commandTempl[1]);
+				else
+					out.writeLine(queryTempl[0] + queryTempl[1]);
+				final String error = in.discardRemainder();
+				return error == null;
+			} catch (SocketTimeoutException e) {
+				// part of a reply may have been consumed already, so the
+				// connection can no longer be used
+				close(); // JDBC 4.1 semantics, abort()
+				return false;
+			} catch (IOException e) {
+				/* we are only testing if the connection is still alive and usable */
+				closed = true;
+				return false;
+			} finally {
+				if (originalSoTimeout >= 0) {
+					try {
+						server.setSoTimeout(originalSoTimeout);
+					} catch (SocketException e) {
+						/* ignore, the next operation on the socket will report it */
+					}
 				}
 			}
 		}
-		return isValid;
 	}
 
 	/**
@@ -1492,6 +1626,8 @@ public class MonetConnection
 		} finally {
 			closeResultsetStatement(null, st);
 		}
+		// cached statements may refer to objects in the previous schema
+		clearPreparedCache();
 	}
 
 	/**
@@ -1637,6 +1773,218 @@ public class MonetConnection
 	}
 
 
+	/** Decides how far the fetch size of uninterrupted forward-only scans grows */
+	private FetchSizePolicy fetchSizePolicy = TENFOLD_FETCH_SIZE_POLICY;
+
+	/**
+	 * Registers a {@link FetchSizePolicy} which decides how many rows to
+	 * fetch per block when a forward-only result set, whose fetch size was
+	 * not set explicitly, is read without interruption.
+	 * By default the fetch size grows once by a factor 10, or up to the
+	 * number of bytes given by the fetch_budget connection property.
+	 *
+	 * @param policy the policy to use, or null to restore the default
+	 */
+	public void setFetchSizePolicy(final FetchSizePolicy policy) {
+		fetchSizePolicy = policy != null ? policy : TENFOLD_FETCH_SIZE_POLICY;
+	}
+
+	/**
+	 * Get the currently used {@link FetchSizePolicy}
+	 *
+	 * @return the currently used FetchSizePolicy
+	 */
+	public FetchSizePolicy getFetchSizePolicy() {
+		return fetchSizePolicy;
+	}
+
+	/**
+	 * Sends the given SQL query to the server without waiting for its
+	 * reply, such that several queries can be in flight on this
+	 * Connection at the same time.  This hides the network latency of
+	 * workloads which send many small queries that cannot be combined
+	 * into a single batch.
+	 *
+	 * The server executes the queries in the order in which they were
+	 * sent, and their replies are read in that order too: requesting the
+	 * result of the returned Future also reads the replies to all queries
+	 * sent before it.  Any other use of this Connection first reads all
+	 * outstanding replies.  At most 16 replies are outstanding: when
+	 * that many are, the oldest one is read before the query is sent.
+	 * This bounds the number of unread replies, not the number of bytes
+	 * in flight.  The server does not read the next query while it is
+	 * blocked sending a reply, so sending a query text larger than the
+	 * socket buffers while an unread reply is larger than the socket
+	 * buffers blocks both sides.  Queries with large texts or large
+	 * first result blocks should therefore not be pipelined.
+	 *
+	 * Each query gets its own Statement, which must be closed by the
+	 * caller.  The Future gives this Statement once the reply has been
+	 * read, positioned at its first result as if execute() was called,
+	 * or fails with the SQLException reported by the server as cause.
+	 * Queries which transfer files, such as COPY ... ON CLIENT, must not
+	 * be pipelined as the server expects the file contents directly
+	 * after such a query.
+	 *
+	 * @param sql the SQL query to send
+	 * @return a Future giving the Statement holding the results of the query
+	 * @throws SQLException if this Connection is closed or an IO error occurs
+	 */
+	public Future<Statement> executePipelined(final String sql) throws SQLException {
+		checkNotClosed();
+		final MonetStatement stmt = (MonetStatement) createStatement();
+		try {
+			final ResponseList list = stmt.newResponseList(sql);
+			final PipelinedQuery pq = new PipelinedQuery(stmt, list);
+			list.sendPipelined(sql, pq);
+			return pq;
+		} catch (SQLException e) {
+			stmt.close();
+			throw e;
+		}
+	}
+
+	/** The thread reading the replies to queries executed asynchronously, created when first needed.  Guarded by server. */
+	private ExecutorService asyncReader;
+
+	/**
+	 * Executes the given SQL query asynchronously.  The query is sent
+	 * right away, as by {@link #executePipelined(String)}, but its reply
+	 * is read by a reader thread dedicated to this Connection, such that
+	 * the calling thread does not wait for the reply to this query.
+	 * Sending it does wait for the lock on this Connection, which is
+	 * held while another thread, such as the reader thread, reads a
+	 * reply.  When the maximum number of outstanding replies of
+	 * executePipelined() is reached, the calling thread also reads the
+	 * oldest reply itself before the query is sent.
+	 *
+	 * The returned CompletableFuture is completed by the reader thread
+	 * with the Statement holding the results of the query, positioned at
+	 * its first result as if execute() was called, or exceptionally with
+	 * the SQLException reported by the server.  The Statement must be
+	 * closed by the caller.  Dependent actions which are not given an
+	 * Executor of their own also run in the reader thread, and delay
+	 * reading the replies to later queries while they run.
+	 *
+	 * @param sql the SQL query to execute
+	 * @return a CompletableFuture giving the Statement holding the results of the query
+	 */
+	public CompletableFuture<Statement> executeAsync(final String sql) {
+		return submitAsync(sql, new AsyncResult<Statement>() {
+			@Override
+			public Statement from(final Statement st) {
+				return st;
+			}
+		});
+	}
+
+	/**
+	 * Executes the given SQL query asynchronously, which returns a single
+	 * ResultSet object.  See {@link #executeAsync(String)} for how the
+	 * query is executed.  The Statement producing the ResultSet is closed
+	 * when the ResultSet is closed.
+	 *
+	 * @param sql the SQL query to execute, typically a SELECT statement
+	 * @return a CompletableFuture giving the ResultSet produced by the query
+	 */
+	public CompletableFuture<ResultSet> executeQueryAsync(final String sql) {
+		return submitAsync(sql, new AsyncResult<ResultSet>() {
+			@Override
+			public ResultSet from(final Statement st) throws SQLException {
+				final ResultSet rs = st.getResultSet();
+				if (rs == null)
+					throw new SQLException("Query did not produce a result set", "M1M19");
+				st.closeOnCompletion();
+				return rs;
+			}
+		});
+	}
+
+	/**
+	 * Executes the given SQL statement asynchronously, which may be an
+	 * INSERT, UPDATE, DELETE or an SQL statement that returns nothing.
+	 * See {@link #executeAsync(String)} for how the statement is executed.
+	 *
+	 * @param sql the SQL statement to execute
+	 * @return a CompletableFuture giving the number of rows affected by the statement
+	 */
+	public CompletableFuture<Long> executeUpdateAsync(final String sql) {
+		return submitAsync(sql, new AsyncResult<Long>() {
+			@Override
+			public Long from(final Statement st) throws SQLException {
+				if (st.getResultSet() != null)
+					throw new SQLException("Statement produced a result set", "M1M17");
+				final long count = Math.max(st.getLargeUpdateCount(), 0L);
+				st.close();
+				return count;
+			}
+		});
+	}
+
+	/**
+	 * Converts the Statement holding the results of an asynchronously
+	 * executed query into the result of its CompletableFuture.
+	 */
+	private interface AsyncResult<T> {
+		T from(Statement st) throws SQLException;
+	}
+
+	/**
+	 * Sends the given query and lets the reader thread read its reply and
+	 * complete the returned CompletableFuture.
+	 *
+	 * @param sql the SQL query to execute
+	 * @param conv converts the Statement holding the results into the result
+	 * @return the CompletableFuture for the result
+	 */
+	private <T> CompletableFuture<T> submitAsync(final String sql, final AsyncResult<T> conv) {
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		try {
+			final Future<Statement> reply = executePipelined(sql);
+			final ExecutorService reader;
+			synchronized (server) {
+				if (asyncReader == null)
+					asyncReader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(final Runnable r) {
+							final Thread t = new Thread(r, "MonetDB async reader");
+							t.setDaemon(true);
+							return t;
+						}
+					});
+				reader = asyncReader;
+			}
+			reader.execute(new Runnable() {
+				@Override
+				public void run() {
+					Statement st = null;
+					try {
+						st = reply.get();
+						result.complete(conv.from(st));
+					} catch (ExecutionException e) {
+						result.completeExceptionally(e.getCause());
+					} catch (SQLException e) {
+						try {
+							st.close();
+						} catch (SQLException ce) {
+							// ignore, the query failed already
+						}
+						result.completeExceptionally(e);
+					} catch (InterruptedException e) {
+						result.completeExceptionally(e);
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		} catch (SQLException e) {
+			result.completeExceptionally(e);
+		} catch (RejectedExecutionException e) {
+			// this Connection was closed meanwhile
+			result.completeExceptionally(new SQLException("Connection is closed", "M1M20"));
+		}
+		return result;
+	}
+
 	/** Handler for COPY ... INTO ... FROM 'data-file-name' ON CLIENT requests */
 	private UploadHandler uploadHandler;
 	/** Handler for COPY ... INTO 'data-file-name' ON CLIENT requests */
@@ -1685,6 +2033,16 @@ public class MonetConnection
 	 * @throws SQLException if an IO exception or a database error occurs
 	 */
 	private void setTimezone(int offsetSeconds) throws SQLException {
+		sendIndependentCommand(timezoneStatement(offsetSeconds));
+	}
+
+	/**
+	 * Local helper method to build the statement setting the time zone
+	 *
+	 * @param offsetSeconds Time Zone offset in seconds, can be negative or zero
+	 * @return the SET TIME ZONE statement
+	 */
+	private static String timezoneStatement(int offsetSeconds) {
 		final StringBuilder tz = new StringBuilder(64);
 		tz.append("SET TIME ZONE INTERVAL '");
 		int offsetMinutes = offsetSeconds / 60;
@@ -1702,7 +2060,7 @@ public class MonetConnection
 		if (offsetMinutes < 10)
 			tz.append('0');
 		tz.append(offsetMinutes).append("' HOUR TO MINUTE");
-		sendIndependentCommand(tz.toString());
+		return tz.toString();
 	}
 
 	/**
@@ -2204,6 +2562,148 @@ public class MonetConnection
 		sendCommand(command, false);
 	}
 
+	/**
+	 * Looks up a statement prepared earlier for the given SQL text in
+	 * the prepared statement cache.
+	 *
+	 * @param sql the SQL text of the statement
+	 * @return the prepared statement, now used by one more
+	 *         PreparedStatement, or null if it is not in the cache
+	 */
+	MonetPreparedStatement.Prepared acquirePrepared(final String sql) {
+		if (preparedCache == null)
+			return null;
+		if (preparedCacheStale)
+			clearPreparedCache();
+		synchronized (preparedCache) {
+			final MonetPreparedStatement.Prepared p = preparedCache.get(sql);
+			if (p != null)
+				p.users++;
+			return p;
+		}
+	}
+
+	/**
+	 * Adds a newly prepared statement to the prepared statement cache,
+	 * if caching is enabled.  When the cache is full, the least recently
+	 * used statement is evicted, and released on the server once it is
+	 * no longer in use.
+	 *
+	 * @param p the newly prepared statement
+	 */
+	void preparedCreated(final MonetPreparedStatement.Prepared p) {
+		if (preparedCache == null)
+			return;
+		ArrayList<MonetPreparedStatement.Prepared> evicted = null;
+		synchronized (preparedCache) {
+			// when the same SQL was prepared concurrently, keep the first one
+			if (preparedCache.containsKey(p.sql))
+				return;
+			p.cached = true;
+			preparedCache.put(p.sql, p);
+			final Iterator<MonetPreparedStatement.Prepared> it = preparedCache.values().iterator();
+			while (preparedCache.size() > preparedCacheSize) {
+				final MonetPreparedStatement.Prepared old = it.next();
+				it.remove();
+				old.cached = false;
+				if (old.users == 0) {
+					if (evicted == null)
+						evicted = new ArrayList<MonetPreparedStatement.Prepared>();
+					evicted.add(old);
+				}
+			}
+		}
+		if (evicted != null) {
+			for (MonetPreparedStatement.Prepared old : evicted)
+				deallocate(old);
+		}
+	}
+
+	/**
+	 * Called when a PreparedStatement is closed.  The statement is
+	 * released on the server, unless it is kept in the prepared
+	 * statement cache or still used by another PreparedStatement.
+	 *
+	 * @param p the prepared statement which is no longer used
+	 */
+	void releasePrepared(final MonetPreparedStatement.Prepared p) {
+		if (preparedCache != null) {
+			synchronized (preparedCache) {
+				p.users--;
+				if (p.cached || p.users > 0)
+					return;
+			}
+		}
+		deallocate(p);
+	}
+
+	/**
+	 * Removes a statement from the prepared statement cache, after an
+	 * exec of it failed.  It may have been bound to objects which have
+	 * been dropped or altered since, so it is prepared again the next
+	 * time.  It is released on the server once it is no longer in use.
+	 *
+	 * @param p the prepared statement whose exec failed
+	 */
+	void evictPrepared(final MonetPreparedStatement.Prepared p) {
+		if (preparedCache == null)
+			return;
+		synchronized (preparedCache) {
+			if (!p.cached)
+				return;
+			preparedCache.remove(p.sql);
+			p.cached = false;
+			if (p.users > 0)
+				return;
+		}
+		deallocate(p);
+	}
+
+	/**
+	 * Marks the prepared statement cache as stale when the given query
+	 * may change the schema of the session.
+	 *
+	 * @param query the query which is sent to the server
+	 */
+	private void checkSchemaChange(final String query) {
+		if (preparedCache != null && query != null && SET_SCHEMA.matcher(query).find())
+			preparedCacheStale = true;
+	}
+
+	/**
+	 * Empties the prepared statement cache, releasing the statements
+	 * on the server which are not in use.
+	 */
+	private void clearPreparedCache() {
+		if (preparedCache == null)
+			return;
+		preparedCacheStale = false;
+		final ArrayList<MonetPreparedStatement.Prepared> unused = new ArrayList<MonetPreparedStatement.Prepared>();
+		synchronized (preparedCache) {
+			for (MonetPreparedStatement.Prepared p : preparedCache.values()) {
+				p.cached = false;
+				if (p.users == 0)
+					unused.add(p);
+			}
+			preparedCache.clear();
+		}
+		for (MonetPreparedStatement.Prepared p : unused)
+			deallocate(p);
+	}
+
+	/**
+	 * Releases a prepared statement on the server.
+	 */
+	private void deallocate(final MonetPreparedStatement.Prepared p) {
+		if (closed)
+			return;
+		try {
+			sendControlCommand("release " + p.id);
+		} catch (SQLException e) {
+			// probably server closed connection
+		}
+	}
+
 	/**
 	 * Sends the given string to MonetDB as command/query using commandTempl or queryTempl
 	 * Making sure there is a prompt after the command is sent.  All possible
@@ -2216,6 +2716,7 @@ public class MonetConnection
 	private void sendCommand(final String command, final boolean usequeryTempl) throws SQLException {
 		synchronized (server) {
 			try {
+				readPendingReplies();
 				if (usequeryTempl)
 					out.writeLine(queryTempl[0] + command + queryTempl[1]);
 				else
@@ -2233,69 +2734,334 @@ public class MonetConnection
 	}
 
 	/**
-	 * Adds a warning to the pile of warnings this Connection object has.
-	 * If there were no warnings (or clearWarnings was called) this
-	 * warning will be the first, otherwise this warning will get
-	 * appended to the current warning.
-	 *
-	 * @param warning The warning to add
+	 * Writes a query to the server in parts, such that large parameter
+	 * values can be streamed instead of being held in memory as a whole.
 	 */
-	private final void addWarning(SQLWarning warning) {
-		if (warnings == null) {
-			warnings = warning;
-		} else {
-			warnings.setNextWarning(warning);
-		}
+	interface QueryWriter {
+		/**
+		 * Writes the query, without the query template.
+		 *
+		 * @param out the writer to write the query to
+		 * @throws IOException if writing to the server fails
+		 */
+		void writeTo(Writer out) throws IOException;
 	}
 
 	/**
-	 * Adds a warning to the pile of warnings this Connection object has.
-	 * If there were no warnings (or clearWarnings was called) this
-	 * warning will be the first, otherwise this warning will get
-	 * appended to the current warning.
-	 *
-	 * @param reason the warning message
-	 * @param sqlstate the SQLState code (5 characters)
+	 * The reply to a command which has been sent to the server without
+	 * waiting for it, such as a result set block requested ahead or a
+	 * pipelined query.  The replies are read in the order in which the
+	 * commands were sent.
 	 */
-	private final void addWarning(final String reason, final String sqlstate) {
-		final SQLWarning warning = new SQLWarning(reason, sqlstate);
-		addWarning(warning);
+	interface PendingReply {
+		/**
+		 * Reads the reply.  Called while holding the lock on server.
+		 *
+		 * @throws IOException if an IO error occurs
+		 */
+		void read() throws IOException;
+
+		/**
+		 * Called instead of read() when the reply can no longer be
+		 * read because the connection failed.
+		 *
+		 * @param e the exception describing the failure
+		 */
+		void fail(SQLException e);
 	}
 
-	/** the default number of rows that are (attempted to) read at once */
-	private static final int DEF_FETCHSIZE = 250;
+	/**
+	 * A result set block which has been requested from the server ahead
+	 * of time, whose reply has not been read yet.  A reply which cannot be
+	 * used, such as an error, is skipped.  The block is then fetched
+	 * again when it is needed, which reports the error.
+	 */
+	private final class PendingBlock implements PendingReply {
+		final ResultSetResponse rs;
+		final int block;
+		final int count;
+		final boolean binary;
+
+		PendingBlock(final ResultSetResponse rs, final int block, final int count, final boolean binary) {
+			this.rs = rs;
+			this.block = block;
+			this.count = count;
+			this.binary = binary;
+		}
 
-	/** the default number of rows to read at once from this connection */
-	private int defaultFetchSize = DEF_FETCHSIZE;
-	/** The sequence counter */
-	private static int seqCounter = 0;
+		@Override
+		public void read() throws IOException {
+			if (binary) {
+				rs.addPrefetchedBinaryBlock(block, server.readBinaryMessage(), count);
+				return;
+			}
+
+			// the reader stopped at the prompt ending the previous reply,
+			// advance() does nothing until the line type is reset
+			in.resetLineType();
+			DataBlockResponse rr = null;
+			in.advance();
+			if (in.getLineType() == LineType.SOHEADER) {
+				try {
+					if (sohp.parse(in.getLine()) == StartOfHeaderParser.Q_BLOCK) {
+						sohp.getNextAsInt();	// id
+						sohp.getNextAsInt();	// columncount
+						rr = new DataBlockResponse(sohp.getNextAsInt());
+						in.advance();
+						while (rr.wantsMore()) {
+							if (rr.addLine(in) != null) {
+								rr = null;
+								break;
+							}
+							in.advance();
+						}
+					}
+				} catch (MCLParseException e) {
+					rr = null;
+				}
+			}
+			in.discardRemainder();
+			if (rr != null)
+				rs.addPrefetchedBlock(block, rr);
+		}
+
+		@Override
+		public void fail(final SQLException e) {
+			// nothing to do, the block is fetched again when needed
+		}
+	}
 
 	/**
-	 * returns default fetchSize as set at connection moment
-	 *
-	 * @return defaultFetchSize
+	 * The reply to a reply_size command sent ahead of a pipelined query.
+	 * If the server refused the new reply size, the previous one is
+	 * still in effect.
 	 */
-	protected int getDefaultFetchSize() {
-		return defaultFetchSize;
+	private final class PendingReplySize implements PendingReply {
+		final int previous;
+		final int size;
+
+		PendingReplySize(final int previous, final int size) {
+			this.previous = previous;
+			this.size = size;
+		}
+
+		@Override
+		public void read() throws IOException {
+			in.resetLineType();
+			if (in.discardRemainder() != null && curReplySize == size)
+				curReplySize = previous;
+		}
+
+		@Override
+		public void fail(final SQLException e) {
+			// nothing to do, the connection is closed
+		}
 	}
 
 	/**
-	 * A Response is a message sent by the server to indicate some
-	 * action has taken place, and possible results of that action.
+	 * A query sent by {@link #executePipelined(String)} whose reply has
+	 * not been read yet.  Waiting for its result reads the replies of all
+	 * commands sent before it, and its own.
 	 */
-	// {{{ interface Response
-	interface Response {
-		/**
-		 * Adds a line to the underlying Response implementation.
-		 *
-		 * @param line the header line as String
-		 * @param linetype the line type according to the MAPI protocol
-		 * @return a non-null String if the line is invalid,
-		 *         or additional lines are not allowed.
-		 */
-		String addLine(String line, LineType linetype);
+	private final class PipelinedQuery extends CompletableFuture<Statement> implements PendingReply {
+		private final MonetStatement stmt;
+		private final ResponseList list;
 
-		/**
+		PipelinedQuery(final MonetStatement stmt, final ResponseList list) {
+			this.stmt = stmt;
+			this.list = list;
+		}
+
+		@Override
+		public void read() throws IOException {
+			try {
+				in.resetLineType();
+				list.readPipelined();
+				stmt.getMoreResults();
+				complete(stmt);
+			} catch (SQLException e) {
+				completeExceptionally(e);
+			}
+		}
+
+		@Override
+		public void fail(final SQLException e) {
+			completeExceptionally(e);
+		}
+
+		/** Reads replies until the one of this query has been read */
+		private void await() {
+			synchronized (server) {
+				try {
+					while (!isDone() && !pendingReplies.isEmpty())
+						readPendingReply();
+				} catch (IOException e) {
+					// already failed by readPendingReply()
+				}
+			}
+		}
+
+		@Override
+		public Statement get() throws InterruptedException, ExecutionException {
+			await();
+			return super.get();
+		}
+
+		@Override
+		public Statement get(final long timeout, final TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException
+		{
+			await();
+			return super.get(timeout, unit);
+		}
+
+		@Override
+		public Statement join() {
+			await();
+			return super.join();
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			// the query has been sent already
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the replies to all commands which have been sent without
+	 * waiting for their replies, such that the server is ready to
+	 * receive a new command.  Must be called while holding the lock on
+	 * server.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	private void readPendingReplies() throws IOException {
+		while (!pendingReplies.isEmpty())
+			readPendingReply();
+	}
+
+	/**
+	 * Reads the replies to the commands sent without waiting for their
+	 * replies, up to and including the given one.  When reading fails,
+	 * the given reply and all others have been failed.
+	 *
+	 * @param reply the reply to wait for
+	 */
+	void awaitPendingReply(final PendingReply reply) {
+		synchronized (server) {
+			try {
+				while (pendingReplies.contains(reply))
+					readPendingReply();
+			} catch (IOException e) {
+				// already failed by readPendingReply()
+			}
+		}
+	}
+
+	/**
+	 * Reads the oldest reply which has not been read yet.  When this
+	 * fails, the connection is no longer usable and all outstanding
+	 * replies are failed.  Must be called while holding the lock on
+	 * server.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	private void readPendingReply() throws IOException {
+		final PendingReply pr = pendingReplies.poll();
+		if (pr == null)
+			return;
+		try {
+			pr.read();
+		} catch (IOException e) {
+			closed = true;
+			final SQLException ex = new SQLNonTransientConnectionException(e.getMessage() + " (mserver5 still alive?)", "08006");
+			pr.fail(ex);
+			for (PendingReply p : pendingReplies)
+				p.fail(ex);
+			pendingReplies.clear();
+			throw e;
+		}
+	}
+
+	/**
+	 * Adds a warning to the pile of warnings this Connection object has.
+	 * If there were no warnings (or clearWarnings was called) this
+	 * warning will be the first, otherwise this warning will get
+	 * appended to the current warning.
+	 *
+	 * @param warning The warning to add
+	 */
+	private final void addWarning(SQLWarning warning) {
+		if (warnings == null) {
+			warnings = warning;
+		} else {
+			warnings.setNextWarning(warning);
+		}
+	}
+
+	/**
+	 * Adds a warning to the pile of warnings this Connection object has.
+	 * If there were no warnings (or clearWarnings was called) this
+	 * warning will be the first, otherwise this warning will get
+	 * appended to the current warning.
+	 *
+	 * @param reason the warning message
+	 * @param sqlstate the SQLState code (5 characters)
+	 */
+	private final void addWarning(final String reason, final String sqlstate) {
+		final SQLWarning warning = new SQLWarning(reason, sqlstate);
+		addWarning(warning);
+	}
+
+	/** the default number of rows that are (attempted to) read at once */
+	private static final int DEF_FETCHSIZE = 250;
+
+	/** the default number of rows to read at once from this connection */
+	private int defaultFetchSize = DEF_FETCHSIZE;
+	/** The sequence counter */
+	private static int seqCounter = 0;
+
+	/**
+	 * returns default fetchSize as set at connection moment
+	 *
+	 * @return defaultFetchSize
+	 */
+	protected int getDefaultFetchSize() {
+		return defaultFetchSize;
+	}
+
+	/**
+	 * A Response is a message sent by the server to indicate some
+	 * action has taken place, and possible results of that action.
+	 */
+	// {{{ interface Response
+	interface Response {
+		/**
+		 * Adds a line to the underlying Response implementation.
+		 *
+		 * @param line the header line as String
+		 * @param linetype the line type according to the MAPI protocol
+		 * @return a non-null String if the line is invalid,
+		 *         or additional lines are not allowed.
+		 */
+		String addLine(String line, LineType linetype);
+
+		/**
+		 * Adds the current line of the given reader to the underlying
+		 * Response implementation.  Implementations which can store the
+		 * undecoded bytes of the line override this method, the default
+		 * passes the line on as String.
+		 *
+		 * @param in the reader positioned at the line to add
+		 * @return a non-null String if the line is invalid,
+		 *         or additional lines are not allowed.
+		 */
+		default String addLine(final BufferedMCLReader in) {
+			return addLine(in.getLine(), in.getLineType());
+		}
+
+		/**
 		 * Returns whether this Response expects more lines to be added
 		 * to it.
 		 *
@@ -2381,6 +3147,23 @@ public class MonetConnection
 		private boolean destroyOnClose;
 		/** the offset to be used on Xexport queries */
 		private int blockOffset;
+		/** The decoder for binary result blocks, null if not (yet) known */
+		private BinaryBlockParser binaryParser;
+		/** Whether this result can not be fetched in binary form */
+		private boolean binaryUnsupported;
+		/** The next block to request ahead, see prefetch() */
+		private int nextPrefetch;
+		/** The time in nanoseconds it took to fetch the last block, -1 if none was fetched yet */
+		private long lastFetchNanos = -1;
+		/** When the number of cached blocks is limited: the blocks in resultBlocks
+		 *  by block number, least recently used first */
+		private final LinkedHashMap<Integer, DataBlockResponse> cachedBlocks;
+		/** The block used by the previous loadRow(), which is the most recently used one in cachedBlocks */
+		private int lastUsedBlock = -1;
+		/** When evicted blocks are spilled: per block its position in spillFile, -1 if not spilled */
+		private final long[] spillPos;
+		/** The file holding the evicted blocks, created on first use */
+		private SpillFile spillFile;
 
 		/** A parser for header lines */
 		private final HeaderLineParser hlp;
@@ -2447,7 +3230,20 @@ public class MonetConnection
 
 			hlp = new HeaderLineParser(columncount);
 
-			resultBlocks[0] = new DataBlockResponse(rowcount, parent.rstype == ResultSet.TYPE_FORWARD_ONLY);
+			resultBlocks[0] = new DataBlockResponse(rowcount);
+			// forward only result sets discard the blocks they have passed already
+			if (maxCachedBlocks > 0 && parent.rstype != ResultSet.TYPE_FORWARD_ONLY) {
+				cachedBlocks = new LinkedHashMap<Integer, DataBlockResponse>(16, 0.75f, true);
+				cachedBlocks.put(0, resultBlocks[0]);
+			} else {
+				cachedBlocks = null;
+			}
+			if (cachedBlocks != null && spillBlocks) {
+				spillPos = new long[resultBlocks.length];
+				Arrays.fill(spillPos, -1);
+			} else {
+				spillPos = null;
+			}
 		}
 
 		/**
@@ -2554,6 +3350,27 @@ public class MonetConnection
 			return null;
 		}
 
+		/**
+		 * Passes result lines on to the underlying DataBlockResponse
+		 * without decoding them, header lines are parsed as usual.
+		 *
+		 * @param in the reader positioned at the line to add
+		 * @return a non-null String if the header cannot be parsed or
+		 *         is unknown
+		 */
+		@Override
+		public String addLine(final BufferedMCLReader in) {
+			final LineType linetype = in.getLineType();
+			if (linetype == LineType.RESULT ||
+			    (isSet[LENS] && isSet[TYPES] && isSet[TABLES] && isSet[NAMES] && isSet[TYPESIZES])) {
+				if (!isSet[TYPESIZES])
+					// this is needed to get proper output when processing a: DEBUG SQL-statement
+					isSet[TYPESIZES] = true;
+				return resultBlocks[0].addLine(in);
+			}
+			return addLine(in.getLine(), linetype);
+		}
+
 		/**
 		 * Returns whether this ResultSetResponse needs more lines.
 		 * This method returns true if not all headers are set, or the
@@ -2723,56 +3540,63 @@ public class MonetConnection
 		}
 
 		/**
-		 * Returns a line from the cache. If the line is already present in the
-		 * cache, it is returned, if not appropriate actions are taken to make
-		 * sure the right block is being fetched and as soon as the requested
-		 * line is fetched it is returned.
+		 * Makes a row from the cache the current tuple of the given
+		 * TupleLineParser.  If the row is not yet present in the cache,
+		 * appropriate actions are taken to make sure the right block is
+		 * being fetched.
 		 *
-		 * @param row the row in the result set to return
-		 * @return the exact row read as requested or null if the requested row
+		 * @param row the row in the result set to load
+		 * @param tlp the TupleLineParser to load the row into
+		 * @return true if the row was loaded, false if the requested row
 		 *         is out of the scope of the result set
 		 * @throws SQLException if an database error occurs
 		 */
-		String getLine(final int row) throws SQLException {
+		boolean loadRow(final int row, final TupleLineParser tlp) throws SQLException {
 			if (row >= tuplecount || row < 0)
-				return null;
+				return false;
 
 			int block = (row - blockOffset) / cacheSize;
 			int blockLine = (row - blockOffset) % cacheSize;
 
 			// do we have the right block loaded? (optimistic try)
 			DataBlockResponse rawr = resultBlocks[block];
+			if (rawr == null && !pendingReplies.isEmpty()) {
+				// it may have been requested ahead
+				rawr = awaitPrefetched(block);
+			}
 			if (rawr == null) {
 				// load block
-				/// TODO: ponder about a maximum number of blocks to keep
-				///       in memory when dealing with random access to
-				///       reduce memory blow-up
-
+				// when the number of blocks to keep in memory is limited,
+				// make room by evicting the least recently used one(s)
+				if (cachedBlocks != null)
+					evictBlocks();
+				if (spillPos != null && spillPos[block] >= 0)
+					rawr = unspill(block);
+			}
+			if (rawr == null) {
 				// if we're running forward only, we can discard the old
 				// block loaded
 				if (parent.rstype == ResultSet.TYPE_FORWARD_ONLY) {
 					for (int i = 0; i < block; i++)
 						resultBlocks[i] = null;
 
-					if (MonetConnection.seqCounter - 1 == seqnr &&
-							!cacheSizeSetExplicitly &&
-							tuplecount - row > cacheSize &&
-							cacheSize < MonetConnection.DEF_FETCHSIZE * 10)
-					{
+					final int newCacheSize = nextCacheSize(row);
+					if (newCacheSize != cacheSize) {
 						// there has no query been issued after this
 						// one, so we can consider this an uninterrupted
-						// continuation request.  Let's once increase
-						// the cacheSize as it was not explicitly set,
-						// since the chances are high that we won't
-						// bother anyone else by doing so, and just
-						// gaining some performance.
-
-						// store the previous position in the
+						// continuation request.  Let's increase the
+						// cacheSize as it was not explicitly set, as
+						// decided by the FetchSizePolicy, since the
+						// chances are high that we won't bother anyone
+						// else by doing so, and just gaining some
+						// performance.
+
+						// store the start of the block to fetch in the
 						// blockOffset variable
-						blockOffset += cacheSize;
+						blockOffset += block * cacheSize;
 
-						// increase the cache size (a lot)
-						cacheSize *= 10;
+						// increase the cache size
+						cacheSize = newCacheSize;
 
 						// by changing the cacheSize, we also
 						// change the block measures.  Luckily
@@ -2784,18 +3608,294 @@ public class MonetConnection
 						// new block.
 						block = (row - blockOffset) / cacheSize;
 						blockLine = (row - blockOffset) % cacheSize;
+						nextPrefetch = 0;
 					}
 				}
 
 				// ok, need to fetch cache block first
-				parent.executeQuery(commandTempl,
-						"export " + id + " " + ((block * cacheSize) + blockOffset) + " " + cacheSize);
+				final int offset = (block * cacheSize) + blockOffset;
+				final long fetchStart = System.nanoTime();
+				if (!fetchBinaryBlock(block, offset))
+					parent.executeQuery(commandTempl,
+							"export " + id + " " + offset + " " + cacheSize);
+				lastFetchNanos = System.nanoTime() - fetchStart;
 				rawr = resultBlocks[block];
 				if (rawr == null)
 					throw new SQLException("resultBlocks[" + block + "] should have been fetched by now", "M0M10");
+			} else if (block > 0 && parent.rstype == ResultSet.TYPE_FORWARD_ONLY && resultBlocks[block - 1] != null) {
+				// we reached a block which was requested ahead, the
+				// previous ones will not be used anymore
+				Arrays.fill(resultBlocks, 0, block, null);
+			}
+
+			if (cachedBlocks != null && block != lastUsedBlock) {
+				// (re)insert the block as the most recently used one
+				cachedBlocks.put(block, rawr);
+				lastUsedBlock = block;
+			}
+			if (prefetchBlocks > 0 && parent.rstype == ResultSet.TYPE_FORWARD_ONLY)
+				prefetch(block, blockLine);
+
+			try {
+				return rawr.loadRow(blockLine, tlp);
+			} catch (MCLParseException e) {
+				throw new SQLException(e.getMessage(), "M0M10");
+			}
+		}
+
+		/**
+		 * Fetches the block at the given offset using the binary result set
+		 * protocol, if both the server and the column types of this result
+		 * allow it.  If the server refuses, binary fetching is disabled for
+		 * the rest of this connection.
+		 *
+		 * @param block the block number to store the fetched rows in
+		 * @param offset the row offset to fetch the block from
+		 * @return true if the block was fetched, false if the caller should
+		 *         fetch it in the textual format
+		 * @throws SQLException if an IO or protocol error occurs
+		 */
+		private boolean fetchBinaryBlock(final int block, final int offset) throws SQLException {
+			if (!useBinaryFormat())
+				return false;
+
+			final int count = (int) Math.min(cacheSize, tuplecount - offset);
+			final byte[] reply;
+			try {
+				synchronized (server) {
+					readPendingReplies();
+					in.discardRemainder();
+					out.writeLine(commandTempl[0] + "exportbin " + id + " " + offset + " " + count + commandTempl[1]);
+					reply = server.readBinaryMessage();
+				}
+			} catch (SocketTimeoutException e) {
+				MonetConnection.this.close(); // JDBC 4.1 semantics, abort()
+				throw new SQLNonTransientConnectionException("connection timed out", "08M33");
+			} catch (IOException e) {
+				MonetConnection.this.closed = true;
+				throw new SQLNonTransientConnectionException(e.getMessage() + " (mserver5 still alive?)", "08006");
+			}
+
+			if (reply.length > 0 && reply[0] == '!') {
+				// the server does not support (this) binary export,
+				// use the textual result set format from now on
+				binaryResults = false;
+				return false;
+			}
+
+			try {
+				resultBlocks[block] = new DataBlockResponse(
+					binaryParser.parse(reply, reply.length, count, server.isServerBigEndian()));
+			} catch (MCLParseException e) {
+				throw new SQLException("error while parsing binary result block: " + e.getMessage(), "M0M10");
+			}
+			return true;
+		}
+
+		/**
+		 * Returns whether the blocks of this result can be fetched in
+		 * binary form, creating the binary decoder when needed.
+		 *
+		 * @return true if the binary result set format is to be used
+		 */
+		private boolean useBinaryFormat() {
+			if (!binaryResults || binaryUnsupported)
+				return false;
+			if (binaryParser == null) {
+				binaryParser = BinaryBlockParser.forColumns(type, colPrecisions, colScales);
+				if (binaryParser == null) {
+					binaryUnsupported = true;
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Closes and removes the least recently used blocks, until
+		 * there is room for one more block within the maximum number of
+		 * blocks to keep in memory.  Evicted blocks are fetched again
+		 * when they are needed.
+		 */
+		private void evictBlocks() {
+			final Iterator<Entry<Integer, DataBlockResponse>> it = cachedBlocks.entrySet().iterator();
+			while (cachedBlocks.size() >= maxCachedBlocks && it.hasNext()) {
+				final int lru = it.next().getKey();
+				it.remove();
+				if (lru == lastUsedBlock)
+					lastUsedBlock = -1;
+				if (spillPos != null && spillPos[lru] < 0) {
+					try {
+						if (spillFile == null)
+							spillFile = new SpillFile();
+						spillPos[lru] = spillFile.write(resultBlocks[lru]);
+					} catch (IOException e) {
+						// no room on disk? it will be fetched again from the server
+					}
+				}
+				resultBlocks[lru].close();
+				resultBlocks[lru] = null;
+			}
+		}
+
+		/**
+		 * Reads a block back from the spill file.
+		 *
+		 * @param block the block number
+		 * @return the block, or null if it could not be read, it should
+		 *         then be fetched from the server again
+		 */
+		private DataBlockResponse unspill(final int block) {
+			try {
+				resultBlocks[block] = spillFile.read(spillPos[block], binaryParser, server.isServerBigEndian());
+			} catch (IOException | MCLParseException e) {
+				spillPos[block] = -1;
 			}
+			return resultBlocks[block];
+		}
+
+		/**
+		 * Returns the cache size to use for the block starting at the
+		 * given row.  The cache size can only grow during an
+		 * uninterrupted forward only scan of a result for which the
+		 * fetch size was not set explicitly, as decided by the
+		 * FetchSizePolicy of the connection.
+		 *
+		 * @param row the first row of the block to be fetched
+		 * @return the cache size for the block
+		 */
+		private int nextCacheSize(final int row) {
+			if (parent.rstype != ResultSet.TYPE_FORWARD_ONLY ||
+				MonetConnection.seqCounter - 1 != seqnr ||
+				cacheSizeSetExplicitly)
+				return cacheSize;
+			final int size = fetchSizePolicy.nextFetchSize(cacheSize, estimatedRowWidth(), lastFetchNanos, tuplecount - row);
+			return size > cacheSize ? size : cacheSize;
+		}
+
+		/**
+		 * Estimates the number of bytes a row of this result takes, based
+		 * on the column widths reported by the server.
+		 *
+		 * @return the estimated row width in bytes
+		 */
+		private int estimatedRowWidth() {
+			// the brackets around the row, and per column the separator and possible quotes
+			long width = 4;
+			for (int i = 0; i < columncount; i++)
+				width += 4 + (columnLengths != null ? Math.max(columnLengths[i], 0) : 0);
+			return (int) Math.min(width, Integer.MAX_VALUE);
+		}
+
+		/**
+		 * Requests the blocks following the given block from the server
+		 * without waiting for the replies, once enough of the given block
+		 * has been read.  The replies are read when the rows are needed,
+		 * or before anything else is sent to the server, so the transfer
+		 * of the next blocks overlaps with the processing of the rows
+		 * of the current one.  At most prefetchBlocks requests are
+		 * outstanding on the connection at any time.
+		 *
+		 * @param block the block the current row is in
+		 * @param blockLine the current row within the block
+		 * @throws SQLException if an IO error occurs
+		 */
+		private void prefetch(final int block, final int blockLine) throws SQLException {
+			if ((long) blockLine * 100 < (long) cacheSize * prefetchThreshold)
+				return;
+			if (nextPrefetch <= block)
+				nextPrefetch = block + 1;
+			try {
+				synchronized (server) {
+					while (nextPrefetch <= block + prefetchBlocks && pendingReplies.size() < prefetchBlocks) {
+						final int offset = (nextPrefetch * cacheSize) + blockOffset;
+						if (offset >= tuplecount)
+							return;
+						if (resultBlocks[nextPrefetch] == null) {
+							// the block size changes when fetching the next
+							// block, so it has to be fetched when reached
+							if (nextCacheSize(offset) != cacheSize)
+								return;
+							if (pendingReplies.isEmpty())
+								in.discardRemainder();
+							final int count = (int) Math.min(cacheSize, tuplecount - offset);
+							final boolean binary = useBinaryFormat();
+							if (binary)
+								out.writeLine(commandTempl[0] + "exportbin " + id + " " + offset + " " + count + commandTempl[1]);
+							else
+								out.writeLine(commandTempl[0] + "export " + id + " " + offset + " " + cacheSize + commandTempl[1]);
+							pendingReplies.add(new PendingBlock(this, nextPrefetch, count, binary));
+						}
+						nextPrefetch++;
+					}
+				}
+			} catch (SocketTimeoutException e) {
+				MonetConnection.this.close(); // JDBC 4.1 semantics, abort()
+				throw new SQLNonTransientConnectionException("connection timed out", "08M33");
+			} catch (IOException e) {
+				MonetConnection.this.closed = true;
+				throw new SQLNonTransientConnectionException(e.getMessage() + " (mserver5 still alive?)", "08006");
+			}
+		}
+
+		/**
+		 * Reads the replies to blocks requested ahead until the given
+		 * block of this result has arrived or no requests are
+		 * outstanding anymore.
+		 *
+		 * @param block the block that is needed
+		 * @return the block, or null if it was not requested ahead or
+		 *         its reply could not be used
+		 * @throws SQLException if an IO error occurs
+		 */
+		private DataBlockResponse awaitPrefetched(final int block) throws SQLException {
+			try {
+				synchronized (server) {
+					while (resultBlocks[block] == null && !pendingReplies.isEmpty())
+						readPendingReply();
+				}
+			} catch (SocketTimeoutException e) {
+				MonetConnection.this.close(); // JDBC 4.1 semantics, abort()
+				throw new SQLNonTransientConnectionException("connection timed out", "08M33");
+			} catch (IOException e) {
+				MonetConnection.this.closed = true;
+				throw new SQLNonTransientConnectionException(e.getMessage() + " (mserver5 still alive?)", "08006");
+			}
+			return resultBlocks[block];
+		}
+
+		/**
+		 * Stores a block which was requested ahead, unless this result
+		 * has been closed in the meantime.
+		 *
+		 * @param block the block number
+		 * @param rr the DataBlockResponse holding the rows of the block
+		 */
+		void addPrefetchedBlock(final int block, final DataBlockResponse rr) {
+			if (resultBlocks != null && block < resultBlocks.length)
+				resultBlocks[block] = rr;
+		}
 
-			return rawr.getRow(blockLine);
+		/**
+		 * Decodes the reply to a binary block request sent ahead.
+		 *
+		 * @param block the block number
+		 * @param reply the reply message
+		 * @param count the number of rows requested
+		 */
+		void addPrefetchedBinaryBlock(final int block, final byte[] reply, final int count) {
+			if (reply.length > 0 && reply[0] == '!') {
+				// the server does not support (this) binary export,
+				// the block will be fetched in textual form when needed
+				binaryResults = false;
+				return;
+			}
+			try {
+				addPrefetchedBlock(block, new DataBlockResponse(
+					binaryParser.parse(reply, reply.length, count, server.isServerBigEndian())));
+			} catch (MCLParseException e) {
+				// leave it to the regular fetch when the block is needed, which reports the error
+			}
 		}
 
 		/**
@@ -2823,6 +3923,10 @@ public class MonetConnection
 				if (r != null)
 					r.close();
 			}
+			if (spillFile != null) {
+				spillFile.close();
+				spillFile = null;
+			}
 			name = null;
 			type = null;
 			columnLengths = null;
@@ -2845,6 +3949,143 @@ public class MonetConnection
 	}
 	// }}}
 
+	/**
+	 * A temporary file holding result set blocks which a scrollable result
+	 * set evicted from memory, see the spill_blocks connection property.
+	 * Blocks are stored in the form they are kept in memory: the rows as
+	 * received from the server with their end offsets, or the message a
+	 * binary block was decoded from.  Each block is preceded by a header
+	 * holding its kind, its number of rows and its number of data bytes.
+	 * The file is accessed with positional reads and writes through a
+	 * reused buffer for the headers, so no memory mappings build up.
+	 */
+	private static final class SpillFile {
+		private static final byte TEXT = 1;
+		private static final byte BINARY = 2;
+		private static final int HEADER_SIZE = 9;
+
+		private final File file;
+		private final RandomAccessFile raf;
+		private final FileChannel channel;
+		/** The size of the file, where the next block is written */
+		private long end;
+		/** Holds the header and row offsets of a block, grown when needed */
+		private ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 4 * 256);
+
+		SpillFile() throws IOException {
+			file = File.createTempFile("monetdb-jdbc-", ".spill");
+			raf = new RandomAccessFile(file, "rw");
+			channel = raf.getChannel();
+		}
+
+		/**
+		 * Returns the header buffer, cleared and large enough for the
+		 * given number of bytes.
+		 */
+		private ByteBuffer header(final int size) {
+			if (header.capacity() < size)
+				header = ByteBuffer.allocate(Math.max(size, header.capacity() * 2));
+			header.clear();
+			header.limit(size);
+			return header;
+		}
+
+		private void writeFully(final ByteBuffer buf, long pos) throws IOException {
+			while (buf.hasRemaining())
+				pos += channel.write(buf, pos);
+		}
+
+		private void readFully(final ByteBuffer buf, long pos) throws IOException {
+			while (buf.hasRemaining()) {
+				final int n = channel.read(buf, pos);
+				if (n < 0)
+					throw new EOFException("Unexpected end of spill file");
+				pos += n;
+			}
+		}
+
+		/**
+		 * Appends the given block to this file.
+		 *
+		 * @param rr the block to write
+		 * @return the position of the block in this file
+		 * @throws IOException if the block cannot be written
+		 */
+		long write(final DataBlockResponse rr) throws IOException {
+			final byte kind;
+			final int rows, len;
+			final byte[] bytes;
+			if (rr.binary != null) {
+				kind = BINARY;
+				rows = rr.binary.getRowCount();
+				bytes = rr.binary.getMessage();
+				len = bytes.length;
+			} else {
+				kind = TEXT;
+				rows = rr.pos + 1;
+				bytes = rr.data;
+				len = rows > 0 ? rr.rowEnd[rows - 1] : 0;
+			}
+			final int headerSize = HEADER_SIZE + (kind == TEXT ? 4 * rows : 0);
+			final ByteBuffer buf = header(headerSize);
+			buf.put(kind).putInt(rows).putInt(len);
+			if (kind == TEXT)
+				buf.asIntBuffer().put(rr.rowEnd, 0, rows);
+			buf.position(0);
+			final long pos = end;
+			writeFully(buf, pos);
+			writeFully(ByteBuffer.wrap(bytes, 0, len), pos + headerSize);
+			end += headerSize + len;
+			return pos;
+		}
+
+		/**
+		 * Reads the block at the given position back.
+		 *
+		 * @param pos the position of the block, as returned by write()
+		 * @param parser the parser to decode a binary block with
+		 * @param bigEndian the byte order of a binary block
+		 * @return the block
+		 * @throws IOException if the block cannot be read
+		 * @throws MCLParseException if a binary block cannot be decoded
+		 */
+		DataBlockResponse read(final long pos, final BinaryBlockParser parser, final boolean bigEndian)
+			throws IOException, MCLParseException
+		{
+			ByteBuffer buf = header(HEADER_SIZE);
+			readFully(buf, pos);
+			buf.flip();
+			final byte kind = buf.get();
+			final int rows = buf.getInt();
+			final int len = buf.getInt();
+			final byte[] data = new byte[len];
+			if (kind == BINARY) {
+				readFully(ByteBuffer.wrap(data), pos + HEADER_SIZE);
+				return new DataBlockResponse(parser.parse(data, len, rows, bigEndian));
+			}
+			final int[] rowEnd = new int[rows];
+			buf = header(4 * rows);
+			readFully(buf, pos + HEADER_SIZE);
+			buf.flip();
+			buf.asIntBuffer().get(rowEnd);
+			readFully(ByteBuffer.wrap(data), pos + HEADER_SIZE + 4L * rows);
+			return new DataBlockResponse(data, rowEnd);
+		}
+
+		/**
+		 * Closes and removes this file.
+		 */
+		void close() {
+			try {
+				channel.close();
+				raf.close();
+			} catch (IOException e) {
+				// ignore, we are done with it
+			}
+			file.delete();
+		}
+	}
+
 	/**
 	 * The DataBlockResponse is tabular data belonging to a
 	 * ResultSetResponse.  Tabular data from the server typically looks
@@ -2864,23 +4105,50 @@ public class MonetConnection
 	 */
 	// {{{ DataBlockResponse class implementation
 	private final static class DataBlockResponse implements Response {
-		/** The String array to keep the data in */
-		private final String[] data;
-
-		/** The counter which keeps the current position in the data array */
+		/** The bytes of all rows, as received from the server, back to back */
+		private byte[] data;
+		/** The end offset in data of each row, a row starts where the previous one ends */
+		private final int[] rowEnd;
+		/** The rows of this block if they were fetched in binary form, null otherwise */
+		private final BinaryBlock binary;
+
+		/** The counter which keeps the current position in the rowEnd array */
 		private int pos;
-		/** Whether we can discard lines as soon as we have read them */
-		private final boolean forwardOnly;
 
 		/**
 		 * Constructs a DataBlockResponse object
-		 * @param size the size of the data array to create
-		 * @param forward whether this is a forward only result
+		 * @param size the number of rows to create room for
 		 */
-		DataBlockResponse(final int size, final boolean forward) {
+		DataBlockResponse(final int size) {
 			pos = -1;
-			data = new String[size];
-			forwardOnly = forward;
+			rowEnd = new int[size];
+			// a guess, the data array grows when needed
+			data = new byte[Math.max(size * 32, 1024)];
+			binary = null;
+		}
+
+		/**
+		 * Constructs a DataBlockResponse object holding rows which were
+		 * fetched in binary form
+		 * @param binary the decoded block
+		 */
+		DataBlockResponse(final BinaryBlock binary) {
+			pos = binary.getRowCount() - 1;
+			rowEnd = null;
+			data = null;
+			this.binary = binary;
+		}
+
+		/**
+		 * Constructs a DataBlockResponse object holding the given rows
+		 * @param data the bytes of the rows, back to back
+		 * @param rowEnd the end offset in data of each row
+		 */
+		DataBlockResponse(final byte[] data, final int[] rowEnd) {
+			pos = rowEnd.length - 1;
+			this.rowEnd = rowEnd;
+			this.data = data;
+			binary = null;
 		}
 
 		/**
@@ -2898,13 +4166,42 @@ public class MonetConnection
 		public String addLine(final String line, final LineType linetype) {
 			if (linetype != LineType.RESULT)
 				return "protocol violation: unexpected " + linetype + " line in data block: " + line;
-			// add to the backing array
-			data[++pos] = line;
+			final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+			addRow(bytes, 0, bytes.length);
+
+			// all is well
+			return null;
+		}
+
+		/**
+		 * addLine adds the current line of the given reader to this
+		 * object's data array, without decoding it.
+		 *
+		 * @param in the reader positioned at the line to add
+		 * @return a non-null String if the line is invalid,
+		 *         or additional lines are not allowed.
+		 */
+		@Override
+		public String addLine(final BufferedMCLReader in) {
+			if (in.getLineType() != LineType.RESULT)
+				return "protocol violation: unexpected " + in.getLineType() + " line in data block: " + in.getLine();
+			addRow(in.getLineBuffer(), in.getLineOffset(), in.getLineLength());
 
 			// all is well
 			return null;
 		}
 
+		/**
+		 * Appends the bytes of a row to the data array.
+		 */
+		private void addRow(final byte[] buf, final int off, final int len) {
+			final int start = pos >= 0 ? rowEnd[pos] : 0;
+			if (start + len > data.length)
+				data = Arrays.copyOf(data, Math.max(data.length * 2, start + len));
+			System.arraycopy(buf, off, data, start, len);
+			rowEnd[++pos] = start + len;
+		}
+
 		/**
 		 * Returns whether this Response expects more lines to be added
 		 * to it.
@@ -2914,7 +4211,7 @@ public class MonetConnection
 		@Override
 		public boolean wantsMore() {
 			// remember: pos is the value already stored
-			return pos + 1 < data.length;
+			return rowEnd != null && pos + 1 < rowEnd.length;
 		}
 
 		/**
@@ -2942,25 +4239,29 @@ public class MonetConnection
 		@Override
 		public void close() {
 			// feed all rows to the garbage collector
-			Arrays.fill(data, null);
+			data = null;
 		}
 
 		/**
-		 * Retrieves the required row.  Warning: if the requested rows
-		 * is out of bounds, an IndexOutOfBoundsException will be
-		 * thrown.
+		 * Makes the required row the current tuple of the given
+		 * TupleLineParser.  Warning: if the requested row is out of
+		 * bounds, an IndexOutOfBoundsException will be thrown.
 		 *
-		 * @param line the row to retrieve
-		 * @return the requested row as String
+		 * @param line the row to load
+		 * @param tlp the TupleLineParser to load the row into
+		 * @return false if the row is not present
+		 * @throws MCLParseException if the row cannot be parsed
 		 */
-		String getRow(final int line) {
-			if (forwardOnly) {
-				final String ret = data[line];
-				data[line] = null;
-				return ret;
-			} else {
-				return data[line];
+		boolean loadRow(final int line, final TupleLineParser tlp) throws MCLParseException {
+			if (binary != null) {
+				tlp.load(binary, line);
+				return true;
 			}
+			if (line > pos || data == null)
+				return false;
+			final int start = line > 0 ? rowEnd[line - 1] : 0;
+			tlp.parse(data, start, rowEnd[line] - start);
+			return true;
 		}
 	}
 	// }}}
@@ -3196,6 +4497,17 @@ public class MonetConnection
 			executeQuery(queryTempl, query);
 		}
 
+		/**
+		 * Executes the query written by the given QueryWriter and
+		 * stores the results in this ResponseList.
+		 *
+		 * @param query the writer of the query to execute
+		 * @throws SQLException if a database error occurs
+		 */
+		void processQuery(final QueryWriter query) throws SQLException {
+			executeQuery(queryTempl, null, query);
+		}
+
 		/**
 		 * Internal executor of queries.
 		 *
@@ -3203,11 +4515,24 @@ public class MonetConnection
 		 * @param query the query to execute
 		 * @throws SQLException if a database error occurs
 		 */
-		@SuppressWarnings("fallthrough")
 		void executeQuery(final String[] templ, final String query)
 			throws SQLException
 		{
-			String error = null;
+			executeQuery(templ, query, null);
+		}
+
+		/**
+		 * Internal executor of queries.
+		 *
+		 * @param templ the template to fill in
+		 * @param query the query to execute, used when writer is null
+		 * @param writer the writer of the query to execute, or null
+		 * @throws SQLException if a database error occurs
+		 */
+		private void executeQuery(final String[] templ, final String query, final QueryWriter writer)
+			throws SQLException
+		{
+			final String error;
 
 			try {
 				synchronized (server) {
@@ -3215,213 +4540,356 @@ public class MonetConnection
 					// have the prompt it is possible (and most likely) that we
 					// already have the prompt and do not have to skip any
 					// lines.  Ignore errors from previous result sets.
+					readPendingReplies();
 					in.discardRemainder();
 
-					// {{{ set reply size
-					/**
-					 * Change the reply size of the server.  If the given
-					 * value is the same as the current value known to use,
-					 * then ignore this call.  If it is set to 0 we get a
-					 * prompt after the server sent it's header.
-					 */
-					int size = cachesize;
-					if (size == 0)
-						size = defaultFetchSize;
-					if (maxrows > 0 && maxrows < size)
-						size = (int)maxrows;
-					// don't do work if it's not needed
-					if (lang == LANG_SQL && size != curReplySize && templ != commandTempl) {
-						sendControlCommand("reply_size " + size);
-
-						// store the reply size after a successful change
+					checkSchemaChange(query);
+					if (writer != null)
+						sendQuery(templ, writer);
+					else
+						sendQuery(templ, query);
+					error = readResponses();
+				} // end of synchronized (server)
+			} catch (SocketTimeoutException e) {
+				close(); // JDBC 4.1 semantics, abort()
+				throw new SQLNonTransientConnectionException("connection timed out", "08M33");
+			} catch (IOException e) {
+				closed = true;
+				throw new SQLNonTransientConnectionException(e.getMessage() + " (mserver5 still alive?)", "08006");
+			}
+			if (error != null)
+				throw toSQLException(error);
+		}
+
+		/**
+		 * Sends the given query without reading its reply, such that
+		 * more queries can be sent before the reply arrives.  The reply
+		 * is read later on by the given PendingReply, which calls
+		 * {@link #readPipelined()}.
+		 *
+		 * @param query the SQL query to send
+		 * @param reply the pending reply which reads the reply
+		 * @throws SQLException if an IO error occurs
+		 */
+		void sendPipelined(final String query, final PendingReply reply) throws SQLException {
+			try {
+				synchronized (server) {
+					// only skip the remainder of an earlier reply when no
+					// replies are outstanding, else it would read those
+					if (pendingReplies.isEmpty())
+						in.discardRemainder();
+					// bound the number of unread replies
+					while (pendingReplies.size() >= MAX_PENDING_REPLIES)
+						readPendingReply();
+					checkSchemaChange(query);
+					// queue a change of the reply size like the query,
+					// sendControlCommand() would read all outstanding replies
+					final int size = newReplySize(queryTempl);
+					if (size >= 0) {
+						out.writeLine(commandTempl[0] + "reply_size " + size + commandTempl[1]);
+						pendingReplies.add(new PendingReplySize(curReplySize, size));
 						curReplySize = size;
 					}
-					// }}} set reply size
+					out.writeLine(queryTempl[0] + query + queryTempl[1]);
+					pendingReplies.add(reply);
+				}
+			} catch (SocketTimeoutException e) {
+				close(); // JDBC 4.1 semantics, abort()
+				throw new SQLNonTransientConnectionException("connection timed out", "08M33");
+			} catch (IOException e) {
+				closed = true;
+				throw new SQLNonTransientConnectionException(e.getMessage() + " (mserver5 still alive?)", "08006");
+			}
+		}
 
-					// send query to the server
-					out.writeLine(templ[0] + query + templ[1]);
+		/**
+		 * Reads the reply to a query sent by {@link #sendPipelined}.
+		 * Must be called while holding the lock on server.
+		 *
+		 * @throws IOException if an IO error occurs
+		 * @throws SQLException if the server reported an error
+		 */
+		void readPipelined() throws IOException, SQLException {
+			final String error = readResponses();
+			if (error != null)
+				throw toSQLException(error);
+		}
 
-					// go for new results
-					in.advance();
-					Response res = null;
-					while (in.getLineType() != LineType.PROMPT) {
-						// each response should start with a start of header (or error)
-						switch (in.getLineType()) {
-						case SOHEADER:
-							// make the response object, and fill it
-							try {
-								switch (sohp.parse(in.getLine())) {
-								case StartOfHeaderParser.Q_PARSE:
-									throw new MCLParseException("Q_PARSE header not allowed here", 1);
-								case StartOfHeaderParser.Q_TABLE:
-								case StartOfHeaderParser.Q_PREPARE: {
-									final int id = sohp.getNextAsInt();
-									long tuplecount = sohp.getNextAsLong();
-									final int columncount = sohp.getNextAsInt();
-									final int rowcount = sohp.getNextAsInt();
-									// enforce the maxrows setting
-									if (maxrows != 0 && tuplecount > maxrows)
-										tuplecount = maxrows;
-									res = new ResultSetResponse(id, tuplecount, columncount, rowcount, this, seqnr);
-									// only add this resultset to the hashmap if it can possibly have an additional datablock
-									if (rowcount < tuplecount) {
-										if (rsresponses == null)
-											rsresponses = new HashMap<Integer, ResultSetResponse>();
-										rsresponses.put(id, (ResultSetResponse) res);
-									}
-								} break;
-								case StartOfHeaderParser.Q_UPDATE:
-									res = new UpdateResponse(sohp.getNextAsLong(),   // count
-												 sohp.getNextAsString() // key-id
-												);
-									break;
-								case StartOfHeaderParser.Q_SCHEMA:
-									res = new SchemaResponse();
-									break;
-								case StartOfHeaderParser.Q_TRANS:
-									final boolean ac = sohp.getNextAsString().equals("t");
-									if (autoCommit && ac) {
-										addWarning("Server enabled auto commit mode " +
-											"while local state already was auto commit.", "01M11");
-									}
-									autoCommit = ac;
-									res = new AutoCommitResponse(ac);
-									break;
-								case StartOfHeaderParser.Q_BLOCK: {
-									// a new block of results for a response...
-									final int id = sohp.getNextAsInt();
-									sohp.getNextAsInt();	// columncount
-									final int rowcount = sohp.getNextAsInt();
-									final int offset = sohp.getNextAsInt();
-									final ResultSetResponse t;
-									if (rsresponses != null)
-										t = rsresponses.get(id);
-									else
-										t = null;
-									if (t == null) {
-										error = "M0M12!no ResultSetResponse with id " + id + " found";
-										break;
-									}
-									final DataBlockResponse r = new DataBlockResponse(rowcount, t.getRSType() == ResultSet.TYPE_FORWARD_ONLY);
-									t.addDataBlockResponse(offset, r);
-									res = r;
-								} break;
-								} // end of switch (sohp.parse(tmpLine))
-							} catch (MCLParseException e) {
-								final int offset = e.getErrorOffset();
-								error = "M0M10!error while parsing start of header:\n" +
-									e.getMessage() +
-									" found: '" + in.getLine().charAt(offset) +
-									"' in: \"" + in.getLine() +
-									"\" at pos: " + offset;
-								// flush all the rest
-								in.discardRemainder();
-								break;
-							}
+		/**
+		 * Sends the query to the server, after changing the reply size
+		 * of the server if needed.  Must be called while holding the
+		 * lock on server.
+		 *
+		 * @param templ the template to fill in
+		 * @param query the query to send
+		 * @throws IOException if an IO error occurs
+		 * @throws SQLException if changing the reply size fails
+		 */
+		private void sendQuery(final String[] templ, final String query) throws IOException, SQLException {
+			updateReplySize(templ);
 
-							// immediately handle errors after parsing the header (res may be null)
-							if (error != null) {
-								in.discardRemainder();
-								break;
-							}
+			// send query to the server
+			out.writeLine(templ[0] + query + templ[1]);
+		}
 
-							// advance to the line after the header
-							in.advance();
+		/**
+		 * Changes the reply size of the server if needed, before a
+		 * query is sent.  Must be called while holding the lock on server.
+		 *
+		 * @param templ the template the query is sent with
+		 * @throws SQLException if changing the reply size fails
+		 */
+		private void updateReplySize(final String[] templ) throws SQLException {
+			final int size = newReplySize(templ);
+			if (size >= 0) {
+				sendControlCommand("reply_size " + size);
 
-							// stuff all header lines into the res
-							while (error == null && in.getLineType() == LineType.HEADER) {
-								error = res.addLine(in.getLine(), in.getLineType());
-								in.advance();
-							}
+				// store the reply size after a successful change
+				curReplySize = size;
+			}
+		}
 
-							// then feed it more lines until it is satisfied
-							while (error == null && res.wantsMore()) {
-								error = res.addLine(in.getLine(), in.getLineType());
-								in.advance();
-							}
+		/**
+		 * Determines the reply size the server needs before a query is
+		 * sent.
+		 *
+		 * @param templ the template the query is sent with
+		 * @return the new reply size, or -1 if it need not be changed
+		 */
+		private int newReplySize(final String[] templ) {
+			// {{{ set reply size
+			/**
+			 * Change the reply size of the server.  If the given
+			 * value is the same as the current value known to use,
+			 * then ignore this call.  If it is set to 0 we get a
+			 * prompt after the server sent it's header.
+			 */
+			int size = cachesize;
+			if (size == 0)
+				size = defaultFetchSize;
+			if (maxrows > 0 && maxrows < size)
+				size = (int)maxrows;
+			// don't do work if it's not needed
+			if (lang == LANG_SQL && size != curReplySize && templ != commandTempl)
+				return size;
+			return -1;
+			// }}} set reply size
+		}
 
-							if (error != null) {
-								// right, some protocol violation,
-								// skip the rest of the result
-								error = "M0M10!" + error;
-								in.discardRemainder(error);
-								break;
-							}
+		/**
+		 * Sends the query written by the given QueryWriter to the
+		 * server.  The query is passed on to the socket in blocks while
+		 * it is being written, so it is never held in memory as a whole.
+		 * Must be called while holding the lock on server.
+		 *
+		 * @param templ the template to fill in
+		 * @param writer the writer of the query to send
+		 * @throws IOException if an IO error occurs
+		 * @throws SQLException if changing the reply size fails
+		 */
+		private void sendQuery(final String[] templ, final QueryWriter writer) throws IOException, SQLException {
+			updateReplySize(templ);
+			out.write(templ[0]);
+			writer.writeTo(out);
+			out.writeLine(templ[1]);
+		}
 
-							// it is of no use to store DataBlockResponses, you never want to
-							// retrieve them directly anyway
-							if (!(res instanceof DataBlockResponse))
-								responses.add(res);
+		/**
+		 * Reads the reply to the last query sent and stores the Responses
+		 * in this ResponseList.  Must be called while holding the lock on
+		 * server.
+		 *
+		 * @return the error reported by the server, or null
+		 * @throws IOException if an IO error occurs
+		 */
+		@SuppressWarnings("fallthrough")
+		private String readResponses() throws IOException {
+			String error = null;
 
-							// We have already advanced 'in' to the next line in the response
-							// so we're ready to start the next iteration of the loop.
-							break;
-						case INFO:
-							addWarning(in.getLine().substring(1), "01000");
-							// read the next line (can be prompt, new result, error, etc.)
-							// before we start the loop over
-							in.advance();
-							break;
-						case FILETRANSFER:
-							// Consume the command
-							in.advance();
-							final String transferCommand = in.getLine();
-							// Consume the fake prompt inserted by MapiSocket.
-							in.advance();
-							// Handle the request
-							if (transferCommand != null)
-								error = handleTransfer(transferCommand);
-							else
-								error = "Protocol violation, expected transfer command, got nothing";
-							// Then prepare for the next iteration
-							if (error != null) {
-								out.writeLine(error + "\n");
-								error = in.discardRemainder();
-							} else {
-								in.resetLineType();
-								in.advance();
+			// go for new results
+			in.advance();
+			Response res = null;
+			while (in.getLineType() != LineType.PROMPT) {
+				// each response should start with a start of header (or error)
+				switch (in.getLineType()) {
+				case SOHEADER:
+					// make the response object, and fill it
+					try {
+						switch (sohp.parse(in.getLine())) {
+						case StartOfHeaderParser.Q_PARSE:
+							throw new MCLParseException("Q_PARSE header not allowed here", 1);
+						case StartOfHeaderParser.Q_TABLE:
+						case StartOfHeaderParser.Q_PREPARE: {
+							final int id = sohp.getNextAsInt();
+							long tuplecount = sohp.getNextAsLong();
+							final int columncount = sohp.getNextAsInt();
+							final int rowcount = sohp.getNextAsInt();
+							// enforce the maxrows setting
+							if (maxrows != 0 && tuplecount > maxrows)
+								tuplecount = maxrows;
+							res = new ResultSetResponse(id, tuplecount, columncount, rowcount, this, seqnr);
+							// only add this resultset to the hashmap if it can possibly have an additional datablock
+							if (rowcount < tuplecount) {
+								if (rsresponses == null)
+									rsresponses = new HashMap<Integer, ResultSetResponse>();
+								rsresponses.put(id, (ResultSetResponse) res);
 							}
+						} break;
+						case StartOfHeaderParser.Q_UPDATE:
+							res = new UpdateResponse(sohp.getNextAsLong(),   // count
+										 sohp.getNextAsString() // key-id
+										);
 							break;
-						default:
-							// we have something we don't expect/understand, let's make it an error message
-							String msg = "M0M10!protocol violation, unexpected " + in.getLineType() + " line: " + in.getLine();
-							error = in.discardRemainder(msg);
+						case StartOfHeaderParser.Q_SCHEMA:
+							res = new SchemaResponse();
+							// DDL may have dropped or altered objects cached statements are bound to
+							if (preparedCache != null)
+								preparedCacheStale = true;
 							break;
-						case ERROR:
-							// read everything till the prompt (should be
-							// error) we don't know if we ignore some
-							// garbage here... but the log should reveal that
-							error = in.discardRemainder(in.getLine().substring(1));
+						case StartOfHeaderParser.Q_TRANS:
+							final boolean ac = sohp.getNextAsString().equals("t");
+							if (autoCommit && ac) {
+								addWarning("Server enabled auto commit mode " +
+									"while local state already was auto commit.", "01M11");
+							}
+							autoCommit = ac;
+							res = new AutoCommitResponse(ac);
 							break;
-						} // end of switch (linetype)
-					} // end of while (linetype != LineType.PROMPT)
-				} // end of synchronized (server)
+						case StartOfHeaderParser.Q_BLOCK: {
+							// a new block of results for a response...
+							final int id = sohp.getNextAsInt();
+							sohp.getNextAsInt();	// columncount
+							final int rowcount = sohp.getNextAsInt();
+							final int offset = sohp.getNextAsInt();
+							final ResultSetResponse t;
+							if (rsresponses != null)
+								t = rsresponses.get(id);
+							else
+								t = null;
+							if (t == null) {
+								error = "M0M12!no ResultSetResponse with id " + id + " found";
+								break;
+							}
+							final DataBlockResponse r = new DataBlockResponse(rowcount);
+							t.addDataBlockResponse(offset, r);
+							res = r;
+						} break;
+						} // end of switch (sohp.parse(tmpLine))
+					} catch (MCLParseException e) {
+						final int offset = e.getErrorOffset();
+						error = "M0M10!error while parsing start of header:\n" +
+							e.getMessage() +
+							" found: '" + in.getLine().charAt(offset) +
+							"' in: \"" + in.getLine() +
+							"\" at pos: " + offset;
+						// flush all the rest
+						in.discardRemainder();
+						break;
+					}
 
-				if (error != null) {
-					SQLException ret = null;
-					final String[] errors = error.split("\n");
-					for (int i = 0; i < errors.length; i++) {
-						final SQLException newErr;
-						if (errors[i].length() >= 6) {
-							newErr = new SQLException(errors[i].substring(6), errors[i].substring(0, 5));
-						} else {
-							newErr = new SQLNonTransientConnectionException(errors[i], "08000");
-						}
-						if (ret == null) {
-							ret = newErr;
-						} else {
-							ret.setNextException(newErr);
-						}
+					// immediately handle errors after parsing the header (res may be null)
+					if (error != null) {
+						in.discardRemainder();
+						break;
+					}
+
+					// advance to the line after the header
+					in.advance();
+
+					// stuff all header lines into the res
+					while (error == null && in.getLineType() == LineType.HEADER) {
+						error = res.addLine(in.getLine(), in.getLineType());
+						in.advance();
+					}
+
+					// then feed it more lines until it is satisfied
+					while (error == null && res.wantsMore()) {
+						error = res.addLine(in);
+						in.advance();
+					}
+
+					if (error != null) {
+						// right, some protocol violation,
+						// skip the rest of the result
+						error = "M0M10!" + error;
+						in.discardRemainder(error);
+						break;
+					}
+
+					// it is of no use to store DataBlockResponses, you never want to
+					// retrieve them directly anyway
+					if (!(res instanceof DataBlockResponse))
+						responses.add(res);
+
+					// We have already advanced 'in' to the next line in the response
+					// so we're ready to start the next iteration of the loop.
+					break;
+				case INFO:
+					addWarning(in.getLine().substring(1), "01000");
+					// read the next line (can be prompt, new result, error, etc.)
+					// before we start the loop over
+					in.advance();
+					break;
+				case FILETRANSFER:
+					// Consume the command
+					in.advance();
+					final String transferCommand = in.getLine();
+					// Consume the fake prompt inserted by MapiSocket.
+					in.advance();
+					// Handle the request
+					if (transferCommand != null)
+						error = handleTransfer(transferCommand);
+					else
+						error = "Protocol violation, expected transfer command, got nothing";
+					// Then prepare for the next iteration
+					if (error != null) {
+						out.writeLine(error + "\n");
+						error = in.discardRemainder();
+					} else {
+						in.resetLineType();
+						in.advance();
 					}
-					throw ret;
+					break;
+				default:
+					// we have something we don't expect/understand, let's make it an error message
+					String msg = "M0M10!protocol violation, unexpected " + in.getLineType() + " line: " + in.getLine();
+					error = in.discardRemainder(msg);
+					break;
+				case ERROR:
+					// read everything till the prompt (should be
+					// error) we don't know if we ignore some
+					// garbage here... but the log should reveal that
+					error = in.discardRemainder(in.getLine().substring(1));
+					break;
+				} // end of switch (linetype)
+			} // end of while (linetype != LineType.PROMPT)
+			return error;
+		}
+
+		/**
+		 * Converts the error(s) reported by the server into a chain of
+		 * SQLExceptions.
+		 *
+		 * @param error the errors, one per line
+		 * @return the SQLException
+		 */
+		private SQLException toSQLException(final String error) {
+			SQLException ret = null;
+			final String[] errors = error.split("\n");
+			for (int i = 0; i < errors.length; i++) {
+				final SQLException newErr;
+				if (errors[i].length() >= 6) {
+					newErr = new SQLException(errors[i].substring(6), errors[i].substring(0, 5));
+				} else {
+					newErr = new SQLNonTransientConnectionException(errors[i], "08000");
+				}
+				if (ret == null) {
+					ret = newErr;
+				} else {
+					ret.setNextException(newErr);
 				}
-			} catch (SocketTimeoutException e) {
-				close(); // JDBC 4.1 semantics, abort()
-				throw new SQLNonTransientConnectionException("connection timed out", "08M33");
-			} catch (IOException e) {
-				closed = true;
-				throw new SQLNonTransientConnectionException(e.getMessage() + " (mserver5 still alive?)", "08006");
 			}
+			return ret;
 		}
 	}
 	// }}}
@@ -3485,6 +4953,75 @@ public class MonetConnection
 		return handle.getError();
 	}
 
+	/**
+	 * Decides the number of rows to fetch per result set block for
+	 * forward-only result sets which are read without interruption and
+	 * whose fetch size was not set explicitly.
+	 *
+	 * To be registered with {@link MonetConnection#setFetchSizePolicy(FetchSizePolicy)}
+	 */
+	public interface FetchSizePolicy {
+		/**
+		 * Called before a block of rows is fetched from the server.
+		 *
+		 * @param current the number of rows per block so far
+		 * @param rowWidth the estimated size of a row in bytes, based on
+		 *        the column widths reported by the server
+		 * @param fetchNanos the time in nanoseconds it took to fetch the
+		 *        previous block, or -1 if not known
+		 * @param remaining the number of rows not fetched yet
+		 * @return the number of rows to fetch in the next block, a value
+		 *         not larger than current keeps the current number
+		 */
+		int nextFetchSize(int current, int rowWidth, long fetchNanos, long remaining);
+	}
+
+	/** The default policy, grows the fetch size once by a factor 10 */
+	private static final FetchSizePolicy TENFOLD_FETCH_SIZE_POLICY = new FetchSizePolicy() {
+		@Override
+		public int nextFetchSize(final int current, final int rowWidth, final long fetchNanos, final long remaining) {
+			if (remaining > current && current < DEF_FETCHSIZE * 10)
+				return current * 10;
+			return current;
+		}
+	};
+
+	/**
+	 * A FetchSizePolicy which grows the fetch size geometrically until a
+	 * block takes a given number of bytes.  The growth factor depends on
+	 * the time it took to fetch the previous block: blocks which arrive
+	 * quickly are dominated by the network round trip and grow up to 8
+	 * times, slower blocks double in size.
+	 */
+	public static final class AdaptiveFetchSizePolicy implements FetchSizePolicy {
+		/** The fetch duration blocks grow towards, long enough to hide the round trip */
+		private static final long TARGET_NANOS = 100L * 1000 * 1000;
+
+		private final long budget;
+
+		/**
+		 * Creates an AdaptiveFetchSizePolicy
+		 *
+		 * @param budget the maximum size of a block in bytes
+		 */
+		public AdaptiveFetchSizePolicy(final long budget) {
+			this.budget = budget;
+		}
+
+		@Override
+		public int nextFetchSize(final int current, final int rowWidth, final long fetchNanos, final long remaining) {
+			if (remaining <= current)
+				return current;
+			final long maxRows = Math.min(Integer.MAX_VALUE, budget / Math.max(rowWidth, 1));
+			if (current >= maxRows)
+				return current;
+			long factor = 2;
+			if (fetchNanos >= 0)
+				factor = Math.max(2, Math.min(8, TARGET_NANOS / Math.max(fetchNanos, 1)));
+			return (int) Math.min(maxRows, current * factor);
+		}
+	}
+
 	/**
 	 * Callback for sending files for COPY INTO "table" FROM 'file-name' ON CLIENT commands
 	 *
@@ -3548,6 +5085,7 @@ public class MonetConnection
 		private final Runnable cancellationCallback;
 		private final boolean textMode;
 		private PrintStream print = null;
+		private MapiSocket.UploadStream upload = null;
 		private String error = null;
 		private int customChunkSize = -1;
 
@@ -3605,6 +5143,7 @@ public class MonetConnection
 					up.setCancellationCallback(cancellationCallback);
 					print = new PrintStream(textMode ? new StripCrLfStream(up) : up, false, "UTF-8");
 					up.write('\n');
+					upload = up;
 				} catch (UnsupportedEncodingException e) {
 					throw new RuntimeException("The system is guaranteed to support the UTF-8 encoding but apparently it doesn't", e);
 				}
@@ -3648,6 +5187,33 @@ public class MonetConnection
 			}
 		}
 
+		/**
+		 * Read from the given channel, from its current position up to
+		 * its end, and write it to the server.
+		 *
+		 * For binary uploads the data is read from the channel directly
+		 * into the blocks sent to the server, which avoids the copies
+		 * made by {@link #uploadFrom(InputStream)}.  This makes it the
+		 * preferred way to upload the contents of a {@link java.nio.channels.FileChannel}.
+		 *
+		 * For text mode uploads, the data MUST be validly UTF-8 encoded.
+		 * The channel must be in blocking mode.
+		 *
+		 * @param channel channel to read from
+		 * @throws IOException when I/O problem occurs
+		 * @throws java.nio.channels.IllegalBlockingModeException if the
+		 *         channel is a SelectableChannel in non-blocking mode
+		 */
+		public void uploadFrom(final ReadableByteChannel channel) throws IOException {
+			if (textMode) {
+				// line endings must be converted, use the stream path
+				uploadFrom(Channels.newInputStream(channel));
+				return;
+			}
+			getStream().flush();
+			upload.transferFrom(channel);
+		}
+
 		/**
 		 * Read data from the given buffered reader and send it to the server
 		 *
@@ -0,0 +1,597 @@
+/*
+ * SPDX-License-Identifier: MPL-2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.  If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright 2024, 2025 MonetDB Foundation;
+ * Copyright August 2008 - 2023 MonetDB B.V.;
+ * Copyright 1997 - July 2008 CWI.
+ */
+
+package org.monetdb.jdbc;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+
+/**
+ *<pre>
+ * A DataSource with a built-in connection pool for the MonetDB database.
+ * {@link #getConnection()} hands out a pooled connection when one is
+ * idle and only connects to the server when none is.  Closing the
+ * returned Connection resets its session state (auto commit, schema,
+ * time zone) and puts it back in the pool.
+ *
+ * The pool keeps between minIdle and maxIdle idle connections.
+ * Connections older than maxLifetime are closed instead of reused.
+ * A connection which has been idle for longer than validationInterval
+ * is checked with isValid() before it is handed out, recently used
+ * ones are trusted.  When leakDetectionThreshold is set, connections
+ * which are not returned within that time are reported, together with
+ * the stack trace of the code which took them from the pool, to the
+ * log writer or, if there is none, to System.err.
+ *
+ * Only connections for the configured user and password are pooled,
+ * {@link #getConnection(String, String)} with other credentials throws
+ * a SQLFeatureNotSupportedException.
+ *
+ * As a ConnectionPoolDataSource it also provides unpooled
+ * {@link MonetPooledConnection}s to application server pools.
+ *</pre>
+ */
+public final class MonetConnectionPoolDataSource
+	extends MonetWrapper
+	implements ConnectionPoolDataSource, DataSource, AutoCloseable
+{
+	/** How often the pool is checked for expired and leaked connections, and replenished */
+	private static final long HOUSEKEEPING_MILLIS = 1000;
+
+	private String description = "MonetDB connection pool";
+	private int loginTimeout;
+	private String user;
+	private String password;
+	private String url = "jdbc:monetdb://localhost/";
+	private PrintWriter logWriter;
+
+	private int minIdle = 0;
+	private int maxIdle = 10;
+	private long maxLifetime = 0;
+	private long leakDetectionThreshold = 0;
+	private long validationInterval = 5000;
+
+	private final MonetDriver driver = new MonetDriver();
+	/** Idle connections, the most recently returned one first */
+	private final ArrayDeque<Entry> idle = new ArrayDeque<Entry>();
+	/** Connections handed out by getConnection() */
+	private final IdentityHashMap<PooledConnection, Entry> inUse = new IdentityHashMap<PooledConnection, Entry>();
+	private boolean closed = false;
+	private ScheduledExecutorService housekeeper;
+
+	private final ConnectionEventListener listener = new ConnectionEventListener() {
+		@Override
+		public void connectionClosed(final ConnectionEvent event) {
+			returned((PooledConnection) event.getSource());
+		}
+
+		@Override
+		public void connectionErrorOccurred(final ConnectionEvent event) {
+			discard((PooledConnection) event.getSource());
+		}
+	};
+
+	/** A pooled connection with its bookkeeping */
+	private static final class Entry {
+		final MonetPooledConnection pc;
+		final long created;
+		long lastUsed;
+		long checkedOut;
+		Throwable checkoutTrace;
+		boolean leakReported;
+
+		Entry(final MonetPooledConnection pc, final long now) {
+			this.pc = pc;
+			this.created = now;
+			this.lastUsed = now;
+		}
+	}
+
+	/**
+	 * Constructor of a MonetConnectionPoolDataSource which uses default
+	 * settings for a connection.  You probably want to change this
+	 * setting using the method setURL.
+	 */
+	public MonetConnectionPoolDataSource() {
+	}
+
+	//== the pool
+
+	/**
+	 * Retrieves a connection from the pool, connecting to the server
+	 * if no idle connection is available.
+	 * @return a Connection which returns to the pool when closed
+	 * @throws SQLException if connecting to the database fails or
+	 *         this pool is closed
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		while (true) {
+			Entry e;
+			synchronized (this) {
+				if (closed)
+					throw new SQLException("Connection pool is closed", "M1M20");
+				startHousekeeping();
+				e = idle.pollFirst();
+				if (e != null)
+					inUse.put(e.pc, e);
+			}
+			if (e == null) {
+				e = newEntry();
+				synchronized (this) {
+					inUse.put(e.pc, e);
+				}
+			} else {
+				final long now = now();
+				if (isExpired(e, now) || (now - e.lastUsed > validationInterval && !e.pc.isValid(Math.max(loginTimeout, 0)))) {
+					discard(e.pc);
+					continue;
+				}
+			}
+			final Throwable trace = leakDetectionThreshold > 0 ? new Throwable("Connection taken from the pool here") : null;
+			synchronized (this) {
+				e.checkedOut = now();
+				e.checkoutTrace = trace;
+				e.leakReported = false;
+			}
+			try {
+				return e.pc.getConnection();
+			} catch (SQLException ex) {
+				discard(e.pc);
+			}
+		}
+	}
+
+	/**
+	 * Retrieves a connection from the pool for the given credentials.
+	 * Only connections with the configured user and password are pooled,
+	 * so other credentials are not supported: a pooling DataSource
+	 * should not silently hand out connections which are not pooled.
+	 * Use {@link #getPooledConnection(String, String)} or a separate
+	 * pool per user for those.
+	 * @param username the username to use
+	 * @param password the password to use
+	 * @return a Connection which returns to the pool when closed
+	 * @throws SQLFeatureNotSupportedException if the credentials differ
+	 *         from the configured user and password
+	 * @throws SQLException if connecting to the database fails or
+	 *         this pool is closed
+	 */
+	@Override
+	public Connection getConnection(final String username, final String password) throws SQLException {
+		if (!Objects.equals(username, user) || !Objects.equals(password, this.password))
+			throw new SQLFeatureNotSupportedException("Only connections for the configured user and password are pooled", "0A000");
+		return getConnection();
+	}
+
+	/**
+	 * Closes the idle connections and stops pooling.  Connections which
+	 * are in use are closed when they are returned.
+	 */
+	@Override
+	public void close() {
+		final ArrayList<Entry> toClose;
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			toClose = new ArrayList<Entry>(idle);
+			idle.clear();
+			if (housekeeper != null) {
+				housekeeper.shutdown();
+				housekeeper = null;
+			}
+		}
+		for (Entry e : toClose)
+			e.pc.close();
+	}
+
+	/**
+	 * Returns the number of idle connections in the pool.
+	 * @return the number of idle connections
+	 */
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * Returns the number of connections handed out and not yet returned.
+	 * @return the number of connections in use
+	 */
+	public synchronized int getActiveCount() {
+		return inUse.size();
+	}
+
+	private void returned(final PooledConnection pc) {
+		final Entry e;
+		final boolean keep;
+		synchronized (this) {
+			e = inUse.remove(pc);
+			if (e == null)
+				return;
+			e.lastUsed = now();
+			e.checkoutTrace = null;
+			keep = !closed && idle.size() < maxIdle && !isExpired(e, e.lastUsed);
+			if (keep)
+				idle.addFirst(e);
+		}
+		if (!keep)
+			e.pc.close();
+	}
+
+	private void discard(final PooledConnection pc) {
+		synchronized (this) {
+			inUse.remove(pc);
+		}
+		try {
+			pc.close();
+		} catch (SQLException e) {
+			// it is broken anyway
+		}
+	}
+
+	private boolean isExpired(final Entry e, final long now) {
+		return maxLifetime > 0 && now - e.created >= maxLifetime;
+	}
+
+	private Entry newEntry() throws SQLException {
+		final MonetPooledConnection pc = new MonetPooledConnection(connect(user, password));
+		pc.addConnectionEventListener(listener);
+		return new Entry(pc, now());
+	}
+
+	private MonetConnection connect(final String username, final String password) throws SQLException {
+		final Properties props = new Properties();
+		if (username != null)
+			props.put("user", username);
+		if (password != null)
+			props.put("password", password);
+		return (MonetConnection) driver.connect(url, props);
+	}
+
+	private static long now() {
+		return System.nanoTime() / 1000000;
+	}
+
+	/** Called with the lock held */
+	private void startHousekeeping() {
+		if (housekeeper != null)
+			return;
+		housekeeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, "MonetDB pool housekeeper");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		housekeeper.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				housekeep();
+			}
+		}, HOUSEKEEPING_MILLIS, HOUSEKEEPING_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Closes expired idle connections, reports leaked connections and
+	 * opens connections until there are minIdle idle ones.
+	 */
+	private void housekeep() {
+		final long now = now();
+		final ArrayList<Entry> expired = new ArrayList<Entry>();
+		final ArrayList<Entry> leaked = new ArrayList<Entry>();
+		int missing;
+		synchronized (this) {
+			if (closed)
+				return;
+			for (Iterator<Entry> it = idle.iterator(); it.hasNext(); ) {
+				final Entry e = it.next();
+				if (isExpired(e, now)) {
+					it.remove();
+					expired.add(e);
+				}
+			}
+			if (leakDetectionThreshold > 0) {
+				for (Entry e : inUse.values()) {
+					if (!e.leakReported && now - e.checkedOut >= leakDetectionThreshold) {
+						e.leakReported = true;
+						leaked.add(e);
+					}
+				}
+			}
+			missing = minIdle - idle.size();
+		}
+		for (Entry e : expired)
+			e.pc.close();
+		for (Entry e : leaked)
+			log("Possible connection leak: connection in use for " + (now - e.checkedOut) + " ms", e.checkoutTrace);
+		for (; missing > 0; missing--) {
+			final Entry e;
+			try {
+				e = newEntry();
+			} catch (SQLException ex) {
+				log("Cannot open idle connection: " + ex.getMessage(), null);
+				return;
+			}
+			synchronized (this) {
+				if (!closed && idle.size() < minIdle) {
+					idle.addLast(e);
+					continue;
+				}
+			}
+			e.pc.close();
+			return;
+		}
+	}
+
+	private void log(final String message, final Throwable trace) {
+		final PrintWriter w;
+		synchronized (this) {
+			w = logWriter;
+		}
+		if (w != null) {
+			w.println(message);
+			if (trace != null)
+				trace.printStackTrace(w);
+			w.flush();
+		} else {
+			System.err.println(message);
+			if (trace != null)
+				trace.printStackTrace();
+		}
+	}
+
+	//== ConnectionPoolDataSource
+
+	/**
+	 * Attempts to establish a physical connection that can be used as a
+	 * pooled connection by an external pool.  It is not part of the
+	 * pool of this data source.
+	 * @return a MonetPooledConnection
+	 * @throws SQLException if connecting to the database fails
+	 */
+	@Override
+	public PooledConnection getPooledConnection() throws SQLException {
+		return getPooledConnection(user, password);
+	}
+
+	/**
+	 * Attempts to establish a physical connection that can be used as a
+	 * pooled connection by an external pool.  It is not part of the
+	 * pool of this data source.
+	 * @param username the username to use
+	 * @param password the password to use
+	 * @return a MonetPooledConnection
+	 * @throws SQLException if connecting to the database fails
+	 */
+	@Override
+	public PooledConnection getPooledConnection(final String username, final String password) throws SQLException {
+		return new MonetPooledConnection(connect(username, password));
+	}
+
+	//== settings
+
+	/**
+	 * Gets the maximum time in seconds that this data source can wait while
+	 * attempting to connect to a database.
+	 * @return login timeout default is 0 (infinite)
+	 */
+	@Override
+	public int getLoginTimeout() {
+		return loginTimeout;
+	}
+
+	/**
+	 * Sets the maximum time in seconds that this data source will wait while
+	 * attempting to connect to a database.  It is also used as timeout for
+	 * validating idle connections.
+	 * @param seconds the number of seconds to wait before aborting the connect
+	 */
+	@Override
+	public void setLoginTimeout(final int seconds) {
+		loginTimeout = seconds;
+	}
+
+	/**
+	 * Retrieves the log writer for this DataSource object.
+	 * @return the log writer, or null if none has been set
+	 */
+	@Override
+	public synchronized PrintWriter getLogWriter() {
+		return logWriter;
+	}
+
+	/**
+	 * Sets the log writer for this DataSource object, used to report
+	 * leaked connections and failures to open idle connections.
+	 * @param out a PrintWriter or null to report to System.err
+	 */
+	@Override
+	public synchronized void setLogWriter(final PrintWriter out) {
+		logWriter = out;
+	}
+
+	/**
+	 * Sets the password to use when connecting.  There is no getter
+	 * for obvious reasons.
+	 * @param password the password
+	 */
+	public void setPassword(final String password) {
+		this.password = password;
+	}
+
+	/**
+	 * Gets the username
+	 * @return the username
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * Sets the username
+	 * @param user the username
+	 */
+	public void setUser(final String user) {
+		this.user = user;
+	}
+
+	/**
+	 * Gets the connection URL
+	 * @return the connection URL
+	 */
+	public String getURL() {
+		return url;
+	}
+
+	/**
+	 * Sets the connection URL
+	 * @param url the connection URL
+	 */
+	public void setURL(final String url) {
+		this.url = url;
+	}
+
+	/**
+	 * Gets the description
+	 * @return the description
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Sets the description
+	 * @param description the description
+	 */
+	public void setDescription(final String description) {
+		this.description = description;
+	}
+
+	/**
+	 * Gets the number of idle connections the pool tries to keep available
+	 * @return the minimum number of idle connections, default 0
+	 */
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	/**
+	 * Sets the number of idle connections the pool tries to keep available.
+	 * Missing connections are opened in the background.
+	 * @param minIdle the minimum number of idle connections
+	 */
+	public void setMinIdle(final int minIdle) {
+		this.minIdle = Math.max(minIdle, 0);
+	}
+
+	/**
+	 * Gets the maximum number of idle connections
+	 * @return the maximum number of idle connections, default 10
+	 */
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	/**
+	 * Sets the maximum number of idle connections.  Connections returned
+	 * while this many are idle are closed.
+	 * @param maxIdle the maximum number of idle connections
+	 */
+	public void setMaxIdle(final int maxIdle) {
+		this.maxIdle = Math.max(maxIdle, 0);
+	}
+
+	/**
+	 * Gets the maximum lifetime of a connection
+	 * @return the maximum lifetime in milliseconds, 0 for unlimited
+	 */
+	public long getMaxLifetime() {
+		return maxLifetime;
+	}
+
+	/**
+	 * Sets the maximum lifetime of a connection.  Older connections are
+	 * closed when they are idle instead of being handed out again.
+	 * @param millis the maximum lifetime in milliseconds, 0 for unlimited
+	 */
+	public void setMaxLifetime(final long millis) {
+		maxLifetime = Math.max(millis, 0);
+	}
+
+	/**
+	 * Gets the time after which a connection that has not been returned
+	 * is reported as possibly leaked
+	 * @return the threshold in milliseconds, 0 if leak detection is off
+	 */
+	public long getLeakDetectionThreshold() {
+		return leakDetectionThreshold;
+	}
+
+	/**
+	 * Sets the time after which a connection that has not been returned
+	 * is reported as possibly leaked.  Leak detection records a stack
+	 * trace for every connection handed out.
+	 * @param millis the threshold in milliseconds, 0 to turn leak detection off
+	 */
+	public void setLeakDetectionThreshold(final long millis) {
+		leakDetectionThreshold = Math.max(millis, 0);
+	}
+
+	/**
+	 * Gets the time a connection may be idle before it is validated
+	 * @return the validation interval in milliseconds
+	 */
+	public long getValidationInterval() {
+		return validationInterval;
+	}
+
+	/**
+	 * Sets the time a connection may be idle before it is validated when
+	 * it is handed out.  Connections used more recently are trusted to
+	 * be valid, which saves a round trip per getConnection().
+	 * @param millis the validation interval in milliseconds, 0 to always validate
+	 */
+	public void setValidationInterval(final long millis) {
+		validationInterval = Math.max(millis, 0);
+	}
+
+	/**
+	 * Return the parent Logger of all the Loggers used by this data
+	 * source.
+	 * @return the parent Logger for this data source
+	 * @throws SQLFeatureNotSupportedException if the data source does
+	 *         not use java.util.logging
+	 */
+	@Override
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw newSQLFeatureNotSupportedException("getParentLogger");
+	}
+}
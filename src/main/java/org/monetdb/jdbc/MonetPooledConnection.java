@@ -0,0 +1,329 @@
+/*
+ * SPDX-License-Identifier: MPL-2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.  If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright 2024, 2025 MonetDB Foundation;
+ * Copyright August 2008 - 2023 MonetDB B.V.;
+ * Copyright 1997 - July 2008 CWI.
+ */
+
+package org.monetdb.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import javax.sql.StatementEventListener;
+
+/**
+ *<pre>
+ * A PooledConnection for the MonetDB database.
+ * It wraps a physical MonetConnection and hands out logical Connection
+ * handles for it.  Closing a handle does not close the physical
+ * connection, instead its session state is reset and the registered
+ * ConnectionEventListeners, normally a connection pool, are notified
+ * so the connection can be handed out again.
+ *
+ * Instances are created by {@link MonetConnectionPoolDataSource}.
+ * Statement pooling is not done, so no StatementEvents are fired.
+ *
+ * The Statements, ResultSets and DatabaseMetaData created through a
+ * handle are wrapped too, so their getConnection() and getStatement()
+ * return the handle and the wrapped Statement instead of the physical
+ * objects.  When the physical connection, or a physical Statement, is
+ * obtained with unwrap(), it can no longer be trusted to be unused once
+ * the handle is closed, so it is then reported as failed instead of
+ * being reused.
+ *</pre>
+ */
+public final class MonetPooledConnection implements PooledConnection {
+	/** The physical connection */
+	private final MonetConnection conn;
+	/** The schema right after connecting, restored when a handle is closed */
+	private final String schema;
+	private final CopyOnWriteArrayList<ConnectionEventListener> listeners = new CopyOnWriteArrayList<ConnectionEventListener>();
+	private final CopyOnWriteArrayList<StatementEventListener> statementListeners = new CopyOnWriteArrayList<StatementEventListener>();
+	/** The currently open logical connection, if any */
+	private Handle handle;
+
+	/**
+	 * Constructs a MonetPooledConnection for the given physical connection.
+	 *
+	 * @param conn a new MonetConnection
+	 * @throws SQLException if the current schema cannot be determined
+	 */
+	MonetPooledConnection(final MonetConnection conn) throws SQLException {
+		this.conn = conn;
+		this.schema = conn.getSchema();
+	}
+
+	/**
+	 * Creates a logical Connection handle for the physical connection.
+	 * If a handle is still open, it is closed first, without returning
+	 * the physical connection to the pool.
+	 *
+	 * @return a Connection which returns the physical connection to the
+	 *         pool when it is closed
+	 * @throws SQLException if the physical connection is closed
+	 */
+	@Override
+	public synchronized Connection getConnection() throws SQLException {
+		if (conn.isClosed())
+			throw new SQLException("PooledConnection is closed", "M1M20");
+		if (handle != null)
+			handle.closed = true;
+		handle = new Handle();
+		return (Connection) Proxy.newProxyInstance(
+				MonetPooledConnection.class.getClassLoader(),
+				new Class<?>[] { Connection.class },
+				handle);
+	}
+
+	/**
+	 * Closes the physical connection.
+	 */
+	@Override
+	public synchronized void close() {
+		if (handle != null) {
+			handle.closed = true;
+			handle = null;
+		}
+		conn.close();
+	}
+
+	@Override
+	public void addConnectionEventListener(final ConnectionEventListener listener) {
+		listeners.addIfAbsent(listener);
+	}
+
+	@Override
+	public void removeConnectionEventListener(final ConnectionEventListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public void addStatementEventListener(final StatementEventListener listener) {
+		statementListeners.addIfAbsent(listener);
+	}
+
+	@Override
+	public void removeStatementEventListener(final StatementEventListener listener) {
+		statementListeners.remove(listener);
+	}
+
+	/**
+	 * Checks whether the physical connection is still usable.
+	 *
+	 * @param timeout the time in seconds to wait for the server
+	 * @return true if the connection is valid
+	 */
+	boolean isValid(final int timeout) {
+		try {
+			return conn.isValid(timeout);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Called when a handle is closed: resets the session and tells the
+	 * listeners the physical connection can be reused, or that it
+	 * cannot if the reset failed.
+	 */
+	private void handleClosed(final Handle h) {
+		synchronized (this) {
+			if (h.closed)
+				return;
+			h.closed = true;
+			if (handle == h)
+				handle = null;
+		}
+		if (h.escaped) {
+			fireConnectionError(new SQLException("The physical connection has been unwrapped, so it is not reused", "08003"));
+			return;
+		}
+		try {
+			conn.resetSession(schema, h.used);
+		} catch (SQLException e) {
+			fireConnectionError(e);
+			return;
+		}
+		final ConnectionEvent event = new ConnectionEvent(this);
+		for (ConnectionEventListener l : listeners)
+			l.connectionClosed(event);
+	}
+
+	private void fireConnectionError(final SQLException e) {
+		final ConnectionEvent event = new ConnectionEvent(this, e);
+		for (ConnectionEventListener l : listeners)
+			l.connectionErrorOccurred(event);
+	}
+
+	/**
+	 * Reports a failure of a call on the physical connection or one of
+	 * its objects to the listeners, if it broke the connection.
+	 *
+	 * @return the exception thrown by the call
+	 */
+	private Throwable failed(final InvocationTargetException e) {
+		final Throwable t = e.getCause();
+		if (t instanceof SQLException) {
+			final String state = ((SQLException) t).getSQLState();
+			if (conn.isClosed() || (state != null && state.startsWith("08")))
+				fireConnectionError((SQLException) t);
+		}
+		return t;
+	}
+
+	/**
+	 * Wraps a Statement, ResultSet or DatabaseMetaData returned by the
+	 * physical connection or one of its wrapped children, such that its
+	 * getConnection() returns the handle.
+	 *
+	 * @param result the object returned by the physical object
+	 * @param type the declared return type of the method
+	 * @param handle the handle the object was created through
+	 * @param handleProxy the proxy of that handle
+	 * @param parent the proxy the object was returned by
+	 * @return the wrapped object, or result if it needs no wrapping
+	 */
+	private Object wrap(final Object result, final Class<?> type, final Handle handle, final Object handleProxy, final Object parent) {
+		if (result == null || !(type == Statement.class || type == PreparedStatement.class
+				|| type == CallableStatement.class || type == DatabaseMetaData.class
+				|| type == ResultSet.class))
+			return result;
+		return Proxy.newProxyInstance(
+				MonetPooledConnection.class.getClassLoader(),
+				new Class<?>[] { type },
+				new Child(result, handle, handleProxy, parent));
+	}
+
+	/**
+	 * A Statement, ResultSet or DatabaseMetaData created through a
+	 * handle.  All methods are forwarded, except getConnection() which
+	 * returns the handle and getStatement() which returns the wrapped
+	 * Statement.  Returned Statements and ResultSets are wrapped too.
+	 */
+	private final class Child implements InvocationHandler {
+		private final Object target;
+		private final Handle handle;
+		private final Object handleProxy;
+		private final Object parent;
+
+		Child(final Object target, final Handle handle, final Object handleProxy, final Object parent) {
+			this.target = target;
+			this.handle = handle;
+			this.handleProxy = handleProxy;
+			this.parent = parent;
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+			final String name = method.getName();
+			if (method.getDeclaringClass() == Object.class) {
+				switch (name) {
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					default:
+						return target.toString();
+				}
+			}
+			if (name.equals("getConnection") && method.getParameterCount() == 0)
+				return handleProxy;
+			if (name.equals("unwrap")) {
+				if (args[0] instanceof Class && ((Class<?>) args[0]).isInstance(proxy))
+					return proxy;
+				// the physical statement leads to the physical connection
+				handle.escaped = true;
+			}
+			final Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw failed(e);
+			}
+			if (name.equals("getStatement") && result != null && Proxy.isProxyClass(parent.getClass())) {
+				// hand out the Statement proxy this ResultSet came from
+				final InvocationHandler h = Proxy.getInvocationHandler(parent);
+				if (h instanceof Child && ((Child) h).target == result)
+					return parent;
+			}
+			return wrap(result, method.getReturnType(), handle, handleProxy, proxy);
+		}
+	}
+
+	/**
+	 * The logical connection, forwarding all Connection methods to the
+	 * physical connection, except close().  Methods which can change
+	 * the session state, like creating statements, are remembered so
+	 * the reset on close can be skipped when they were not used.
+	 */
+	private final class Handle implements InvocationHandler {
+		private volatile boolean closed = false;
+		private volatile boolean used = false;
+		/** Whether the physical connection has been handed out by unwrap() */
+		private volatile boolean escaped = false;
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+			final String name = method.getName();
+			if (method.getDeclaringClass() == Object.class) {
+				switch (name) {
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					default:
+						return "MonetPooledConnection handle for " + conn.toString();
+				}
+			}
+			switch (name) {
+				case "close":
+					handleClosed(this);
+					return null;
+				case "isClosed":
+					return closed || conn.isClosed();
+				case "isValid":
+					if (closed)
+						return false;
+					break;
+				case "unwrap":
+					if (closed)
+						throw new SQLException("Connection is closed", "M1M20");
+					if (args[0] instanceof Class && ((Class<?>) args[0]).isInstance(proxy))
+						return proxy;
+					// the physical connection escapes and may be used after close
+					escaped = true;
+					break;
+				default:
+					if (closed)
+						throw new SQLException("Connection is closed", "M1M20");
+					if (name.startsWith("create") || name.startsWith("prepare")
+					 || name.equals("setSchema"))
+						used = true;
+					break;
+			}
+			try {
+				return wrap(method.invoke(conn, args), method.getReturnType(), this, proxy, proxy);
+			} catch (InvocationTargetException e) {
+				throw failed(e);
+			}
+		}
+	}
+}
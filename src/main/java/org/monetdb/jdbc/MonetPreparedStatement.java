@@ -12,14 +12,17 @@
 
 package org.monetdb.jdbc;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URL;
-import java.nio.CharBuffer;
 import java.sql.Array;
+import java.sql.BatchUpdateException;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.Date;
@@ -43,6 +46,8 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  *<pre>
@@ -86,6 +91,29 @@ public class MonetPreparedStatement
 	private final int paramCount;
 	private final int paramStartIndex;
 	private final String[] paramValues;
+	/** The values set by the stream setters, which are read during execute, created when first needed */
+	private StreamValue[] streamValues;
+	/** The server side prepared statement, possibly shared through the statement cache of the connection */
+	private final Prepared prepared;
+	/** Whether insertPrefix and batchInsert have been determined yet */
+	private boolean batchInsertChecked;
+	/** The statement up to and including VALUES if it inserts one row of parameters, else null */
+	private String insertPrefix;
+	/** The columns of values bound by setColumn(), indexed by parameter number, or null if none are bound */
+	private Column[] columns;
+	/** The number of rows of the bound columns */
+	private int columnRows;
+
+	/** A quoted SQL identifier */
+	private static final String QUOTED = "\"(?:[^\"]|\"\")*\"";
+	/** An SQL identifier, possibly quoted */
+	private static final String IDENTIFIER = "(?:" + QUOTED + "|[A-Za-z_][A-Za-z0-9_]*)";
+	/** A single table INSERT INTO ... VALUES statement with only parameters as values.
+	 *  Group 1 is the statement up to and including VALUES. */
+	private static final Pattern INSERT_VALUES = Pattern.compile(
+			"(\\s*INSERT\\s+INTO\\s+" + IDENTIFIER + "(?:\\s*\\.\\s*" + IDENTIFIER + ")?\\s*" +
+			"(?:\\((?:[^()\"]|" + QUOTED + ")*\\)\\s*)?VALUES)\\s*\\(\\s*\\?\\s*(?:,\\s*\\?\\s*)*\\)\\s*;?\\s*",
+			Pattern.CASE_INSENSITIVE);
 
 	/** A cache to reduce the number of ResultSetMetaData objects created
 	 * by getMetaData() to maximum 1 per PreparedStatement */
@@ -138,6 +166,42 @@ public class MonetPreparedStatement
 		if (prepareQuery == null)
 			throw new SQLException("Missing SQL statement", "M1M05");
 
+		Prepared p = connection.acquirePrepared(prepareQuery);
+		if (p == null) {
+			p = prepare(connection, prepareQuery);
+			connection.preparedCreated(p);
+		}
+		prepared = p;
+		sqlStatement = p.sql;
+		id = p.id;
+		size = p.size;
+		monetdbType = p.monetdbType;
+		javaType = p.javaType;
+		digits = p.digits;
+		scale = p.scale;
+		schema = p.schema;
+		table = p.table;
+		column = p.column;
+		paramCount = p.paramCount;
+		paramStartIndex = p.paramStartIndex;
+		// System.out.println("paramCount= " + paramCount + " paramStartIndex= " + paramStartIndex + "\n");
+
+		paramValues = new String[paramCount + 1];	// parameters start from 1
+
+		// PreparedStatements are by default poolable
+		poolable = true;
+	}
+
+	/**
+	 * Sends the PREPARE statement to the server and parses the metadata
+	 * of the result columns and parameters it returns.
+	 *
+	 * @param connection the connection that created this Statement
+	 * @param prepareQuery the query string to prepare
+	 * @return the server side prepared statement
+	 * @throws SQLException if an error occurs during execution of the prepareQuery
+	 */
+	private Prepared prepare(final MonetConnection connection, final String prepareQuery) throws SQLException {
 		/**
 		 * For a PREPARE statement the server sends back a result set
 		 * with info on all the result columns and parameters of a
@@ -159,22 +223,21 @@ public class MonetPreparedStatement
 
 		setFetchSize(originalFetchSize);
 
-		sqlStatement = prepareQuery;
 		// cheat a bit to get the ID and the number of columns
-		id = ((MonetConnection.ResultSetResponse)header).id;
-		size = (int)((MonetConnection.ResultSetResponse)header).tuplecount;
+		final int id = ((MonetConnection.ResultSetResponse)header).id;
+		final int size = (int)((MonetConnection.ResultSetResponse)header).tuplecount;
 
 		int countParam = 0;
 		int firstParamOffset = 0;
 
 		// initialise metadata arrays. size can be 0.
-		monetdbType = new String[size];
-		javaType = new int[size];
-		digits = new int[size];
-		scale = new int[size];
-		schema = new String[size];
-		table = new String[size];
-		column = new String[size];
+		final String[] monetdbType = new String[size];
+		final int[] javaType = new int[size];
+		final int[] digits = new int[size];
+		final int[] scale = new int[size];
+		final String[] schema = new String[size];
+		final String[] table = new String[size];
+		final String[] column = new String[size];
 
 		// fill the arrays
 		final ResultSet rs = super.getResultSet();
@@ -216,14 +279,8 @@ public class MonetPreparedStatement
 			}
 			rs.close();
 		}
-		paramCount = countParam;
-		paramStartIndex = firstParamOffset;
-		// System.out.println("paramCount= " + paramCount + " paramStartIndex= " + paramStartIndex + "\n");
-
-		paramValues = new String[paramCount + 1];	// parameters start from 1
-
-		// PreparedStatements are by default poolable
-		poolable = true;
+		return new Prepared(prepareQuery, id, size, monetdbType, javaType, digits, scale,
+				schema, table, column, countParam, firstParamOffset);
 	}
 
 
@@ -237,7 +294,11 @@ public class MonetPreparedStatement
 	 */
 	@Override
 	public void addBatch() throws SQLException {
-		super.addBatch(transform());
+		// the rows of a batch are kept until executeBatch, so read the streams now
+		readStreams();
+		checkBatchInsert();
+		// with batch_insert_rows= set, rows for an INSERT are sent as multi-row INSERTs by executeBatch
+		super.addBatch(batchInsert != null ? transformRow() : transform());
 	}
 
 	/** override the addBatch from the Statement to throw an SQLException */
@@ -260,6 +321,7 @@ public class MonetPreparedStatement
 		for (int param = 1; param <= paramCount; param++) {
 			paramValues[param] = null;
 		}
+		streamValues = null;
 	}
 
 	/**
@@ -281,7 +343,16 @@ public class MonetPreparedStatement
 	 */
 	@Override
 	public boolean execute() throws SQLException {
-		return super.execute(transform());
+		if (streamValues != null)
+			return executeStreamed();
+		final String exec = transform();
+		try {
+			return super.execute(exec);
+		} catch (SQLException e) {
+			// a cached statement may be bound to objects which have changed since
+			connection.evictPrepared(prepared);
+			throw e;
+		}
 	}
 
 	/** override the execute from the Statement to throw an SQLException */
@@ -590,7 +661,9 @@ public class MonetPreparedStatement
 	 * the specified number of bytes. When a very large binary value is input
 	 * to a LONGVARBINARY parameter, it may be more practical to send it via a
 	 * java.io.InputStream object. The data will be read from the stream as
-	 * needed until end-of-file is reached.
+	 * needed until end-of-file is reached.  The stream is not read until the
+	 * statement is executed, the hex encoded value is then written to the
+	 * server while it is being read, so it is never held in memory as a whole.
 	 *
 	 * Note: This stream object can either be a standard Java stream object or
 	 * your own subclass that implements the standard interface.
@@ -598,14 +671,12 @@ public class MonetPreparedStatement
 	 * @param parameterIndex the first parameter is 1, the second is 2, ...
 	 * @param x the java input stream which contains the binary parameter value
 	 * @throws SQLException if a database access error occurs
-	 * @throws SQLFeatureNotSupportedException the JDBC driver does
-	 *         not support this method
 	 */
 	@Override
 	public void setBinaryStream(final int parameterIndex, final InputStream x)
 		throws SQLException
 	{
-		throw newSQLFeatureNotSupportedException("setBinaryStream");
+		setStream(parameterIndex, x, null, -1L);
 	}
 
 	/**
@@ -613,7 +684,9 @@ public class MonetPreparedStatement
 	 * the specified number of bytes. When a very large binary value is input
 	 * to a LONGVARBINARY parameter, it may be more practical to send it via a
 	 * java.io.InputStream object. The data will be read from the stream as
-	 * needed until end-of-file is reached.
+	 * needed until end-of-file is reached.  The stream is not read until the
+	 * statement is executed, the hex encoded value is then written to the
+	 * server while it is being read, so it is never held in memory as a whole.
 	 *
 	 * Note: This stream object can either be a standard Java stream object or
 	 * your own subclass that implements the standard interface.
@@ -622,14 +695,12 @@ public class MonetPreparedStatement
 	 * @param x the java input stream which contains the binary parameter value
 	 * @param length the number of bytes in the stream
 	 * @throws SQLException if a database access error occurs
-	 * @throws SQLFeatureNotSupportedException the JDBC driver does
-	 *         not support this method
 	 */
 	@Override
 	public void setBinaryStream(final int parameterIndex, final InputStream x, final int length)
 		throws SQLException
 	{
-		throw newSQLFeatureNotSupportedException("setBinaryStream");
+		setBinaryStream(parameterIndex, x, (long)length);
 	}
 
 	/**
@@ -637,7 +708,9 @@ public class MonetPreparedStatement
 	 * the specified number of bytes. When a very large binary value is input
 	 * to a LONGVARBINARY parameter, it may be more practical to send it via a
 	 * java.io.InputStream object. The data will be read from the stream as
-	 * needed until end-of-file is reached.
+	 * needed until end-of-file is reached.  The stream is not read until the
+	 * statement is executed, the hex encoded value is then written to the
+	 * server while it is being read, so it is never held in memory as a whole.
 	 *
 	 * Note: This stream object can either be a standard Java stream object or
 	 * your own subclass that implements the standard interface.
@@ -646,14 +719,14 @@ public class MonetPreparedStatement
 	 * @param x the java input stream which contains the binary parameter value
 	 * @param length the number of bytes in the stream
 	 * @throws SQLException if a database access error occurs
-	 * @throws SQLFeatureNotSupportedException the JDBC driver does
-	 *         not support this method
 	 */
 	@Override
 	public void setBinaryStream(final int parameterIndex, final InputStream x, final long length)
 		throws SQLException
 	{
-		throw newSQLFeatureNotSupportedException("setBinaryStream");
+		if (length < 0)
+			throw new SQLException("Invalid length value: " + length, "M1M05");
+		setStream(parameterIndex, x, null, length);
 	}
 
 	/**
@@ -663,12 +736,10 @@ public class MonetPreparedStatement
 	 * @param parameterIndex the first parameter is 1, the second is 2, ...
 	 * @param x a Blob object that maps an SQL BLOB value
 	 * @throws SQLException if a database access error occurs
-	 * @throws SQLFeatureNotSupportedException the JDBC driver does
-	 *         not support this method
 	 */
 	@Override
 	public void setBlob(final int parameterIndex, final InputStream x) throws SQLException {
-		throw newSQLFeatureNotSupportedException("setBlob");
+		setBinaryStream(parameterIndex, x);
 	}
 
 	/**
@@ -678,12 +749,14 @@ public class MonetPreparedStatement
 	 * @param parameterIndex the first parameter is 1, the second is 2, ...
 	 * @param x a Blob object that maps an SQL BLOB value
 	 * @throws SQLException if a database access error occurs
-	 * @throws SQLFeatureNotSupportedException the JDBC driver does
-	 *         not support this method
 	 */
 	@Override
 	public void setBlob(final int parameterIndex, final Blob x) throws SQLException {
-		throw newSQLFeatureNotSupportedException("setBlob");
+		if (x == null) {
+			setValue(parameterIndex, "NULL");
+			return;
+		}
+		setBinaryStream(parameterIndex, x.getBinaryStream(), x.length());
 	}
 
 	/**
@@ -702,12 +775,10 @@ public class MonetPreparedStatement
 	 *           value to
 	 * @param length the number of bytes in the parameter data
 	 * @throws SQLException if a database access error occurs
-	 * @throws SQLFeatureNotSupportedException the JDBC driver does
-	 *         not support this method
 	 */
 	@Override
 	public void setBlob(final int parameterIndex, final InputStream is, final long length) throws SQLException {
-		throw newSQLFeatureNotSupportedException("setBlob");
+		setBinaryStream(parameterIndex, is, length);
 	}
 
 	/**
@@ -737,6 +808,8 @@ public class MonetPreparedStatement
 		setValue(parameterIndex, Byte.toString(x));
 	}
 
+	/** The number of bytes or characters read from a stream parameter at a time */
+	private static final int STREAM_CHUNK = 8192;
 	private static final char[] HEXES = {'0','1','2','3','4','5','6','7','8','9','A','B','C','D','E','F'};
 	/**
 	 * Sets the designated parameter to the given Java array of bytes. The
@@ -861,6 +934,10 @@ public class MonetPreparedStatement
 	 * Sets the designated parameter to the given Clob object. The driver
 	 * converts this to an SQL CLOB value when it sends it to the database.
 	 *
+	 * For a character string parameter the reader is not read until the
+	 * statement is executed, the characters are then written to the server
+	 * while they are read, so the value is never held in memory as a whole.
+	 *
 	 * @param parameterIndex the first parameter is 1, the second is 2, ...
 	 * @param reader an object that contains the data to set the parameter value to
 	 * @throws SQLException if a database access error occurs
@@ -872,18 +949,11 @@ public class MonetPreparedStatement
 			return;
 		}
 
-		// Some buffer. Size of 8192 is default for BufferedReader, so...
-		final int size = 8192;
-		final char[] arr = new char[size];
-		final StringBuilder buf = new StringBuilder(size * 32);
-		try {
-			int numChars;
-			while ((numChars = reader.read(arr, 0, size)) > 0) {
-				buf.append(arr, 0, numChars);
-			}
-			setString(parameterIndex, buf.toString());
-		} catch (IOException e) {
-			throw new SQLException("failed to read from stream: " + e.getMessage(), "M1M25");
+		if (isPlainString(getParamIdx(parameterIndex))) {
+			// no validation needed, send the characters while they are read
+			setStream(parameterIndex, null, reader, -1L);
+		} else {
+			setString(parameterIndex, readString(reader, -1L));
 		}
 	}
 
@@ -898,6 +968,9 @@ public class MonetPreparedStatement
 	 * extra work to determine whether the parameter data should be sent
 	 * to the server as a LONGVARCHAR or a CLOB.
 	 *
+	 * For a character string parameter the reader is not read until the
+	 * statement is executed, as for {@link #setClob(int, Reader)}.
+	 *
 	 * @param parameterIndex the first parameter is 1, the second is 2, ...
 	 * @param reader An object that contains the data to set the parameter value to.
 	 * @param length the number of characters in the parameter data.
@@ -909,25 +982,15 @@ public class MonetPreparedStatement
 			setValue(parameterIndex, "NULL");
 			return;
 		}
-		if (length < 0 || length > Integer.MAX_VALUE) {
+		if (length < 0) {
 			throw new SQLException("Invalid length value: " + length, "M1M05");
 		}
 
-		// simply serialise the Reader data into a large buffer
-		final CharBuffer buf = CharBuffer.allocate((int)length); // have to down cast
-		try {
-			long foo = 0;
-			while (foo < length) {
-				int n = reader.read(buf);
-				if (n < 0)
-					throw new SQLException("Stream ended unexpectedly at position " + foo + " out of " + length);
-				foo += n;
-			}
-			// We have to rewind the buffer, because otherwise toString() returns "".
-			buf.rewind();
-			setString(parameterIndex, buf.toString());
-		} catch (IOException e) {
-			throw new SQLException("failed to read from stream: " + e.getMessage(), "M1M25");
+		if (isPlainString(getParamIdx(parameterIndex))) {
+			// no validation needed, send the characters while they are read
+			setStream(parameterIndex, null, reader, length);
+		} else {
+			setString(parameterIndex, readString(reader, length));
 		}
 	}
 
@@ -2192,13 +2255,8 @@ public class MonetPreparedStatement
 	 */
 	@Override
 	public void close() {
-		if (!closed && id != -1) {
-			try {
-				connection.sendControlCommand("release " + id);
-			} catch (SQLException e) {
-				// probably server closed connection
-			}
-		}
+		if (!closed && id != -1)
+			connection.releasePrepared(prepared);
 		clearParameters();
 		rsmd = null;
 		pmd = null;
@@ -2225,7 +2283,8 @@ public class MonetPreparedStatement
 			/* when column[i] == null it is a parameter, when column[i] != null it is a result column of the prepared query */
 			if (column[i] == null) {
 				sb.append(" parameter ").append(param).append(" ").append(monetdbType[i]);
-				sb.append(", set value: ").append((paramValues[param] != null) ? paramValues[param] : "<null>").append("\n");
+				sb.append(", set value: ").append((paramValues[param] != null) ? paramValues[param]
+					: (streamValues != null && streamValues[param] != null) ? "<stream>" : "<null>").append("\n");
 				param++;
 			}
 		}
@@ -2267,11 +2326,343 @@ public class MonetPreparedStatement
 		return Math.max(getLargeUpdateCount(), 0L);
 	}
 
+	/**
+	 * Empties this PreparedStatement object's batch of rows, and
+	 * removes the columns bound by setColumn().
+	 */
+	@Override
+	public void clearBatch() {
+		super.clearBatch();
+		columns = null;
+		columnRows = 0;
+	}
+
+	/**
+	 * Submits the batch of rows to the database for execution.  When
+	 * columns have been bound with setColumn(), the rows of the columns
+	 * are executed after the rows added with addBatch(), see
+	 * {@link #setColumn(int, int[], boolean[])}.
+	 *
+	 * @return an array of update counts containing one element for each
+	 *         row in the batch
+	 * @throws SQLException if a database access error occurs, this
+	 *         method is called on a closed Statement or a parameter has
+	 *         no value
+	 * @throws BatchUpdateException if one of the rows fails to execute
+	 *         properly
+	 */
+	@Override
+	public long[] executeLargeBatch() throws SQLException {
+		if (columns == null) {
+			try {
+				return super.executeLargeBatch();
+			} catch (BatchUpdateException e) {
+				connection.evictPrepared(prepared);
+				throw e;
+			}
+		}
+		try {
+			return executeColumns();
+		} finally {
+			columns = null;
+			columnRows = 0;
+		}
+	}
+
 	//== end methods interface PreparedStatement
 
 
+	//== MonetDB specific methods for columnar batches, not part of the JDBC interface
+
+	/**
+	 * Binds an array of int values to the designated parameter, as
+	 * one value per row of a columnar batch.
+	 *
+	 * A columnar batch executes the statement once for every row of the
+	 * bound columns, when executeBatch() or executeLargeBatch() is
+	 * called.  All columns must have the same number of rows.  Parameters
+	 * without a column use their current value for all rows.  This avoids
+	 * a call to a setXXX() method per parameter and a call to addBatch()
+	 * per row, as the values are written as SQL text straight from the
+	 * arrays.  For an INSERT INTO ... VALUES (?, ...) statement the rows
+	 * are sent as multi-row INSERT statements, of at most
+	 * batch_insert_rows= rows each when that connection property is set.
+	 *
+	 * The arrays are not copied, so they must not be modified until the
+	 * batch has been executed.  Rows added with addBatch() are executed
+	 * before the rows of the columns.
+	 *
+	 * @param parameterIndex the first parameter is 1, the second is 2, ...
+	 * @param values the values, one per row
+	 * @param nulls when not null, the rows for which nulls[row] is true are NULL
+	 * @throws SQLException if the parameter index is invalid or the
+	 *         number of rows differs from that of the other columns
+	 */
+	public void setColumn(final int parameterIndex, final int[] values, final boolean[] nulls) throws SQLException {
+		bindColumn(parameterIndex, values == null ? -1 : values.length, nulls, new Column() {
+			@Override
+			public void append(final StringBuilder sb, final int row) {
+				if (nulls != null && nulls[row])
+					sb.append("NULL");
+				else
+					sb.append(values[row]);
+			}
+		});
+	}
+
+	/**
+	 * Binds an array of long values to the designated parameter, as
+	 * one value per row of a columnar batch.
+	 *
+	 * @param parameterIndex the first parameter is 1, the second is 2, ...
+	 * @param values the values, one per row
+	 * @param nulls when not null, the rows for which nulls[row] is true are NULL
+	 * @throws SQLException if the parameter index is invalid or the
+	 *         number of rows differs from that of the other columns
+	 * @see #setColumn(int, int[], boolean[])
+	 */
+	public void setColumn(final int parameterIndex, final long[] values, final boolean[] nulls) throws SQLException {
+		bindColumn(parameterIndex, values == null ? -1 : values.length, nulls, new Column() {
+			@Override
+			public void append(final StringBuilder sb, final int row) {
+				if (nulls != null && nulls[row])
+					sb.append("NULL");
+				else
+					sb.append(values[row]);
+			}
+		});
+	}
+
+	/**
+	 * Binds an array of double values to the designated parameter, as
+	 * one value per row of a columnar batch.
+	 *
+	 * @param parameterIndex the first parameter is 1, the second is 2, ...
+	 * @param values the values, one per row
+	 * @param nulls when not null, the rows for which nulls[row] is true are NULL
+	 * @throws SQLException if the parameter index is invalid or the
+	 *         number of rows differs from that of the other columns
+	 * @see #setColumn(int, int[], boolean[])
+	 */
+	public void setColumn(final int parameterIndex, final double[] values, final boolean[] nulls) throws SQLException {
+		bindColumn(parameterIndex, values == null ? -1 : values.length, nulls, new Column() {
+			@Override
+			public void append(final StringBuilder sb, final int row) {
+				if (nulls != null && nulls[row])
+					sb.append("NULL");
+				else
+					sb.append(values[row]);
+			}
+		});
+	}
+
+	/**
+	 * Binds an array of String values to the designated parameter, as
+	 * one value per row of a columnar batch.  A null element is NULL.
+	 * The values are converted as by {@link #setString(int, String)}.
+	 *
+	 * @param parameterIndex the first parameter is 1, the second is 2, ...
+	 * @param values the values, one per row
+	 * @throws SQLException if the parameter index is invalid or the
+	 *         number of rows differs from that of the other columns
+	 * @see #setColumn(int, int[], boolean[])
+	 */
+	public void setColumn(final int parameterIndex, final String[] values) throws SQLException {
+		final int paramIdx = getParamIdx(parameterIndex);
+		final Column column;
+		if (isPlainString(paramIdx)) {
+			// the common case, no validation or cast needed
+			column = new Column() {
+				@Override
+				public void append(final StringBuilder sb, final int row) {
+					final String v = values[row];
+					if (v == null) {
+						sb.append("NULL");
+						return;
+					}
+					// escape as MonetWrapper.sq() does, without creating Strings
+					sb.append('\'');
+					for (int i = 0; i < v.length(); i++) {
+						final char c = v.charAt(i);
+						if (c == '\\' || c == '\'')
+							sb.append('\\');
+						sb.append(c);
+					}
+					sb.append('\'');
+				}
+			};
+		} else {
+			column = new Column() {
+				@Override
+				public void append(final StringBuilder sb, final int row) throws SQLException {
+					final String old = paramValues[parameterIndex];
+					setString(parameterIndex, values[row]);
+					sb.append(paramValues[parameterIndex]);
+					paramValues[parameterIndex] = old;
+				}
+			};
+		}
+		bindColumn(parameterIndex, values == null ? -1 : values.length, null, column);
+	}
+
+	/**
+	 * Binds an array of byte arrays to the designated parameter, as one
+	 * value per row of a columnar batch.  A null element is NULL.
+	 *
+	 * @param parameterIndex the first parameter is 1, the second is 2, ...
+	 * @param values the values, one per row
+	 * @throws SQLException if the parameter index is invalid or the
+	 *         number of rows differs from that of the other columns
+	 * @see #setColumn(int, int[], boolean[])
+	 */
+	public void setColumn(final int parameterIndex, final byte[][] values) throws SQLException {
+		bindColumn(parameterIndex, values == null ? -1 : values.length, null, new Column() {
+			@Override
+			public void append(final StringBuilder sb, final int row) {
+				final byte[] v = values[row];
+				if (v == null) {
+					sb.append("NULL");
+					return;
+				}
+				sb.append("blob '");	// add a casting prefix
+				for (byte b : v) {
+					sb.append(HEXES[(b & 0xF0) >> 4])
+					  .append(HEXES[(b & 0x0F)]);
+				}
+				sb.append('\'');
+			}
+		});
+	}
+
+	/**
+	 * The values of a parameter bound by setColumn().
+	 */
+	private interface Column {
+		/**
+		 * Appends the value of the given row as SQL literal.
+		 *
+		 * @param sb the buffer to append to
+		 * @param row the row number, starting at 0
+		 * @throws SQLException if the value cannot be converted
+		 */
+		void append(StringBuilder sb, int row) throws SQLException;
+	}
+
+	/**
+	 * Checks and stores the column for the given parameter.
+	 */
+	private void bindColumn(final int parameterIndex, final int rows, final boolean[] nulls, final Column column) throws SQLException {
+		getParamIdx(parameterIndex);	// this will throw a SQLException if parameter can not be found
+		if (rows < 0)
+			throw new SQLException("Missing values for parameter " + parameterIndex, "M1M05");
+		if (nulls != null && nulls.length < rows)
+			throw new SQLException("Array of nulls is shorter than the values for parameter " + parameterIndex, "M1M05");
+		if (columns == null) {
+			columns = new Column[paramCount + 1];	// parameters start from 1
+			columnRows = rows;
+		} else if (rows != columnRows) {
+			throw new SQLException("Column for parameter " + parameterIndex + " has " + rows + " rows, expected " + columnRows, "M1M05");
+		}
+		columns[parameterIndex] = column;
+	}
+
+	/**
+	 * Returns whether setString() adds a String value for the given
+	 * parameter without validation or cast.
+	 */
+	private boolean isPlainString(final int paramIdx) {
+		switch (javaType[paramIdx]) {
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.CLOB:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.LONGNVARCHAR:
+				switch (monetdbType[paramIdx]) {
+					case "inet":
+					case "json":
+					case "url":
+					case "uuid":
+						return false;
+					default:
+						return true;
+				}
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Executes the rows of the bound columns, after the rows added with
+	 * addBatch().
+	 */
+	private long[] executeColumns() throws SQLException {
+		readStreams();
+		// check up front that the parameters without a column have a value
+		for (int param = 1; param <= paramCount; param++) {
+			if (columns[param] == null && paramValues[param] == null)
+				throw new SQLException("Cannot execute, parameter " + param + " is missing.", "M1M05");
+		}
+		checkBatchInsert();
+		if (insertPrefix == null) {
+			// no multi-row INSERT possible, execute the prepared statement per row
+			final StringBuilder row = new StringBuilder(32 + paramCount * 32);
+			for (int i = 0; i < columnRows; i++) {
+				row.setLength(0);	// clear the buffer
+				row.append("exec ").append(id);
+				appendValues(row, i);
+				super.addBatch(row.toString());
+			}
+			return super.executeLargeBatch();
+		}
+
+		// a failure in the rows added with addBatch() does not stop the rows of the columns
+		long[] batchCounts;
+		BatchUpdateException batchError = null;
+		try {
+			batchCounts = super.executeLargeBatch();
+		} catch (BatchUpdateException be) {
+			batchError = be;
+			batchCounts = be.getLargeUpdateCounts();
+		}
+		final int offset = batchCounts.length;
+		final long[] counts = new long[offset + columnRows];
+		System.arraycopy(batchCounts, 0, counts, 0, offset);
+		final BatchUpdateException e = new BatchUpdateException(
+				"Error(s) occurred while executing the batch, " +
+				"see chained SQLExceptions for details", "22000", 22000, counts, null);
+		if (batchError != null)
+			e.setNextException(batchError);
+		final int maxRows = connection.batchInsertRows > 0 ? connection.batchInsertRows : MAX_INSERT_ROWS;
+		final boolean rowsFailed = insertRows(insertPrefix, new InsertRows() {
+			@Override
+			public void append(final StringBuilder sb, final int row) throws SQLException {
+				appendValues(sb, row);
+			}
+		}, columnRows, maxRows, counts, offset, e);
+		if (rowsFailed || batchError != null)
+			throw e;
+		return counts;
+	}
+
+
 	//== internal helper methods which do not belong to the JDBC interface
 
+	/**
+	 * Determines insertPrefix and batchInsert the first time they are
+	 * needed.  The rows added with addBatch() are only sent as multi-row
+	 * INSERTs when the batch_insert_rows= connection property is set.
+	 */
+	private void checkBatchInsert() {
+		if (!batchInsertChecked) {
+			insertPrefix = insertValuesPrefix();
+			if (connection.batchInsertRows > 0)
+				batchInsert = insertPrefix;
+			batchInsertChecked = true;
+		}
+	}
+
 	/**
 	 * Returns the index (0..size-1) in the backing arrays for the given
 	 * parameter number or an SQLException when not valid
@@ -2304,6 +2695,150 @@ public class MonetPreparedStatement
 			paramValues[parameterIndex] = val;
 		else
 			paramValues[parameterIndex] = "NULL";
+		if (streamValues != null)
+			clearStream(parameterIndex);
+	}
+
+	/**
+	 * Sets the designated parameter to a stream which is read when the
+	 * statement is executed.  Exactly one of in and reader must be given,
+	 * when both are null the parameter is set to NULL.
+	 *
+	 * @param parameterIndex the parameter index
+	 * @param in the binary data, or null
+	 * @param reader the character data, or null
+	 * @param length the number of bytes or characters to read, or -1 to read until end-of-file
+	 * @throws SQLException if the given index is out of bounds
+	 */
+	private final void setStream(final int parameterIndex, final InputStream in, final Reader reader, final long length) throws SQLException {
+		if (in == null && reader == null) {
+			setValue(parameterIndex, "NULL");
+			return;
+		}
+		getParamIdx(parameterIndex);	// this will throw a SQLException if parameter can not be found
+
+		if (streamValues == null)
+			streamValues = new StreamValue[paramCount + 1];	// parameters start from 1
+		streamValues[parameterIndex] = new StreamValue(in, reader, length);
+		paramValues[parameterIndex] = null;
+	}
+
+	/**
+	 * Removes the stream of the given parameter, if any.
+	 */
+	private final void clearStream(final int parameterIndex) {
+		streamValues[parameterIndex] = null;
+		for (int param = 1; param <= paramCount; param++) {
+			if (streamValues[param] != null)
+				return;
+		}
+		streamValues = null;
+	}
+
+	/**
+	 * Reads the streams set for the parameters into ordinary parameter
+	 * values.  Used where the values must be kept, as for a batch.
+	 *
+	 * @throws SQLException if reading a stream fails
+	 */
+	private final void readStreams() throws SQLException {
+		// setting the value removes the stream, and streamValues when it was the last one
+		for (int param = 1; streamValues != null && param <= paramCount; param++) {
+			final StreamValue sv = streamValues[param];
+			if (sv == null)
+				continue;
+			if (sv.in != null)
+				setBytes(param, readBytes(sv.in, sv.length));
+			else
+				setString(param, readString(sv.reader, sv.length));
+		}
+	}
+
+	/**
+	 * Reads the given number of characters, or all characters when
+	 * length is -1, from the given Reader.
+	 */
+	private static final String readString(final Reader reader, final long length) throws SQLException {
+		if (length > Integer.MAX_VALUE)
+			throw new SQLException("Invalid length value: " + length, "M1M05");
+
+		// Some buffer. Size of 8192 is default for BufferedReader, so...
+		final char[] arr = new char[STREAM_CHUNK];
+		final StringBuilder buf = new StringBuilder(length >= 0 ? (int)length : STREAM_CHUNK * 32);
+		try {
+			while (length < 0 || buf.length() < length) {
+				final int numChars = reader.read(arr, 0, length < 0 ? arr.length : (int)Math.min(arr.length, length - buf.length()));
+				if (numChars < 0)
+					break;
+				buf.append(arr, 0, numChars);
+			}
+		} catch (IOException e) {
+			throw new SQLException("failed to read from stream: " + e.getMessage(), "M1M25");
+		}
+		if (length >= 0 && buf.length() < length)
+			throw new SQLException("Stream ended unexpectedly at position " + buf.length() + " out of " + length, "M1M25");
+		return buf.toString();
+	}
+
+	/**
+	 * Reads the given number of bytes, or all bytes when length is -1,
+	 * from the given InputStream.
+	 */
+	private static final byte[] readBytes(final InputStream in, final long length) throws SQLException {
+		if (length > Integer.MAX_VALUE)
+			throw new SQLException("Invalid length value: " + length, "M1M05");
+
+		final byte[] arr = new byte[STREAM_CHUNK];
+		final ByteArrayOutputStream buf = new ByteArrayOutputStream(length >= 0 ? (int)length : STREAM_CHUNK);
+		try {
+			while (length < 0 || buf.size() < length) {
+				final int n = in.read(arr, 0, length < 0 ? arr.length : (int)Math.min(arr.length, length - buf.size()));
+				if (n < 0)
+					break;
+				buf.write(arr, 0, n);
+			}
+		} catch (IOException e) {
+			throw new SQLException("failed to read from stream: " + e.getMessage(), "M1M25");
+		}
+		if (length >= 0 && buf.size() < length)
+			throw new SQLException("Stream ended unexpectedly at position " + buf.size() + " out of " + length, "M1M25");
+		return buf.toByteArray();
+	}
+
+	/**
+	 * Executes the statement with the current parameter values, of
+	 * which some are streams.  The streams are read while the exec
+	 * statement is sent to the server, so they are consumed and have to
+	 * be set again before the next execute.
+	 *
+	 * @return true if the first result is a ResultSet object
+	 * @throws SQLException if a parameter is missing, a stream cannot
+	 *         be read or a database access error occurs
+	 */
+	private boolean executeStreamed() throws SQLException {
+		// check up front, as a statement cannot be taken back once it is being sent
+		for (int param = 1; param <= paramCount; param++) {
+			if (paramValues[param] == null && streamValues[param] == null)
+				throw new SQLException("Cannot execute, parameter " + param + " is missing.", "M1M05");
+		}
+
+		final StreamWriter writer = new StreamWriter(streamValues);
+		streamValues = null;
+		SQLException error = null;
+		try {
+			final boolean ret = internalExecute("exec " + id, writer);
+			if (writer.failure == null)
+				return ret;
+		} catch (SQLException e) {
+			connection.evictPrepared(prepared);
+			if (writer.failure == null)
+				throw e;
+			error = e;
+		}
+		final SQLException e = new SQLException("failed to read from stream: " + writer.failure.getMessage(), "M1M25", writer.failure);
+		if (error != null)
+			e.setNextException(error);
+		throw e;
 	}
 
 	private StringBuilder execStmt;	// created once, re-used multiple times so much less objects are created and gc-ed
@@ -2321,16 +2856,244 @@ public class MonetPreparedStatement
 		else
 			execStmt.setLength(0);	// clear the buffer
 
-		execStmt.append("exec ").append(id).append('(');
+		execStmt.append("exec ").append(id);
+		appendValues(execStmt, -1);
+		return execStmt.toString();
+	}
+
+	/**
+	 * Constructs a "(paramval, ...)" row for the current parameter values,
+	 * to be appended to the prefix returned by insertValuesPrefix().
+	 *
+	 * @return the "(...)" string
+	 * @throws SQLException if not all parameters are set with a value
+	 */
+	private final String transformRow() throws SQLException {
+		if (execStmt == null)
+			execStmt = new StringBuilder(32 + paramCount * 32);
+		else
+			execStmt.setLength(0);	// clear the buffer
+
+		appendValues(execStmt, -1);
+		return execStmt.toString();
+	}
+
+	/**
+	 * Appends the parameter values in parentheses.  The values of
+	 * parameters bound to a column are taken from the given row of the
+	 * column, the others are the current parameter values.
+	 *
+	 * @param sb the buffer to append to
+	 * @param row the row of the bound columns, or -1 to use only the current parameter values
+	 * @throws SQLException if not all parameters are set with a value
+	 */
+	private final void appendValues(final StringBuilder sb, final int row) throws SQLException {
+		sb.append('(');
 		// check if all parameters are set and add the parameter values
 		for (int param = 1; param <= paramCount; param++) {
-			if (paramValues[param] == null)
-				throw new SQLException("Cannot execute, parameter " + param + " is missing.", "M1M05");
 			if (param > 1)
-				execStmt.append(',');
-			execStmt.append(paramValues[param]);
+				sb.append(',');
+			if (row >= 0 && columns[param] != null) {
+				columns[param].append(sb, row);
+			} else {
+				if (paramValues[param] == null)
+					throw new SQLException("Cannot execute, parameter " + param + " is missing.", "M1M05");
+				sb.append(paramValues[param]);
+			}
+		}
+		sb.append(')');
+	}
+
+	/**
+	 * Checks whether the prepared statement is a plain INSERT of one
+	 * row of parameters into a single table, such as
+	 * INSERT INTO t (a, b) VALUES (?, ?).  The rows of a batch for such
+	 * a statement can be inserted by a single INSERT statement with a
+	 * multi-row VALUES list, which is much cheaper than executing the
+	 * prepared statement once per row.
+	 *
+	 * @return the statement up to and including VALUES, or null if
+	 *         the statement is not such an INSERT
+	 */
+	private final String insertValuesPrefix() {
+		if (paramCount == 0 || size != paramCount)
+			return null;	// no parameters, or the statement returns result columns
+		final Matcher m = INSERT_VALUES.matcher(sqlStatement);
+		if (!m.matches())
+			return null;
+		// the VALUES list must use each parameter once
+		int count = 0;
+		for (int i = m.end(1); i < sqlStatement.length(); i++) {
+			if (sqlStatement.charAt(i) == '?')
+				count++;
+		}
+		return (count == paramCount) ? m.group(1) + " " : null;
+	}
+
+	/**
+	 * A parameter value set by one of the stream setters.
+	 */
+	private static final class StreamValue {
+		/** The binary data, or null for character data */
+		final InputStream in;
+		/** The character data, or null for binary data */
+		final Reader reader;
+		/** The number of bytes or characters, or -1 to read until end-of-file */
+		final long length;
+
+		StreamValue(final InputStream in, final Reader reader, final long length) {
+			this.in = in;
+			this.reader = reader;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Writes the exec statement for the current parameter values,
+	 * reading the stream values in chunks while they are written.  Binary
+	 * streams are written as hex encoded blob literal, character streams
+	 * as quoted string.
+	 *
+	 * When a stream cannot be read or ends before its length, the
+	 * statement has partly been sent already.  The failure is recorded
+	 * and the statement is ended such that the server rejects it.
+	 */
+	private final class StreamWriter implements MonetConnection.QueryWriter {
+		private final StreamValue[] streams;
+		/** The failure to read from a stream, if any */
+		IOException failure;
+
+		StreamWriter(final StreamValue[] streams) {
+			this.streams = streams;
+		}
+
+		@Override
+		public void writeTo(final Writer out) throws IOException {
+			out.write("exec ");
+			out.write(Integer.toString(id));
+			out.write('(');
+			for (int param = 1; param <= paramCount; param++) {
+				if (param > 1)
+					out.write(',');
+				final StreamValue sv = streams[param];
+				if (sv == null) {
+					out.write(paramValues[param]);
+				} else if (!(sv.in != null ? writeHex(out, sv) : writeQuoted(out, sv))) {
+					// close the value and add a parenthesis too many, a syntax error
+					out.write("'))");
+					return;
+				}
+			}
+			out.write(')');
+		}
+
+		private boolean writeHex(final Writer out, final StreamValue sv) throws IOException {
+			final byte[] bytes = new byte[STREAM_CHUNK];
+			final char[] hex = new char[STREAM_CHUNK * 2];
+			out.write("blob '");	// add a casting prefix
+			long pos = 0;
+			while (sv.length < 0 || pos < sv.length) {
+				final int n;
+				try {
+					n = sv.in.read(bytes, 0, sv.length < 0 ? bytes.length : (int)Math.min(bytes.length, sv.length - pos));
+				} catch (IOException e) {
+					failure = e;
+					return false;
+				}
+				if (n < 0)
+					break;
+				// convert the bytes into hex codes
+				for (int i = 0; i < n; i++) {
+					final byte b = bytes[i];
+					hex[i * 2] = HEXES[(b & 0xF0) >> 4];
+					hex[i * 2 + 1] = HEXES[(b & 0x0F)];
+				}
+				out.write(hex, 0, n * 2);
+				pos += n;
+			}
+			return endValue(out, sv, pos);
+		}
+
+		private boolean writeQuoted(final Writer out, final StreamValue sv) throws IOException {
+			final char[] chars = new char[STREAM_CHUNK];
+			final char[] escaped = new char[STREAM_CHUNK * 2];
+			out.write('\'');
+			long pos = 0;
+			while (sv.length < 0 || pos < sv.length) {
+				final int n;
+				try {
+					n = sv.reader.read(chars, 0, sv.length < 0 ? chars.length : (int)Math.min(chars.length, sv.length - pos));
+				} catch (IOException e) {
+					failure = e;
+					return false;
+				}
+				if (n < 0)
+					break;
+				// escape as MonetWrapper.sq() does
+				int len = 0;
+				for (int i = 0; i < n; i++) {
+					final char c = chars[i];
+					if (c == '\\' || c == '\'')
+						escaped[len++] = '\\';
+					escaped[len++] = c;
+				}
+				out.write(escaped, 0, len);
+				pos += n;
+			}
+			return endValue(out, sv, pos);
+		}
+
+		private boolean endValue(final Writer out, final StreamValue sv, final long pos) throws IOException {
+			if (sv.length >= 0 && pos < sv.length) {
+				failure = new EOFException("Stream ended unexpectedly at position " + pos + " out of " + sv.length);
+				return false;
+			}
+			out.write('\'');	// end of string value
+			return true;
+		}
+	}
+
+	/**
+	 * A statement prepared on the server: its exec id and the metadata
+	 * of its result columns and parameters.  When the statement cache of
+	 * the connection is enabled, it is shared by all PreparedStatements
+	 * for the same SQL text, so the arrays must not be modified.
+	 */
+	static final class Prepared {
+		final String sql;
+		final int id;
+		final int size;
+		final String[] monetdbType;
+		final int[] javaType;
+		final int[] digits;
+		final int[] scale;
+		final String[] schema;
+		final String[] table;
+		final String[] column;
+		final int paramCount;
+		final int paramStartIndex;
+		/** The number of open PreparedStatements using it, guarded by the statement cache */
+		int users = 1;
+		/** Whether it is in the statement cache, guarded by the statement cache */
+		boolean cached = false;
+
+		Prepared(final String sql, final int id, final int size,
+				final String[] monetdbType, final int[] javaType, final int[] digits, final int[] scale,
+				final String[] schema, final String[] table, final String[] column,
+				final int paramCount, final int paramStartIndex)
+		{
+			this.sql = sql;
+			this.id = id;
+			this.size = size;
+			this.monetdbType = monetdbType;
+			this.javaType = javaType;
+			this.digits = digits;
+			this.scale = scale;
+			this.schema = schema;
+			this.table = table;
+			this.column = column;
+			this.paramCount = paramCount;
+			this.paramStartIndex = paramStartIndex;
 		}
-		execStmt.append(')');
-		return execStmt.toString();
 	}
 }
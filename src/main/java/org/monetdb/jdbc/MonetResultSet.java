@@ -281,17 +281,7 @@ public class MonetResultSet
 		if (header == null)
 			return false;
 
-		final String tmpLine = header.getLine(row - 1);
-		if (tmpLine == null)
-			return false;
-
-		try {
-			tlp.parse(tmpLine);
-		} catch (MCLParseException e) {
-			throw new SQLException(e.getMessage(), "M0M10");
-		}
-
-		return true;
+		return header.loadRow(row - 1, tlp);
 	}
 
 	/**
@@ -500,7 +490,7 @@ public class MonetResultSet
 	public Reader getCharacterStream(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
+			final String val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -575,7 +565,7 @@ public class MonetResultSet
 	public Blob getBlob(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
+			final String val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -617,7 +607,7 @@ public class MonetResultSet
 	public Clob getClob(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
+			final String val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -693,13 +683,12 @@ public class MonetResultSet
 	public BigDecimal getBigDecimal(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
-			if (val == null) {
+			if (tlp.isNull(columnIndex - 1)) {
 				lastReadWasNull = true;
 				return null;
 			}
 			lastReadWasNull = false;
-			return new BigDecimal(val);
+			return tlp.getBigDecimal(columnIndex - 1);
 		} catch (NumberFormatException e) {
 			throw newSQLNumberFormatException(e);
 		} catch (IndexOutOfBoundsException e) {
@@ -724,7 +713,7 @@ public class MonetResultSet
 	{
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
+			final String val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -785,18 +774,16 @@ public class MonetResultSet
 	public boolean getBoolean(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
-			if (val == null) {
+			if (tlp.isNull(columnIndex - 1)) {
 				lastReadWasNull = true;
 				return false;	// if the value is SQL NULL, the value returned is false
 			}
 			lastReadWasNull = false;
 
 			// match common cases first
-			if ("false".equalsIgnoreCase(val) || "0".equals(val))
-				return false;
-			if ("true".equalsIgnoreCase(val) || "1".equals(val))
-				return true;
+			final int common = tlp.matchBoolean(columnIndex - 1);
+			if (common >= 0)
+				return common != 0;
 
 			// match type specific values
 			switch (JdbcSQLTypes[columnIndex - 1]) {
@@ -806,7 +793,7 @@ public class MonetResultSet
 			/*	case Types.LONGVARCHAR: // MonetDB doesn't use type LONGVARCHAR */
 				case Types.CLOB:
 					// check if string value equals "true" (case insensitive) or not
-					return Boolean.parseBoolean(val);
+					return Boolean.parseBoolean(tlp.getValue(columnIndex - 1));
 				case Types.TINYINT:
 				case Types.SMALLINT:
 				case Types.INTEGER:
@@ -867,13 +854,12 @@ public class MonetResultSet
 	public byte getByte(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
-			if (val == null) {
+			if (tlp.isNull(columnIndex - 1)) {
 				lastReadWasNull = true;
 				return (byte) 0;
 			}
 			lastReadWasNull = false;
-			return Byte.parseByte(val);
+			return tlp.getByte(columnIndex - 1);
 		} catch (NumberFormatException e) {
 			throw newSQLNumberFormatException(e);
 		} catch (IndexOutOfBoundsException e) {
@@ -909,7 +895,7 @@ public class MonetResultSet
 	public byte[] getBytes(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
+			final String val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -1007,13 +993,12 @@ public class MonetResultSet
 	public double getDouble(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
-			if (val == null) {
+			if (tlp.isNull(columnIndex - 1)) {
 				lastReadWasNull = true;
 				return 0;
 			}
 			lastReadWasNull = false;
-			return Double.parseDouble(val);
+			return tlp.getDouble(columnIndex - 1);
 		} catch (NumberFormatException e) {
 			throw newSQLNumberFormatException(e);
 		} catch (IndexOutOfBoundsException e) {
@@ -1124,13 +1109,12 @@ public class MonetResultSet
 	public float getFloat(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
-			if (val == null) {
+			if (tlp.isNull(columnIndex - 1)) {
 				lastReadWasNull = true;
 				return 0;
 			}
 			lastReadWasNull = false;
-			return Float.parseFloat(val);
+			return tlp.getFloat(columnIndex - 1);
 		} catch (NumberFormatException e) {
 			throw newSQLNumberFormatException(e);
 		} catch (IndexOutOfBoundsException e) {
@@ -1162,27 +1146,16 @@ public class MonetResultSet
 	@Override
 	public int getInt(final int columnIndex) throws SQLException {
 		checkNotClosed();
-		String val = "";
 		try {
-			val = tlp.values[columnIndex - 1];
-			if (val == null) {
+			if (tlp.isNull(columnIndex - 1)) {
 				lastReadWasNull = true;
 				return 0;
 			}
 			lastReadWasNull = false;
-			return Integer.parseInt(val);
+			// The oid datatype values (as string) have a  @0  suffix in the string value,
+			// which is skipped when parsing the value
+			return tlp.getInt(columnIndex - 1, "oid".equals(types[columnIndex - 1]));
 		} catch (NumberFormatException e) {
-			// The oid datatype values (as string) have a  @0  suffix in the string value.
-			// To allow successful parsing and conversion to int, we need to remove the suffix first
-			if ("oid".equals(types[columnIndex - 1])) {
-				if (val.endsWith("@0")) {
-					try {
-						return Integer.parseInt(val.substring(0, val.length()-2));
-					} catch (NumberFormatException nfe) {
-						throw newSQLNumberFormatException(nfe);
-					}
-				}
-			}
 			throw newSQLNumberFormatException(e);
 		} catch (IndexOutOfBoundsException e) {
 			throw newSQLInvalidColumnIndexException(columnIndex);
@@ -1213,27 +1186,16 @@ public class MonetResultSet
 	@Override
 	public long getLong(final int columnIndex) throws SQLException {
 		checkNotClosed();
-		String val = "";
 		try {
-			val = tlp.values[columnIndex - 1];
-			if (val == null) {
+			if (tlp.isNull(columnIndex - 1)) {
 				lastReadWasNull = true;
 				return 0;
 			}
 			lastReadWasNull = false;
-			return Long.parseLong(val);
+			// The oid datatype values (as string) have a  @0  suffix in the string value,
+			// which is skipped when parsing the value
+			return tlp.getLong(columnIndex - 1, "oid".equals(types[columnIndex - 1]));
 		} catch (NumberFormatException e) {
-			// The oid datatype values (as string) have a  @0  suffix in the string value.
-			// To allow successful parsing and conversion to long, we need to remove the suffix first
-			if ("oid".equals(types[columnIndex - 1])) {
-				if (val.endsWith("@0")) {
-					try {
-						return Long.parseLong(val.substring(0, val.length()-2));
-					} catch (NumberFormatException nfe) {
-						throw newSQLNumberFormatException(nfe);
-					}
-				}
-			}
 			throw newSQLNumberFormatException(e);
 		} catch (IndexOutOfBoundsException e) {
 			throw newSQLInvalidColumnIndexException(columnIndex);
@@ -1320,60 +1282,68 @@ public class MonetResultSet
 		// For speed the implementation should be as fast as possible, so avoid method calls (by inlining code) where possible
 		checkNotClosed();
 
+		final int col = columnIndex - 1;
 		final int JdbcType;
-		final String val;
 		try {
-			val = tlp.values[columnIndex - 1];
-			if (val == null) {
+			if (tlp.isNull(col)) {
 				lastReadWasNull = true;
 				return null;
 			}
 			lastReadWasNull = false;
-			JdbcType = JdbcSQLTypes[columnIndex - 1];
+			JdbcType = JdbcSQLTypes[col];
 		} catch (IndexOutOfBoundsException e) {
 			throw newSQLInvalidColumnIndexException(columnIndex);
 		}
 
+		// numerical values are retrieved via the typed accessors, which avoid
+		// creating an intermediate String for rows fetched in binary form
 		switch (JdbcType) {
 			case Types.TINYINT:
 			case Types.SMALLINT:
 				try {
-					return Short.valueOf(val);
+					final int v = tlp.getInt(col);
+					if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE)
+						return Short.valueOf((short) v);
 				} catch (NumberFormatException e) {
-					return val;
+					// fall back to the String value below
 				}
+				return tlp.getValue(col);
 			case Types.INTEGER:
 				try {
-					return Integer.valueOf(val);
+					return Integer.valueOf(tlp.getInt(col));
 				} catch (NumberFormatException e) {
-					return val;
+					return tlp.getValue(col);
 				}
 			case Types.BIGINT:
 				try {
-					return Long.valueOf(val);
+					return Long.valueOf(tlp.getLong(col));
 				} catch (NumberFormatException e) {
-					return val;
+					return tlp.getValue(col);
 				}
 			case Types.DOUBLE:
 			case Types.FLOAT:
 				try {
-					return Double.valueOf(val);
+					return Double.valueOf(tlp.getDouble(col));
 				} catch (NumberFormatException e) {
-					return val;
+					return tlp.getValue(col);
 				}
 			case Types.REAL:
 				try {
-					return Float.valueOf(val);
+					return Float.valueOf(tlp.getFloat(col));
 				} catch (NumberFormatException e) {
-					return val;
+					return tlp.getValue(col);
 				}
 			case Types.DECIMAL:
 			case Types.NUMERIC:
 				try {
-					return new BigDecimal(val);
+					return tlp.getBigDecimal(col);
 				} catch (NumberFormatException e) {
-					return val;
+					return tlp.getValue(col);
 				}
+		}
+
+		final String val = tlp.getValue(col);
+		switch (JdbcType) {
 			case Types.BOOLEAN:
 				return Boolean.valueOf(val);
 			case Types.VARCHAR:
@@ -1501,7 +1471,7 @@ public class MonetResultSet
 		final String val;
 		final String MonetDBtype;
 		try {
-			val = tlp.values[columnIndex - 1];
+			val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -1845,13 +1815,12 @@ public class MonetResultSet
 	public short getShort(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
-			if (val == null) {
+			if (tlp.isNull(columnIndex - 1)) {
 				lastReadWasNull = true;
 				return 0;
 			}
 			lastReadWasNull = false;
-			return Short.parseShort(val);
+			return tlp.getShort(columnIndex - 1);
 		} catch (NumberFormatException e) {
 			throw newSQLNumberFormatException(e);
 		} catch (IndexOutOfBoundsException e) {
@@ -1900,7 +1869,7 @@ public class MonetResultSet
 	public String getString(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
+			final String val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -2022,7 +1991,7 @@ public class MonetResultSet
 		int JdbcType;
 		boolean negativeYear = false;
 		try {
-			monetDateStr = tlp.values[columnIndex - 1];
+			monetDateStr = tlp.getValue(columnIndex - 1);
 			if (monetDateStr == null) {
 				lastReadWasNull = true;
 				return -1;
@@ -2230,7 +2199,7 @@ public class MonetResultSet
 	{
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
+			final String val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -2320,7 +2289,7 @@ public class MonetResultSet
 	{
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
+			final String val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -2410,7 +2379,7 @@ public class MonetResultSet
 	{
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
+			final String val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -2497,7 +2466,7 @@ public class MonetResultSet
 	public URL getURL(final int columnIndex) throws SQLException {
 		checkNotClosed();
 		try {
-			final String val = tlp.values[columnIndex - 1];
+			final String val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -3239,7 +3208,7 @@ public class MonetResultSet
 
 		final String val;
 		try {
-			val = tlp.values[columnIndex - 1];
+			val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -3428,7 +3397,7 @@ public class MonetResultSet
 	private LocalDate getLocalDate(final int columnIndex) throws SQLException {
 		final String val;
 		try {
-			val = tlp.values[columnIndex - 1];
+			val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -3457,7 +3426,7 @@ public class MonetResultSet
 	private LocalDateTime getLocalDateTime(final int columnIndex) throws SQLException {
 		final String val;
 		try {
-			val = tlp.values[columnIndex - 1];
+			val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -3495,7 +3464,7 @@ public class MonetResultSet
 	private LocalTime getLocalTime(final int columnIndex) throws SQLException {
 		final String val;
 		try {
-			val = tlp.values[columnIndex - 1];
+			val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -3521,7 +3490,7 @@ public class MonetResultSet
 	private OffsetDateTime getOffsetDateTime(final int columnIndex) throws SQLException {
 		final String val;
 		try {
-			val = tlp.values[columnIndex - 1];
+			val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -3559,7 +3528,7 @@ public class MonetResultSet
 	private OffsetTime getOffsetTime(final int columnIndex) throws SQLException {
 		final String val;
 		try {
-			val = tlp.values[columnIndex - 1];
+			val = tlp.getValue(columnIndex - 1);
 			if (val == null) {
 				lastReadWasNull = true;
 				return null;
@@ -13,6 +13,7 @@
 package org.monetdb.jdbc;
 
 import org.monetdb.mcl.net.MapiSocket;
+import java.io.IOException;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.Statement;
@@ -20,7 +21,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLWarning;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -83,6 +86,15 @@ public class MonetStatement
 	/** A List to hold all queries of a batch */
 	private ArrayList<String> batch;
 	private ReentrantLock batchLock;
+	/** When not null, the batch holds parenthesized rows of values which
+	 *  are appended to this "INSERT INTO ... VALUES " prefix, to insert many
+	 *  rows per statement.  Set by MonetPreparedStatement when the
+	 *  batch_insert_rows= connection property is set. */
+	String batchInsert;
+	/** The default maximum number of rows inserted by one multi-row INSERT statement */
+	static final int MAX_INSERT_ROWS = 10000;
+	/** The size in characters above which no more rows are added to a multi-row INSERT statement */
+	static final int MAX_INSERT_CHARS = 128 * MapiSocket.BLOCK;
 
 
 	/**
@@ -206,10 +218,7 @@ public class MonetStatement
 	 */
 	@Override
 	public int[] executeBatch() throws SQLException {
-		if (batch == null || batch.isEmpty()) {
-			return new int[0];
-		}
-
+		// executeLargeBatch() returns an empty array for an empty batch
 		final long[] ret = executeLargeBatch();
 		// copy contents of long[] into new int[]
 		final int[] counts = new int[ret.length];
@@ -440,6 +449,40 @@ public class MonetStatement
 	 * @throws SQLException if a database access error occurs
 	 */
 	private boolean internalExecute(final String sql) throws SQLException {
+		// fill the header list by processing the query
+		newResponseList(sql).processQuery(sql);
+
+		return getMoreResults();
+	}
+
+	/**
+	 * Executes the query written by the given QueryWriter, which is
+	 * sent to the server while it is being written.  Used by
+	 * MonetPreparedStatement to stream large parameter values.
+	 *
+	 * @param sql a short description of the query, such as its prefix
+	 * @param query the writer of the query to execute
+	 * @return true if the first result is a ResultSet object; false if the
+	 *              first result is an update count or there is no result
+	 * @throws SQLException if a database access error occurs
+	 */
+	boolean internalExecute(final String sql, final MonetConnection.QueryWriter query) throws SQLException {
+		newResponseList(sql).processQuery(query);
+
+		return getMoreResults();
+	}
+
+	/**
+	 * Closes the results of the previous query and creates the container
+	 * for the results of the given query.  Also used by
+	 * MonetConnection.executePipelined(), which reads the results into
+	 * the container later on.
+	 *
+	 * @param sql the SQL query which is going to be executed
+	 * @return the container for the results of the query
+	 * @throws SQLException if the query is empty or a database access error occurs
+	 */
+	MonetConnection.ResponseList newResponseList(final String sql) throws SQLException {
 		// close previous query, if not closed already
 		if (lastResponseList != null) {
 			lastResponseList.close();
@@ -461,10 +504,7 @@ public class MonetStatement
 			resultSetType,
 			resultSetConcurrency
 		);
-		// fill the header list by processing the query
-		lastResponseList.processQuery(sql);
-
-		return getMoreResults();
+		return lastResponseList;
 	}
 
 	/**
@@ -1216,6 +1256,11 @@ public class MonetStatement
 	 * afterwards execution.  Failing queries result in SQLExceptions
 	 * too and may cause subparts of the batch to fail as well.
 	 *
+	 * The commands are sent in chunks of about a network block.  With the
+	 * batch_pipeline= connection property set to more than 1, up to that
+	 * many chunks are sent before the replies to the first one are read,
+	 * which hides the network latency between the chunks.
+	 *
 	 * @return an array of update counts containing one element for each
 	 *	command in the batch. The elements of the array are ordered
 	 *	according to the order in which commands were added to the batch.
@@ -1245,7 +1290,15 @@ public class MonetStatement
 			final BatchUpdateException e = new BatchUpdateException(
 					"Error(s) occurred while executing the batch, " +
 					"see chained SQLExceptions for details", "22000", 22000, counts, null);
+			if (batchInsert != null) {
+				if (internalInsertBatch(counts, e))
+					throw e;
+				return counts;
+			}
+
 			final StringBuilder tmpBatch = new StringBuilder(MapiSocket.BLOCK);
+			// the chunks sent ahead whose replies have not been processed yet, if pipelining
+			final ArrayDeque<BatchChunk> inFlight = connection.batchPipeline > 1 ? new ArrayDeque<BatchChunk>() : null;
 			int offset = 0;
 			boolean first = true;
 			boolean error = false;
@@ -1260,7 +1313,7 @@ public class MonetStatement
 						tmpBatch.append(sep);
 					tmpBatch.append(tmp);
 					// send and receive
-					error |= internalBatch(tmpBatch, counts, offset, i + 1, e);
+					error |= batchChunk(tmpBatch, counts, offset, i + 1, e, inFlight);
 					offset = i;
 					tmpBatch.setLength(0);	// clear the buffer
 					first = true;
@@ -1268,7 +1321,7 @@ public class MonetStatement
 				}
 				if (tmpBatch.length() + sepLen + tmp.length() >= MapiSocket.BLOCK) {
 					// send and receive
-					error |= internalBatch(tmpBatch, counts, offset, i + 1, e);
+					error |= batchChunk(tmpBatch, counts, offset, i + 1, e, inFlight);
 					offset = i;
 					tmpBatch.setLength(0);	// clear the buffer
 					first = true;
@@ -1280,7 +1333,11 @@ public class MonetStatement
 				tmpBatch.append(tmp);
 			}
 			// send and receive
-			error |= internalBatch(tmpBatch, counts, offset, counts.length, e);
+			error |= batchChunk(tmpBatch, counts, offset, counts.length, e, inFlight);
+			if (inFlight != null) {
+				while (!inFlight.isEmpty())
+					error |= finishBatch(inFlight.poll(), counts, e);
+			}
 
 			// throw BatchUpdateException if it contains something
 			if (error)
@@ -1294,20 +1351,229 @@ public class MonetStatement
 		}
 	}
 
+	/**
+	 * Executes a batch of rows for batchInsert using as few multi-row
+	 * INSERT statements as the batch_insert_rows= connection property
+	 * allows.
+	 *
+	 * @param counts the update counts to fill, one per row
+	 * @param e the exception to chain failures to
+	 * @return true if one of the rows failed
+	 * @throws SQLException if a row cannot be rendered
+	 */
+	private boolean internalInsertBatch(final long[] counts, final BatchUpdateException e) throws SQLException {
+		return insertRows(batchInsert, new InsertRows() {
+			@Override
+			public void append(final StringBuilder sb, final int row) {
+				sb.append(batch.get(row));
+			}
+		}, batch.size(), connection.batchInsertRows, counts, 0, e);
+	}
+
+	/**
+	 * Supplies the parenthesized rows of values of a multi-row INSERT.
+	 */
+	interface InsertRows {
+		/**
+		 * Appends the given row, as "(value, ...)".
+		 *
+		 * @param sb the statement to append to
+		 * @param row the row, 0-based
+		 * @throws SQLException if the row cannot be rendered
+		 */
+		void append(StringBuilder sb, int row) throws SQLException;
+	}
+
+	/**
+	 * Inserts rows using multi-row INSERT statements of at most maxRows
+	 * rows each.  Each statement gets a single response from the
+	 * server, instead of one per row.  When a statement fails in
+	 * autocommit mode, nothing of it has been inserted, and its rows are
+	 * inserted one by one.  Then only the rows which fail by themselves
+	 * are marked EXECUTE_FAILED, as when each row is executed on its
+	 * own.  Without autocommit the failure has aborted the transaction,
+	 * so all rows of the statement are marked EXECUTE_FAILED.
+	 *
+	 * @param prefix the statement up to and including VALUES
+	 * @param rows the rows to insert
+	 * @param rowCount the number of rows
+	 * @param maxRows the maximum number of rows per statement
+	 * @param counts the update counts of the batch
+	 * @param offset the index in counts of the first row
+	 * @param e the exception to chain failures to
+	 * @return true if one of the rows failed
+	 * @throws SQLException if a row cannot be rendered
+	 */
+	final boolean insertRows(
+			final String prefix,
+			final InsertRows rows,
+			final int rowCount,
+			final int maxRows,
+			final long[] counts,
+			final int offset,
+			final BatchUpdateException e)
+		throws SQLException
+	{
+		final StringBuilder sql = new StringBuilder(MapiSocket.BLOCK);
+		boolean error = false;
+		int i = 0;
+		while (i < rowCount) {
+			final int start = i;
+			sql.setLength(0);	// clear the buffer
+			sql.append(prefix);
+			rows.append(sql, i++);
+			while (i < rowCount && i - start < maxRows && sql.length() < MAX_INSERT_CHARS) {
+				sql.append(',');
+				rows.append(sql, i++);
+			}
+			final SQLException ex = internalInsert(sql.toString(), counts, offset + start, offset + i);
+			if (ex == null)
+				continue;
+			if (i - start == 1 || !connection.getAutoCommit()) {
+				e.setNextException(ex);
+				Arrays.fill(counts, offset + start, offset + i, EXECUTE_FAILED);
+				error = true;
+				continue;
+			}
+			// find the failing rows
+			for (int row = start; row < i; row++) {
+				sql.setLength(0);	// clear the buffer
+				sql.append(prefix);
+				rows.append(sql, row);
+				final SQLException rowEx = internalInsert(sql.toString(), counts, offset + row, offset + row + 1);
+				if (rowEx != null) {
+					e.setNextException(rowEx);
+					counts[offset + row] = EXECUTE_FAILED;
+					error = true;
+				}
+			}
+		}
+		return error;
+	}
+
+	/**
+	 * Executes one multi-row INSERT statement of a batch, and fills in
+	 * the update counts of its rows when it succeeds.
+	 *
+	 * @param sql the INSERT statement
+	 * @param counts the update counts of the batch
+	 * @param start the index in counts of the first row of the statement
+	 * @param end the index in counts after the last row of the statement
+	 * @return null, or the exception when the statement failed
+	 */
+	private SQLException internalInsert(final String sql, final long[] counts, final int start, final int end) {
+		try {
+			if (internalExecute(sql))
+				throw new SQLException("Batch query produced a ResultSet!", "M1M17");
+			// every row inserts one row, unless the server tells otherwise
+			final long count = getLargeUpdateCount();
+			Arrays.fill(counts, start, end, (count == end - start) ? 1 : SUCCESS_NO_INFO);
+		} catch (SQLException ex) {
+			return ex;
+		}
+		return null;
+	}
+
+	/**
+	 * Sends a chunk of the batch.  Without pipelining its replies are
+	 * processed right away.  Otherwise the chunk is added to the chunks
+	 * in flight, after processing the replies to the oldest chunk in
+	 * flight when the maximum number of chunks in flight is reached.
+	 *
+	 * @param batch the statements of the chunk, separated by the query separator
+	 * @param counts the update counts of the batch
+	 * @param offset the index in counts of the first statement of the chunk
+	 * @param max the index in counts the statements of the chunk must stay below
+	 * @param e the exception to chain failures to
+	 * @param inFlight the chunks in flight, or null when not pipelining
+	 * @return true if a statement of a chunk whose replies were processed failed
+	 */
+	private boolean batchChunk(
+			final StringBuilder batch,
+			final long[] counts,
+			final int offset,
+			final int max,
+			final BatchUpdateException e,
+			final ArrayDeque<BatchChunk> inFlight)
+	{
+		if (inFlight == null)
+			return internalBatch(batch, counts, offset, max, e);
+		if (batch.length() == 0)
+			return false;
+
+		boolean error = false;
+		if (inFlight.size() >= connection.batchPipeline)
+			error = finishBatch(inFlight.poll(), counts, e);
+		final BatchChunk chunk = new BatchChunk(offset, max);
+		try {
+			final String sql = batch.toString();
+			chunk.list = newResponseList(sql);
+			lastResponseList = null;	// kept by the chunk until its replies are processed
+			chunk.list.sendPipelined(sql, chunk);
+		} catch (SQLException ex) {
+			chunk.error = ex;
+		}
+		inFlight.add(chunk);
+		return error;
+	}
+
+	/**
+	 * Waits for the replies to a chunk sent by batchChunk() and fills
+	 * in its update counts.
+	 *
+	 * @return true if one of the statements of the chunk failed
+	 */
+	private boolean finishBatch(final BatchChunk chunk, final long[] counts, final BatchUpdateException e) {
+		connection.awaitPendingReply(chunk);
+		if (chunk.error == null) {
+			// the list of the previous chunk is done with, including any result set it has
+			if (lastResponseList != null)
+				lastResponseList.close();
+			lastResponseList = chunk.list;
+			try {
+				return batchCounts(getMoreResults(), counts, chunk.offset, chunk.max, e);
+			} catch (SQLException ex) {
+				chunk.error = ex;
+			}
+		} else if (chunk.list != null) {
+			chunk.list.close();
+		}
+		return batchFailed(chunk.error, counts, chunk.offset, chunk.max, e);
+	}
+
 	private boolean internalBatch(
 			final StringBuilder batch,
 			final long[] counts,
-			int offset,
+			final int offset,
 			final int max,
 			final BatchUpdateException e)
-		throws BatchUpdateException
 	{
 		if (batch.length() == 0)
 			return false;
+		final boolean hasResultSet;
 		try {
-			long count = -1;
-			boolean hasResultSet = internalExecute(batch.toString());
+			hasResultSet = internalExecute(batch.toString());
+		} catch (SQLException ex) {
+			return batchFailed(ex, counts, offset, max, e);
+		}
+		return batchCounts(hasResultSet, counts, offset, max, e);
+	}
 
+	/**
+	 * Fills in the update counts of a chunk of the batch from the
+	 * results of the Statement, starting with the current result.
+	 *
+	 * @return true if one of the statements of the chunk failed
+	 */
+	private boolean batchCounts(
+			boolean hasResultSet,
+			final long[] counts,
+			int offset,
+			final int max,
+			final BatchUpdateException e)
+	{
+		try {
+			long count = -1;
 			if (!hasResultSet)
 				count = getLargeUpdateCount();
 
@@ -1325,15 +1591,63 @@ public class MonetStatement
 				offset++;
 			} while ((hasResultSet = getMoreResults()) || (count = getLargeUpdateCount()) != -1);
 		} catch (SQLException ex) {
-			e.setNextException(ex);
-			for (; offset < max; offset++) {
-				counts[offset] = EXECUTE_FAILED;
-			}
-			return true;
+			return batchFailed(ex, counts, offset, max, e);
 		}
 		return false;
 	}
 
+	/**
+	 * Chains the given failure and marks the remaining statements of a
+	 * chunk of the batch as failed.
+	 *
+	 * @return true
+	 */
+	private static boolean batchFailed(
+			final SQLException ex,
+			final long[] counts,
+			int offset,
+			final int max,
+			final BatchUpdateException e)
+	{
+		e.setNextException(ex);
+		for (; offset < max; offset++) {
+			counts[offset] = EXECUTE_FAILED;
+		}
+		return true;
+	}
+
+	/**
+	 * A chunk of a batch sent by batchChunk() whose replies have not
+	 * been processed yet.  Its replies are read into its own list, as
+	 * the next chunks are sent before they are processed.
+	 */
+	private static final class BatchChunk implements MonetConnection.PendingReply {
+		final int offset;
+		final int max;
+		MonetConnection.ResponseList list;
+		/** The failure to send the chunk or read its replies, if any */
+		SQLException error;
+
+		BatchChunk(final int offset, final int max) {
+			this.offset = offset;
+			this.max = max;
+		}
+
+		@Override
+		public void read() throws IOException {
+			try {
+				list.readPipelined();
+			} catch (SQLException ex) {
+				error = ex;
+			}
+		}
+
+		@Override
+		public void fail(final SQLException ex) {
+			error = ex;
+		}
+	}
+
 
 	/**
 	 * Executes the given SQL statement, which may be an INSERT, UPDATE, or
@@ -17,15 +17,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Helper class to read and classify the lines of a query response.
  *
- * This class wraps and buffers the Reader on which the responses come in.
+ * This class wraps and buffers the InputStream on which the responses come in.
  * Use {@link #getLine()} to get the current line, {@link #getLineType()}
  * to get its {@link LineType} and {@link #advance()} to proceed to the
  * next line.
  *
+ * Lines are split and classified on the raw bytes as received from the
+ * server.  A line is only decoded into a String when {@link #getLine()} is
+ * called.  Callers which can deal with the undecoded bytes, such as the
+ * result set parsing code, should use {@link #getLineBuffer()},
+ * {@link #getLineOffset()} and {@link #getLineLength()} instead, which
+ * avoids creating a String (and its decoding) for every line read.
+ *
  * Initially, the line type is set to LineType.UNKNOWN and the line
  * is set to null. When the end of the result set has been reached the line type
  * will remain LineType.PROMPT and the line will again be null.
@@ -40,29 +49,56 @@ import java.nio.charset.Charset;
  */
 public final class BufferedMCLReader {
 
+	/** The stream the bytes are read from, null when reading from a Reader */
+	private final InputStream inStream;
+	/** The Reader the lines are read from, null when reading from an InputStream */
 	private final BufferedReader inner;
+	/** The charset used to decode lines into Strings */
+	private final Charset charset;
+
+	/** The buffer holding the current line and possibly (parts of) following lines */
+	private byte[] buf = new byte[8192];
+	/** The offset in buf of the current line */
+	private int lineStart = 0;
+	/** The offset in buf just past the current line, excluding its newline */
+	private int lineEnd = 0;
+	/** The offset in buf where the data which has not yet been split into lines begins */
+	private int pos = 0;
+	/** The offset in buf just past the last byte read from inStream */
+	private int end = 0;
+
+	/** The current line as String, created lazily */
 	private String current = null;
+	/** Whether there is a current line, false before the start and at the end */
+	private boolean hasLine = false;
 	private LineType lineType = LineType.UNKNOWN;
 
 	/**
 	 * Create a buffering character-input stream that uses a
 	 * default-sized input buffer.
 	 *
+	 * Note that the lines read from a Reader are encoded in UTF-8
+	 * when their bytes are asked for.
+	 *
 	 * @param in A Reader
 	 */
 	public BufferedMCLReader(final Reader in) {
+		inStream = null;
 		inner = new BufferedReader(in);
+		charset = StandardCharsets.UTF_8;
 	}
 
 	/**
-	 * Create a buffering character-input stream that uses a
+	 * Create a buffering input stream reader that uses a
 	 * default-sized input buffer, from an InputStream.
 	 *
 	 * @param in An InputStream
 	 * @param cs A Charset
 	 */
 	public BufferedMCLReader(final InputStream in, final Charset cs) {
-		this(new java.io.InputStreamReader(in, cs));
+		inStream = in;
+		inner = null;
+		charset = cs;
 	}
 
 	/**
@@ -76,13 +112,74 @@ public final class BufferedMCLReader {
 		if (lineType == LineType.PROMPT)
 			return;
 
-		current = inner.readLine();
-		lineType = LineType.classify(current);
-		if (lineType == LineType.ERROR && current != null && !current.matches("^![0-9A-Z]{5}!.+")) {
+		current = null;
+		if (inner != null) {
+			current = inner.readLine();
+			hasLine = current != null;
+			if (hasLine) {
+				final byte[] bytes = current.getBytes(charset);
+				buf = bytes;
+				lineStart = 0;
+				lineEnd = bytes.length;
+			}
+		} else {
+			hasLine = nextLine();
+		}
+
+		if (!hasLine) {
+			lineType = LineType.UNKNOWN;
+			return;
+		}
+		final int len = lineEnd - lineStart;
+		lineType = len > 1 ? LineType.classify(buf[lineStart], buf[lineStart + 1])
+			: len == 1 ? LineType.classify(buf[lineStart], 0) : LineType.UNKNOWN;
+		if (lineType == LineType.ERROR && !getLine().matches("^![0-9A-Z]{5}!.+")) {
 			current = "!22000!" + current.substring(1);
 		}
 	}
 
+	/**
+	 * Splits off the next line from the buffer, reading more bytes from
+	 * the stream when needed.
+	 *
+	 * @return false if the end of the stream was reached
+	 * @throws IOException if exception occurred during reading
+	 */
+	private boolean nextLine() throws IOException {
+		int scan = pos;
+		while (true) {
+			for (; scan < end; scan++) {
+				if (buf[scan] == '\n') {
+					lineStart = pos;
+					lineEnd = scan;
+					pos = scan + 1;
+					return true;
+				}
+			}
+			// no complete line in the buffer, make room and read more
+			if (pos > 0) {
+				System.arraycopy(buf, pos, buf, 0, end - pos);
+				scan -= pos;
+				end -= pos;
+				pos = 0;
+			}
+			if (end == buf.length)
+				buf = Arrays.copyOf(buf, buf.length * 2);
+			final int n = inStream.read(buf, end, buf.length - end);
+			if (n < 0) {
+				// like BufferedReader, return a trailing incomplete line
+				if (end > pos) {
+					lineStart = pos;
+					lineEnd = end;
+					pos = end;
+					return true;
+				}
+				return false;
+			}
+			end += n;
+		}
+	}
+
 	/**
 	 * Reset the linetype to UNKNOWN.
 	 */
@@ -90,11 +187,24 @@ public final class BufferedMCLReader {
 		lineType = LineType.UNKNOWN;
 	}
 
+	/**
+	 * Mark the current response as completely read.  This is used after
+	 * the body of a response has been consumed from the underlying stream
+	 * by other means than this reader, for example a binary message.
+	 */
+	public void setEndOfResponse() {
+		current = null;
+		hasLine = false;
+		lineType = LineType.PROMPT;
+	}
+
 	/**
 	 * Return the current line, or null if we're at the end or before the beginning.
 	 * @return the current line or null
 	 */
 	public String getLine() {
+		if (current == null && hasLine)
+			current = new String(buf, lineStart, lineEnd - lineStart, charset);
 		return current;
 	}
 
@@ -111,6 +221,38 @@ public final class BufferedMCLReader {
 		return line;
 	}
 
+	/**
+	 * Return the buffer holding the bytes of the current line, which
+	 * starts at {@link #getLineOffset()} and is {@link #getLineLength()}
+	 * bytes long, excluding the newline.  The buffer is owned by this
+	 * reader, its contents are only valid until the next call to
+	 * {@link #advance()}.
+	 *
+	 * @return the buffer holding the current line
+	 */
+	public byte[] getLineBuffer() {
+		return buf;
+	}
+
+	/**
+	 * Return the offset of the current line in {@link #getLineBuffer()}.
+	 *
+	 * @return the offset of the current line
+	 */
+	public int getLineOffset() {
+		return lineStart;
+	}
+
+	/**
+	 * Return the length in bytes of the current line, or -1 if we're at
+	 * the end or before the beginning.
+	 *
+	 * @return the length of the current line or -1
+	 */
+	public int getLineLength() {
+		return hasLine ? lineEnd - lineStart : -1;
+	}
+
 	/**
 	 * getLineType returns the type of the current line.
 	 *
@@ -181,10 +323,13 @@ public final class BufferedMCLReader {
 	}
 
 	/**
-	 * Close the wrapped Reader.
+	 * Close the wrapped InputStream or Reader.
 	 * @throws IOException if an IO exception occurs while talking to the server
 	 */
 	public void close() throws IOException {
-		inner.close();
+		if (inner != null)
+			inner.close();
+		else
+			inStream.close();
 	}
 }
@@ -97,7 +97,7 @@ public enum LineType {
 	 * @param ch1 the second byte as int
 	 * @return LineType the type of line
 	 */
-	private static final LineType classify(int ch0, int ch1) {
+	static final LineType classify(int ch0, int ch1) {
 		switch (ch0) {
 			case '!':
 				return ERROR;
@@ -13,7 +13,6 @@
 package org.monetdb.mcl.net;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.FileWriter;
 import java.io.FilterInputStream;
 import java.io.FilterOutputStream;
@@ -22,6 +21,13 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -88,6 +94,7 @@ import org.monetdb.mcl.parser.MCLParseException;
 public final class MapiSocket {
 	/* an even number of NUL bytes used during the handshake */
 	private static final byte[] NUL_BYTES = new byte[]{ 0, 0, 0, 0, 0, 0, 0, 0 };
+	private static final byte[] UNIX_PREAMBLE = new byte[]{ '0' };
 
 	/* A mapping between hash algorithm names as used in the MAPI
 	 * protocol, and the names by which the Java runtime knows them.
@@ -107,6 +114,12 @@ public final class MapiSocket {
 	private Target target;
 	/** The TCP Socket to mserver */
 	private Socket con;
+	/** The SocketChannel to mserver, used instead of con for Unix domain sockets and when nio is enabled */
+	private SocketChannel chan;
+	/** The Selector used to wait for chan with a timeout */
+	private Selector selector;
+	/** Whether the last attempt to connect failed to open the Unix domain socket */
+	private boolean unixConnectFailed;
 	/** Stream from the Socket for reading */
 	private BlockInputStream fromMonet;
 	/** Stream from the Socket for writing */
@@ -118,6 +131,12 @@ public final class MapiSocket {
 	/** protocol version of the connection */
 	private int version;
 	private boolean supportsClientInfo;
+	/** the binary result set protocol level both we and the server support, 0 if none */
+	private int binaryLevel;
+	/** whether the server sends its binary data in big-endian byte order */
+	private boolean serverBigEndian;
+	/** System.nanoTime() at which the last block was received from the server */
+	private volatile long lastReceived;
 
 	/** Whether we should follow redirects.
 	 * Not sure why this needs to be separate
@@ -135,6 +154,14 @@ public final class MapiSocket {
 	/** The blocksize (hardcoded in compliance with MonetDB common/stream/stream.h) */
 	public final static int BLOCK = 8190;
 
+	/**
+	 * The number of blocks which are collected before they are written
+	 * to the socket with a single write, and the number of blocks which
+	 * can be received with a single read.  Only the last block of a
+	 * message causes the collected blocks to be written right away.
+	 */
+	private final static int COALESCE_BLOCKS = 8;
+
 	/** A short in two bytes for holding the block size in bytes */
 	private final byte[] blklen = new byte[2];
 
@@ -238,6 +265,17 @@ public final class MapiSocket {
 		return target.getSoTimeout();
 	}
 
+	/**
+	 * Gets the number of milliseconds since the last block was
+	 * received from the server.  A connection which has just received
+	 * data is known to be alive, so checking it can be skipped.
+	 *
+	 * @return the time since data was last received, in milliseconds
+	 */
+	public long getMillisSinceLastReceived() {
+		return (System.nanoTime() - lastReceived) / 1000000L;
+	}
+
 	/**
 	 * Enables/disables debug mode with logging to file
 	 *
@@ -333,8 +371,27 @@ public final class MapiSocket {
 	}
 
 	private List<String> scanUnixSockets(OptionsCallback callback) throws MCLException, MCLParseException, IOException {
-		// Because we do not support Unix Domain sockets, we just go back to connect().
-		// target.connectScan() will now return false;
+		// Try the sockets in sockdir, ours first. Setting sock or host
+		// makes target.connectScan() return false when we go back to connect().
+		if (UnixDomainSocket.isSupported()) {
+			final Target.Validated validated;
+			try {
+				validated = target.validate();
+			} catch (ValidationError e) {
+				throw new MCLException(e.getMessage());
+			}
+			for (String path : UnixDomainSocket.findSockets(validated.getSockdir())) {
+				target.setSock(path);
+				try {
+					return connect(target, callback);
+				} catch (MCLException e) {
+					// a stale socket or one we may not use, try the next one
+					if (!unixConnectFailed)
+						throw e;
+				}
+			}
+			target.setSock("");
+		}
 		target.setHost("localhost");
 		return connect(target, callback);
 	}
@@ -344,7 +401,7 @@ public final class MapiSocket {
 			// We need a valid target
 			Target.Validated validated = target.validate();
 			// con will be non-null if the previous attempt ended in a redirect to mapi:monetdb://proxy
-			if (con == null)
+			if (con == null && chan == null)
 				connectSocket(validated);
 			return handshake(validated, callback, warningBuffer);
 		} catch (IOException | MCLException e) {
@@ -358,11 +415,45 @@ public final class MapiSocket {
 
 	private void connectSocket(Target.Validated validated) throws MCLException, IOException {
 		// This method performs steps 2-6 of the procedure outlined in the URL spec
+		String unixPath = validated.connectUnix();
 		String tcpHost = validated.connectTcp();
 		if (tcpHost.isEmpty()) {
-			throw new MCLException("Unix domain sockets are not supported, only TCP");
+			connectUnixSocket(unixPath);
+			return;
+		}
+		if (!unixPath.isEmpty() && UnixDomainSocket.isSupported()) {
+			// an empty host means the Unix domain socket first, then TCP
+			try {
+				connectUnixSocket(unixPath);
+				return;
+			} catch (MCLException e) {
+				if (!unixConnectFailed)
+					throw e;
+				if (chan != null) {
+					try {
+						chan.close();
+					} catch (IOException ce) {
+						// ignore
+					}
+					chan = null;
+				}
+			}
 		}
 		int port = validated.connectPort();
+		if (validated.isNio() && !validated.getTls()) {
+			try {
+				SocketChannel ch = SocketChannel.open();
+				chan = ch;
+				ch.socket().setTcpNoDelay(true);
+				ch.socket().setKeepAlive(true);
+				ch.connect(new InetSocketAddress(tcpHost, port));
+				// see wrapTLS() for why we send these
+				setupChannel(ch, NUL_BYTES);
+			} catch (IOException e) {
+				throw new MCLException("Could not connect to " + tcpHost + ":" + port + ": " + e.getMessage(), e);
+			}
+			return;
+		}
 		Socket sock = null;
 		try {
 			sock = new Socket(tcpHost, port);
@@ -372,12 +463,7 @@ public final class MapiSocket {
 
 			sock = wrapTLS(sock, validated);
 
-			fromMonet = new BlockInputStream(sock.getInputStream());
-			toMonet = new BlockOutputStream(sock.getOutputStream());
-			reader = new BufferedMCLReader(fromMonet, StandardCharsets.UTF_8);
-			writer = new BufferedMCLWriter(toMonet, StandardCharsets.UTF_8);
-			writer.registerReader(reader);
-			reader.advance();
+			setupStreams(sock.getInputStream(), sock.getOutputStream());
 
 			// Only assign to sock when everything went ok so far
 			con = sock;
@@ -396,6 +482,108 @@ public final class MapiSocket {
 		}
 	}
 
+	private void connectUnixSocket(String path) throws MCLException, IOException {
+		unixConnectFailed = false;
+		try {
+			chan = UnixDomainSocket.connect(path);
+			// Unix domain sockets can be used to pass file descriptors,
+			// the server expects a '0' byte to indicate we won't.
+			setupChannel(chan, UNIX_PREAMBLE);
+		} catch (IOException e) {
+			unixConnectFailed = true;
+			throw new MCLException("Could not connect to " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Sends the preamble over the connected channel, then switches it to
+	 * non-blocking mode such that reads and writes can be bounded by
+	 * so_timeout, and sets up the block streams on top of it.
+	 * The channel is closed by close().
+	 */
+	private void setupChannel(SocketChannel ch, byte[] preamble) throws IOException {
+		ByteBuffer buf = ByteBuffer.wrap(preamble);
+		while (buf.hasRemaining())
+			ch.write(buf);
+		ch.configureBlocking(false);
+		selector = Selector.open();
+		ch.register(selector, 0);
+		setupStreams(new BlockInputStream(), new BlockOutputStream());
+	}
+
+	private void setupStreams(InputStream in, OutputStream out) throws IOException {
+		setupStreams(new BlockInputStream(in), new BlockOutputStream(out));
+	}
+
+	private void setupStreams(BlockInputStream in, BlockOutputStream out) throws IOException {
+		fromMonet = in;
+		toMonet = out;
+		reader = new BufferedMCLReader(fromMonet, StandardCharsets.UTF_8);
+		writer = new BufferedMCLWriter(toMonet, StandardCharsets.UTF_8);
+		writer.registerReader(reader);
+		reader.advance();
+	}
+
+	/**
+	 * Reads from chan into the given buffer, waiting at most so_timeout
+	 * milliseconds for data to arrive.
+	 *
+	 * @param buf the buffer to read into
+	 * @return the number of bytes read, or -1 at end of stream
+	 * @throws IOException if an IO error occurs or the timeout expires
+	 */
+	private int channelRead(final ByteBuffer buf) throws IOException {
+		while (true) {
+			final int n = chan.read(buf);
+			if (n != 0)
+				return n;
+			awaitChannel(SelectionKey.OP_READ);
+		}
+	}
+
+	/**
+	 * Writes the given buffer to chan, waiting at most so_timeout
+	 * milliseconds each time the socket buffer is full.
+	 *
+	 * @param buf the buffer to write
+	 * @throws IOException if an IO error occurs or the timeout expires
+	 */
+	private void channelWrite(final ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			if (chan.write(buf) == 0)
+				awaitChannel(SelectionKey.OP_WRITE);
+		}
+	}
+
+	private void awaitChannel(final int op) throws IOException {
+		final SelectionKey key = chan.keyFor(selector);
+		key.interestOps(op);
+		final int timeout = target.getSoTimeout();
+		final int ready;
+		try {
+			ready = selector.select(timeout);
+		} finally {
+			key.interestOps(0);
+			selector.selectedKeys().clear();
+		}
+		if (ready == 0 && timeout > 0)
+			throw new SocketTimeoutException((op == SelectionKey.OP_READ ? "Read" : "Write") + " timed out");
+	}
+
+	/** Describes the other end of the connection, for error messages */
+	private String peerName() {
+		if (con != null)
+			return con.getInetAddress().getHostName() + ":" + con.getPort();
+		if (chan != null) {
+			try {
+				return String.valueOf(chan.getRemoteAddress());
+			} catch (IOException e) {
+				// fall through
+			}
+		}
+		return "server";
+	}
+
 	private Socket wrapTLS(Socket sock, Target.Validated validated) throws IOException {
 		if (validated.getTls())
 			return SecureSocket.wrap(validated, sock);
@@ -493,14 +681,24 @@ public final class MapiSocket {
 		if (parts.length < 6)
 			throw new MCLException("Protocol version " + version + " requires at least 6 fields, found " + parts.length + ": " + challengeLine);
 		String serverHashesPart = parts[3];
-//		String endianPart = parts[4];
+		String endianPart = parts[4];
 		String passwordHashPart = parts[5];
 		String optionsPart = parts.length > 6 ? parts[6] : null;
-//		String binaryPart = parts.length > 7 ? parts[7] : null;
+		String binaryPart = parts.length > 7 ? parts[7] : null;
 
 		if (parts.length > 9)
 			supportsClientInfo = true;
 
+		serverBigEndian = endianPart.equals("BIG");
+		binaryLevel = 0;
+		if (binaryPart != null && binaryPart.startsWith("BINARY=")) {
+			try {
+				binaryLevel = Math.min(Integer.parseInt(binaryPart.substring(7)), validated.connectBinary());
+			} catch (NumberFormatException e) {
+				// not a level we understand, stick to the text protocol
+			}
+		}
+
 		String userResponse;
 		String password = target.getPassword();
 		if (serverTypePart.equals("merovingian") && !target.getLanguage().equals("control")) {
@@ -775,6 +973,55 @@ public final class MapiSocket {
 		return target.isDebug();
 	}
 
+	/**
+	 * Returns the level of the binary result set protocol that can be used
+	 * on this connection.  This is the lowest of what the server announced
+	 * in its challenge and what was allowed by the binary= connection
+	 * parameter.
+	 *
+	 * @return the binary protocol level, 0 if binary result sets cannot be used
+	 */
+	public int getBinaryLevel() {
+		return binaryLevel;
+	}
+
+	/**
+	 * Returns whether the server sends binary data in big-endian byte order.
+	 *
+	 * @return true for big-endian, false for little-endian
+	 */
+	public boolean isServerBigEndian() {
+		return serverBigEndian;
+	}
+
+	/**
+	 * Reads a complete binary message from the server, bypassing the
+	 * Reader.  This must be called directly after a command has been
+	 * written to which the server responds with a binary message instead
+	 * of text lines, such as Xexportbin.  Afterwards the Reader is left
+	 * at the end of the response, as if it read the prompt.
+	 *
+	 * @return the bytes of the message
+	 * @throws IOException if an IO error occurs or the connection is closed
+	 */
+	public byte[] readBinaryMessage() throws IOException {
+		final BlockInputStream.Raw raw = fromMonet.getRaw();
+		byte[] msg = new byte[BLOCK];
+		int len = 0;
+		do {
+			if (raw.readBlock() < 0)
+				throw new IOException("Connection to server lost!");
+			final int n = raw.getLength();
+			if (len + n > msg.length)
+				msg = Arrays.copyOf(msg, Math.max(msg.length * 2, len + n));
+			System.arraycopy(raw.getBytes(), 0, msg, len, n);
+			raw.consume(n);
+			len += n;
+		} while (!raw.wasEndBlock());
+		reader.setEndOfResponse();
+		return len == msg.length ? msg : Arrays.copyOf(msg, len);
+	}
+
 	public boolean canClientInfo() {
 		return supportsClientInfo;
 	}
@@ -792,25 +1039,39 @@ public final class MapiSocket {
 	final class BlockOutputStream extends FilterOutputStream {
 		private int writePos = 0;
 		private int blocksize = 0;
-		private final byte[] block = new byte[BLOCK];
+		/** The blocks collected for the next write, each preceded by its two byte header */
+		private final ByteBuffer sendBuf;
+		/** The position of the header of the current block in sendBuf */
+		private int blockStart = 0;
 
 		/**
 		 * Constructs this BlockOutputStream, backed by the given
-		 * OutputStream.  A BufferedOutputStream is internally used.
+		 * OutputStream.  Up to COALESCE_BLOCKS blocks are collected
+		 * and written in one go, so no BufferedOutputStream is needed.
 		 * @param out an OutputStream
 		 */
 		public BlockOutputStream(final OutputStream out) {
-			// always use a buffered stream, even though we know how
-			// much bytes to write/read, since this is just faster for
-			// some reason
-			super(new BufferedOutputStream(out));
+			super(out);
+			sendBuf = ByteBuffer.allocate(COALESCE_BLOCKS * (BLOCK + 2));
+			sendBuf.position(2);
+		}
+
+		/**
+		 * Constructs this BlockOutputStream, writing to chan.  The
+		 * blocks are collected in a direct ByteBuffer.
+		 */
+		BlockOutputStream() {
+			super(null);
+			sendBuf = ByteBuffer.allocateDirect(COALESCE_BLOCKS * (BLOCK + 2));
+			sendBuf.position(2);
 		}
 
 		@Override
 		public void flush() throws IOException {
 			// write the block (as final) then flush.
 			writeBlock(true);
-			out.flush();
+			if (out != null)
+				out.flush();
 
 			// it's a bit nasty if an exception is thrown from the log,
 			// but ignoring it can be nasty as well, so it is decided to
@@ -824,9 +1085,11 @@ public final class MapiSocket {
 		}
 
 		/**
-		 * writeBlock puts the data in the block on the stream.  The
-		 * boolean last controls whether the block is sent with an
-		 * indicator to note it is the last block of a sequence or not.
+		 * writeBlock completes the current block by filling in its
+		 * header.  The boolean last controls whether the block is sent
+		 * with an indicator to note it is the last block of a sequence
+		 * or not.  The collected blocks are put on the stream when this
+		 * is the last block or no room for another block is left.
 		 *
 		 * @param last whether this is the last block
 		 * @throws IOException if writing to the stream failed
@@ -847,10 +1110,8 @@ public final class MapiSocket {
 				blklen[0] = (byte)(blocksize << 1 & 0xFF);
 				blklen[1] = (byte)(blocksize >> 7);
 			}
-
-			out.write(blklen);
-			// write the actual block
-			out.write(block, 0, writePos);
+			sendBuf.put(blockStart, blklen[0]);
+			sendBuf.put(blockStart + 1, blklen[1]);
 
 			if (isDebug()) {
 				if (last) {
@@ -858,9 +1119,25 @@ public final class MapiSocket {
 				} else {
 					log("TD ", "write block: " + writePos + " bytes", false);
 				}
-				log("TX ", new String(block, 0, writePos, StandardCharsets.UTF_8), true);
+				final byte[] data = new byte[writePos];
+				final ByteBuffer dup = sendBuf.duplicate();
+				dup.position(blockStart + 2);
+				dup.get(data);
+				log("TX ", new String(data, StandardCharsets.UTF_8), true);
 			}
 
+			if (last || sendBuf.remaining() < BLOCK + 2) {
+				sendBuf.flip();
+				if (out != null)
+					out.write(sendBuf.array(), 0, sendBuf.limit());
+				else
+					channelWrite(sendBuf);
+				sendBuf.clear();
+			}
+			// leave room for the header of the next block
+			blockStart = sendBuf.position();
+			sendBuf.position(blockStart + 2);
+
 			writePos = 0;
 		}
 
@@ -869,7 +1146,8 @@ public final class MapiSocket {
 			if (writePos == BLOCK) {
 				writeBlock(false);
 			}
-			block[writePos++] = (byte)b;
+			sendBuf.put((byte)b);
+			writePos++;
 		}
 
 		@Override
@@ -882,24 +1160,54 @@ public final class MapiSocket {
 			while (len > 0) {
 				int t = BLOCK - writePos;
 				if (len > t) {
-					System.arraycopy(b, off, block, writePos, t);
+					sendBuf.put(b, off, t);
 					off += t;
 					len -= t;
 					writePos += t;
 					writeBlock(false);
 				} else {
-					System.arraycopy(b, off, block, writePos, len);
+					sendBuf.put(b, off, len);
 					writePos += len;
 					break;
 				}
 			}
 		}
 
+		/**
+		 * Reads up to max bytes from the given channel straight into
+		 * the current block.  Unlike write() this needs no intermediate
+		 * byte array, and when writing to chan the data goes from the
+		 * channel into the direct buffer and from there to the socket.
+		 *
+		 * @param src the channel to read from
+		 * @param max the maximum number of bytes to read
+		 * @return the number of bytes read, or -1 at the end of src
+		 * @throws IOException if reading or writing failed
+		 */
+		int transferFrom(final ReadableByteChannel src, final int max) throws IOException {
+			if (writePos == BLOCK) {
+				writeBlock(false);
+			}
+			final int oldLimit = sendBuf.limit();
+			sendBuf.limit(sendBuf.position() + Math.min(max, BLOCK - writePos));
+			final int n;
+			try {
+				n = src.read(sendBuf);
+			} finally {
+				sendBuf.limit(oldLimit);
+			}
+			if (n > 0)
+				writePos += n;
+			return n;
+		}
+
 		@Override
 		public void close() throws IOException {
 			// we don't want the flush() method to be called (default of
-			// the FilterOutputStream), so we close manually here
-			out.close();
+			// the FilterOutputStream), so we close manually here.
+			// A channel is closed by MapiSocket.close().
+			if (out != null)
+				out.close();
 		}
 	}
 
@@ -914,6 +1222,8 @@ public final class MapiSocket {
 		private boolean wasEndBlock = false;
 		private final byte[] block = new byte[BLOCK + 3]; // \n.\n
 		private boolean insertFakePrompts = true;
+		/** When reading from chan: direct read-ahead buffer, holding the bytes received but not yet consumed */
+		private final ByteBuffer recvBuf;
 
 		/**
 		 * Constructs this BlockInputStream, backed by the given
@@ -924,7 +1234,39 @@ public final class MapiSocket {
 			// always use a buffered stream, even though we know how
 			// much bytes to write/read, since this is just faster for
 			// some reason
-			super(new BufferedInputStream(in));
+			super(new BufferedInputStream(in, COALESCE_BLOCKS * (BLOCK + 2)));
+			recvBuf = null;
+		}
+
+		/**
+		 * Constructs this BlockInputStream, reading from chan.  The
+		 * data is received in a direct ByteBuffer large enough for
+		 * several blocks, such that a single read usually returns the
+		 * header and the contents of a block, or more.
+		 */
+		BlockInputStream() {
+			super(null);
+			recvBuf = ByteBuffer.allocateDirect(COALESCE_BLOCKS * (BLOCK + 2));
+			recvBuf.flip();	// nothing received yet
+		}
+
+		/**
+		 * Copies up to len received bytes into b, reading from chan
+		 * when nothing is buffered.
+		 *
+		 * @return the number of bytes copied, or -1 at end of stream
+		 */
+		private int readChannel(final byte[] b, final int off, final int len) throws IOException {
+			if (!recvBuf.hasRemaining()) {
+				recvBuf.clear();
+				final int n = channelRead(recvBuf);
+				recvBuf.flip();
+				if (n == -1)
+					return -1;
+			}
+			final int s = Math.min(len, recvBuf.remaining());
+			recvBuf.get(b, off, s);
+			return s;
 		}
 
 		public boolean setInsertFakePrompts(boolean doFake) {
@@ -972,7 +1314,7 @@ public final class MapiSocket {
 			int s;
 			int off = 0;
 			while (len > 0) {
-				s = in.read(b, off, len);
+				s = recvBuf != null ? readChannel(b, off, len) : in.read(b, off, len);
 				if (s == -1) {
 					// if we have read something before, we should have been
 					// able to read the whole, so make this fatal
@@ -981,9 +1323,8 @@ public final class MapiSocket {
 							log("RD ", "the following incomplete block was received:", false);
 							log("RX ", new String(b, 0, off, StandardCharsets.UTF_8), true);
 						}
-						throw new IOException("Read from " +
-								con.getInetAddress().getHostName() + ":" +
-								con.getPort() + ": Incomplete block read from stream");
+						throw new IOException("Read from " + peerName() +
+								": Incomplete block read from stream");
 					}
 					if (isDebug())
 						log("RD ", "server closed the connection (EOF)", true);
@@ -1051,6 +1392,7 @@ public final class MapiSocket {
 						blockLen + " > " + block.length);
 			if (!_read(block, blockLen))
 				return -1;
+			lastReceived = System.nanoTime();
 
 			if (isDebug())
 				log("RX ", new String(block, 0, blockLen, StandardCharsets.UTF_8), true);
@@ -1143,6 +1485,13 @@ public final class MapiSocket {
 			return n;
 		}
 
+		@Override
+		public void close() throws IOException {
+			// a channel is closed by MapiSocket.close()
+			if (in != null)
+				in.close();
+		}
+
 		/**
 		 * For internal use
 		 * @return new Raw object
@@ -1222,6 +1571,18 @@ public final class MapiSocket {
 				con = null;
 			} catch (IOException e) { /* ignore it */ }
 		}
+		if (chan != null) {
+			try {
+				chan.close();	// close the socket
+				chan = null;
+			} catch (IOException e) { /* ignore it */ }
+		}
+		if (selector != null) {
+			try {
+				selector.close();
+				selector = null;
+			} catch (IOException e) { /* ignore it */ }
+		}
 		if (isDebug() && log != null && log instanceof FileWriter) {
 			try {
 				log.close();
@@ -1348,6 +1709,43 @@ public final class MapiSocket {
 			}
 		}
 
+		/**
+		 * Uploads everything from the current position of the given
+		 * channel up to its end.  The data is read directly into the
+		 * blocks sent to the server, so this is cheaper than copying
+		 * the channel contents through {@link #write(byte[], int, int)}.
+		 * A true transferTo() into the socket is not possible because
+		 * every block needs its header.
+		 * The channel must be blocking, a read returning 0 bytes would
+		 * otherwise make this spin until data arrives.
+		 *
+		 * @param src the channel to upload, for instance a FileChannel
+		 * @return the number of bytes uploaded
+		 * @throws IOException if reading or writing failed, or the server
+		 *         cancelled the upload
+		 * @throws IllegalBlockingModeException if src is a SelectableChannel
+		 *         in non-blocking mode
+		 */
+		public long transferFrom(final ReadableByteChannel src) throws IOException {
+			if (src instanceof SelectableChannel && !((SelectableChannel) src).isBlocking()) {
+				throw new IllegalBlockingModeException();
+			}
+			if (serverCancelled) {
+				throw new IOException("Server aborted the upload");
+			}
+			final BlockOutputStream blockOut = (BlockOutputStream) out;
+			long total = 0;
+			while (true) {
+				handleChunking();
+				final int n = blockOut.transferFrom(src, chunkLeft);
+				if (n < 0)
+					break;
+				wrote(n);
+				total += n;
+			}
+			return total;
+		}
+
 		@Override
 		public void flush() throws IOException {
 			// suppress flushes
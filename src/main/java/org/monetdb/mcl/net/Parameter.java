@@ -43,10 +43,20 @@ public enum Parameter {
 	BINARY("binary", ParameterType.Str, "on", "whether to use binary result set format (number or bool)", false),
 	REPLYSIZE("replysize", ParameterType.Int, 250, "rows beyond this limit are retrieved on demand, <1 means unlimited", false),
 	FETCHSIZE("fetchsize", ParameterType.Int, null, "alias for replysize, specific to jdbc", false),
+	FETCH_BUDGET("fetch_budget", ParameterType.Int, 0, "grow result set blocks up to this many bytes, 0 means grow once tenfold", false),
 	HASH("hash", ParameterType.Str, "", "specific to jdbc", false),
 	DEBUG("debug", ParameterType.Bool, false, "enable tracing of socket communication for debugging", false),
 	LOGFILE("logfile", ParameterType.Str, "", "when debug is enabled its output will be written to this logfile", false),
 	SO_TIMEOUT("so_timeout", ParameterType.Int, 0, "abort if network I/O does not complete in this many milliseconds, 0 means no timeout", false),
+	NIO("nio", ParameterType.Bool, false, "use a SocketChannel with direct buffers for the connection, not used with TLS", false),
+	PREFETCH_BLOCKS("prefetch_blocks", ParameterType.Int, 0, "number of result set blocks to request ahead for forward-only result sets, 0 means no prefetching", false),
+	PREFETCH_THRESHOLD("prefetch_threshold", ParameterType.Int, 50, "percentage of a result set block to be read before the next blocks are requested", false),
+	MAX_CACHED_BLOCKS("max_cached_blocks", ParameterType.Int, 0, "maximum number of result set blocks a scrollable result set keeps in memory, 0 means no limit", false),
+	SPILL_BLOCKS("spill_blocks", ParameterType.Bool, false, "keep blocks evicted because of max_cached_blocks in a temporary file instead of fetching them again", false),
+	PREPARED_CACHE_SIZE("prepared_cache_size", ParameterType.Int, 0, "number of server side prepared statements each connection keeps for reuse by prepareStatement() with the same SQL, 0 means no caching", false),
+	VALIDATION_WINDOW("validation_window", ParameterType.Int, 0, "isValid() does not contact the server if it received data in the last this many milliseconds, 0 means always check", false),
+	BATCH_PIPELINE("batch_pipeline", ParameterType.Int, 0, "number of executeBatch() chunks sent to the server before the replies to the first one are read, 0 means one at a time", false),
+	BATCH_INSERT_ROWS("batch_insert_rows", ParameterType.Int, 0, "number of rows a batch of a prepared single-row INSERT sends as one multi-row INSERT, 0 means one exec per row", false),
 	CLOB_AS_VARCHAR("treat_clob_as_varchar", ParameterType.Bool, true, "map CLOB/TEXT data to type VARCHAR instead of type CLOB", false),
 	BLOB_AS_BINARY("treat_blob_as_binary", ParameterType.Bool, true, "map BLOB data to type BINARY instead of type BLOB", false),
 
@@ -119,6 +129,8 @@ public enum Parameter {
 				return REPLYSIZE;
 			case "fetchsize":
 				return FETCHSIZE;
+			case "fetch_budget":
+				return FETCH_BUDGET;
 			case "hash":
 				return HASH;
 			case "debug":
@@ -127,6 +139,24 @@ public enum Parameter {
 				return LOGFILE;
 			case "so_timeout":
 				return SO_TIMEOUT;
+			case "nio":
+				return NIO;
+			case "prefetch_blocks":
+				return PREFETCH_BLOCKS;
+			case "prefetch_threshold":
+				return PREFETCH_THRESHOLD;
+			case "max_cached_blocks":
+				return MAX_CACHED_BLOCKS;
+			case "spill_blocks":
+				return SPILL_BLOCKS;
+			case "prepared_cache_size":
+				return PREPARED_CACHE_SIZE;
+			case "validation_window":
+				return VALIDATION_WINDOW;
+			case "batch_pipeline":
+				return BATCH_PIPELINE;
+			case "batch_insert_rows":
+				return BATCH_INSERT_ROWS;
 			case "treat_clob_as_varchar":
 				return CLOB_AS_VARCHAR;
 			case "treat_blob_as_binary":
@@ -227,7 +257,6 @@ public enum Parameter {
 				case TABLE:
 				case SOCK:
 				case SOCKDIR:
-				case BINARY:
 					// hide, not supported in Java
 					continue;
 				case FETCHSIZE:
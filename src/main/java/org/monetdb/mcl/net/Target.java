@@ -40,10 +40,20 @@ public final class Target {
 	private int timezone;
 	private String binary = "on";
 	private int replySize = 250;
+	private int fetchBudget = 0;
 	private String hash = "";
 	private boolean debug = false;
 	private String logfile = "";
 	private int soTimeout = 0;
+	private boolean nio = false;
+	private int prefetchBlocks = 0;
+	private int prefetchThreshold = 50;
+	private int maxCachedBlocks = 0;
+	private boolean spillBlocks = false;
+	private int preparedCacheSize = 0;
+	private int validationWindow = 0;
+	private int batchPipeline = 0;
+	private int batchInsertRows = 0;
 	private boolean treatClobAsVarchar = true;
 	private boolean treatBlobAsBinary = true;
 	private boolean clientInfo = true;
@@ -186,6 +196,9 @@ public final class Target {
 			case FETCHSIZE:
 				setReplySize((int) value);
 				break;
+			case FETCH_BUDGET:
+				setFetchBudget((int) value);
+				break;
 			case HASH:
 				setHash((String) value);
 				break;
@@ -199,6 +212,33 @@ public final class Target {
 			case SO_TIMEOUT:
 				setSoTimeout((int) value);
 				break;
+			case NIO:
+				setNio((boolean) value);
+				break;
+			case PREFETCH_BLOCKS:
+				setPrefetchBlocks((int) value);
+				break;
+			case PREFETCH_THRESHOLD:
+				setPrefetchThreshold((int) value);
+				break;
+			case MAX_CACHED_BLOCKS:
+				setMaxCachedBlocks((int) value);
+				break;
+			case SPILL_BLOCKS:
+				setSpillBlocks((boolean) value);
+				break;
+			case PREPARED_CACHE_SIZE:
+				setPreparedCacheSize((int) value);
+				break;
+			case VALIDATION_WINDOW:
+				setValidationWindow((int) value);
+				break;
+			case BATCH_PIPELINE:
+				setBatchPipeline((int) value);
+				break;
+			case BATCH_INSERT_ROWS:
+				setBatchInsertRows((int) value);
+				break;
 			case CLOB_AS_VARCHAR:
 				setTreatClobAsVarchar((boolean) value);
 				break;
@@ -269,6 +309,8 @@ public final class Target {
 				return replySize;
 			case FETCHSIZE:
 				return replySize;
+			case FETCH_BUDGET:
+				return fetchBudget;
 			case HASH:
 				return hash;
 			case DEBUG:
@@ -277,6 +319,24 @@ public final class Target {
 				return logfile;
 			case SO_TIMEOUT:
 				return soTimeout;
+			case NIO:
+				return nio;
+			case PREFETCH_BLOCKS:
+				return prefetchBlocks;
+			case PREFETCH_THRESHOLD:
+				return prefetchThreshold;
+			case MAX_CACHED_BLOCKS:
+				return maxCachedBlocks;
+			case SPILL_BLOCKS:
+				return spillBlocks;
+			case PREPARED_CACHE_SIZE:
+				return preparedCacheSize;
+			case VALIDATION_WINDOW:
+				return validationWindow;
+			case BATCH_PIPELINE:
+				return batchPipeline;
+			case BATCH_INSERT_ROWS:
+				return batchInsertRows;
 			case CLOB_AS_VARCHAR:
 				return treatClobAsVarchar;
 			case BLOB_AS_BINARY:
@@ -474,6 +534,15 @@ public final class Target {
 		validated = null;
 	}
 
+	public int getFetchBudget() {
+		return fetchBudget;
+	}
+
+	public void setFetchBudget(int fetchBudget) {
+		this.fetchBudget = fetchBudget;
+		validated = null;
+	}
+
 	public String getHash() {
 		return hash;
 	}
@@ -510,6 +579,87 @@ public final class Target {
 		validated = null;
 	}
 
+	public boolean isNio() {
+		return nio;
+	}
+
+	public void setNio(boolean nio) {
+		this.nio = nio;
+		validated = null;
+	}
+
+	public int getPrefetchBlocks() {
+		return prefetchBlocks;
+	}
+
+	public void setPrefetchBlocks(int prefetchBlocks) {
+		this.prefetchBlocks = prefetchBlocks;
+		validated = null;
+	}
+
+	public int getPrefetchThreshold() {
+		return prefetchThreshold;
+	}
+
+	public void setPrefetchThreshold(int prefetchThreshold) {
+		this.prefetchThreshold = prefetchThreshold;
+		validated = null;
+	}
+
+	public int getMaxCachedBlocks() {
+		return maxCachedBlocks;
+	}
+
+	public void setMaxCachedBlocks(int maxCachedBlocks) {
+		this.maxCachedBlocks = maxCachedBlocks;
+		validated = null;
+	}
+
+	public boolean isSpillBlocks() {
+		return spillBlocks;
+	}
+
+	public void setSpillBlocks(boolean spillBlocks) {
+		this.spillBlocks = spillBlocks;
+		validated = null;
+	}
+
+	public int getPreparedCacheSize() {
+		return preparedCacheSize;
+	}
+
+	public void setPreparedCacheSize(int preparedCacheSize) {
+		this.preparedCacheSize = preparedCacheSize;
+		validated = null;
+	}
+
+	public int getValidationWindow() {
+		return validationWindow;
+	}
+
+	public void setValidationWindow(int validationWindow) {
+		this.validationWindow = validationWindow;
+		validated = null;
+	}
+
+	public int getBatchPipeline() {
+		return batchPipeline;
+	}
+
+	public void setBatchPipeline(int batchPipeline) {
+		this.batchPipeline = batchPipeline;
+		validated = null;
+	}
+
+	public int getBatchInsertRows() {
+		return batchInsertRows;
+	}
+
+	public void setBatchInsertRows(int batchInsertRows) {
+		this.batchInsertRows = batchInsertRows;
+		validated = null;
+	}
+
 	public boolean isTreatClobAsVarchar() {
 		return treatClobAsVarchar;
 	}
@@ -701,6 +851,22 @@ public final class Target {
 			// JDBC specific
 			if (soTimeout < 0)
 				throw new ValidationError("so_timeout= must not be negative");
+			if (fetchBudget < 0)
+				throw new ValidationError("fetch_budget= must not be negative");
+			if (prefetchBlocks < 0)
+				throw new ValidationError("prefetch_blocks= must not be negative");
+			if (prefetchThreshold < 0 || prefetchThreshold > 100)
+				throw new ValidationError("prefetch_threshold= must be between 0 and 100");
+			if (maxCachedBlocks < 0)
+				throw new ValidationError("max_cached_blocks= must not be negative");
+			if (preparedCacheSize < 0)
+				throw new ValidationError("prepared_cache_size= must not be negative");
+			if (validationWindow < 0)
+				throw new ValidationError("validation_window= must not be negative");
+			if (batchPipeline < 0)
+				throw new ValidationError("batch_pipeline= must not be negative");
+			if (batchInsertRows < 0)
+				throw new ValidationError("batch_insert_rows= must not be negative");
 		}
 
 		public boolean getTls() {
@@ -787,6 +953,10 @@ public final class Target {
 			return replySize;
 		}
 
+		public int getFetchBudget() {
+			return fetchBudget;
+		}
+
 		public String getHash() {
 			return hash;
 		}
@@ -803,6 +973,42 @@ public final class Target {
 			return soTimeout;
 		}
 
+		public boolean isNio() {
+			return nio;
+		}
+
+		public int getPrefetchBlocks() {
+			return prefetchBlocks;
+		}
+
+		public int getPrefetchThreshold() {
+			return prefetchThreshold;
+		}
+
+		public int getMaxCachedBlocks() {
+			return maxCachedBlocks;
+		}
+
+		public boolean isSpillBlocks() {
+			return spillBlocks;
+		}
+
+		public int getPreparedCacheSize() {
+			return preparedCacheSize;
+		}
+
+		public int getValidationWindow() {
+			return validationWindow;
+		}
+
+		public int getBatchPipeline() {
+			return batchPipeline;
+		}
+
+		public int getBatchInsertRows() {
+			return batchInsertRows;
+		}
+
 		public boolean isTreatClobAsVarchar() {
 			return treatClobAsVarchar;
 		}
@@ -0,0 +1,147 @@
+/*
+ * SPDX-License-Identifier: MPL-2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.  If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright 2024, 2025 MonetDB Foundation;
+ * Copyright August 2008 - 2023 MonetDB B.V.;
+ * Copyright 1997 - July 2008 CWI.
+ */
+
+package org.monetdb.mcl.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Connects to Unix domain sockets, such as the <code>.s.monetdb.PORT</code>
+ * sockets an mserver5 or monetdbd creates in its socket directory.
+ *
+ * Unix domain socket channels are available since Java 16, while this
+ * driver is compiled for Java 8.  The classes and methods involved are
+ * therefore looked up using reflection.  On older Java versions
+ * {@link #isSupported()} returns false.
+ */
+final class UnixDomainSocket {
+	/** The name prefix of the sockets created by MonetDB, followed by the port number */
+	static final String SOCKET_PREFIX = ".s.monetdb.";
+
+	/** SocketChannel.open(ProtocolFamily), or null if not available */
+	private static final Method OPEN;
+	/** StandardProtocolFamily.UNIX, or null if not available */
+	private static final ProtocolFamily UNIX;
+	/** UnixDomainSocketAddress.of(String), or null if not available */
+	private static final Method ADDRESS_OF;
+
+	static {
+		Method open = null;
+		ProtocolFamily unix = null;
+		Method addressOf = null;
+		try {
+			open = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+			unix = StandardProtocolFamily.valueOf("UNIX");
+			addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+		} catch (ClassNotFoundException | NoSuchMethodException | IllegalArgumentException e) {
+			open = null;
+		}
+		OPEN = open;
+		UNIX = unix;
+		ADDRESS_OF = open != null ? addressOf : null;
+	}
+
+	private UnixDomainSocket() {
+	}
+
+	/**
+	 * Returns whether this Java version supports Unix domain sockets.
+	 *
+	 * @return true if Unix domain sockets can be used
+	 */
+	static boolean isSupported() {
+		return OPEN != null;
+	}
+
+	/**
+	 * Opens a blocking SocketChannel connected to the Unix domain socket
+	 * at the given path.
+	 *
+	 * @param path the file name of the socket
+	 * @return the connected SocketChannel
+	 * @throws IOException if the connection cannot be made, or this Java
+	 *         version does not support Unix domain sockets
+	 */
+	static SocketChannel connect(final String path) throws IOException {
+		if (!isSupported())
+			throw new IOException("Unix domain sockets require Java 16 or newer");
+		final SocketChannel chan;
+		final SocketAddress address;
+		try {
+			chan = (SocketChannel) OPEN.invoke(null, UNIX);
+			address = (SocketAddress) ADDRESS_OF.invoke(null, path);
+		} catch (InvocationTargetException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException(cause.getMessage(), cause);
+		} catch (IllegalAccessException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+		boolean ok = false;
+		try {
+			chan.connect(address);
+			ok = true;
+		} finally {
+			if (!ok)
+				chan.close();
+		}
+		return chan;
+	}
+
+	/**
+	 * Lists the MonetDB sockets in the given directory, sockets owned by
+	 * the current user first.
+	 *
+	 * @param sockdir the directory to look in
+	 * @return the paths of the sockets found, possibly empty
+	 */
+	static List<String> findSockets(final String sockdir) {
+		final ArrayList<String> mine = new ArrayList<>();
+		final ArrayList<String> others = new ArrayList<>();
+		final File[] files = new File(sockdir).listFiles();
+		if (files == null)
+			return mine;
+		Arrays.sort(files);
+		final String user = System.getProperty("user.name");
+		for (File f : files) {
+			final String name = f.getName();
+			if (!name.startsWith(SOCKET_PREFIX))
+				continue;
+			try {
+				Integer.parseInt(name.substring(SOCKET_PREFIX.length()));
+			} catch (NumberFormatException e) {
+				continue;	// not a port number, e.g. .s.monetdb.50000.lock
+			}
+			boolean owned = false;
+			try {
+				owned = Files.getOwner(f.toPath()).getName().equals(user);
+			} catch (IOException | UnsupportedOperationException | SecurityException e) {
+				// try it after the ones we know are ours
+			}
+			(owned ? mine : others).add(f.getPath());
+		}
+		mine.addAll(others);
+		return mine;
+	}
+}
@@ -0,0 +1,394 @@
+/*
+ * SPDX-License-Identifier: MPL-2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.  If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright 2024, 2025 MonetDB Foundation;
+ * Copyright August 2008 - 2023 MonetDB B.V.;
+ * Copyright 1997 - July 2008 CWI.
+ */
+
+package org.monetdb.mcl.parser;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A BinaryBlock holds the rows of one binary result set block, as
+ * decoded by the {@link BinaryBlockParser}, in typed column vectors.
+ *
+ * Fixed width numeric and temporal values are kept as primitives, so
+ * retrieving them as int, long or double does not allocate.  Textual
+ * representations, which are needed for getString() and friends, are
+ * only created when asked for.  String columns keep a reference to the
+ * received bytes and are UTF-8 decoded on demand.
+ *
+ * Temporal columns are normalised on decoding: a date is kept as the
+ * number of days since 1970-01-01, a time as the number of microseconds
+ * since midnight and a timestamp as microseconds since 1970-01-01 00:00.
+ *
+ * @see BinaryBlockParser
+ */
+public final class BinaryBlock {
+	/* the column kinds, as determined by the BinaryBlockParser */
+	static final byte INTEGER   = 1;	// tinyint, smallint, int, bigint
+	static final byte DECIMAL   = 2;	// unscaled value with column scale
+	static final byte REAL      = 3;
+	static final byte DOUBLE    = 4;
+	static final byte BOOLEAN   = 5;
+	static final byte DATE      = 6;
+	static final byte TIME      = 7;
+	static final byte TIMESTAMP = 8;
+	static final byte STRING    = 9;
+
+	private static final long MICROS_PER_DAY = 86400L * 1000 * 1000;
+
+	private final byte[] kinds;
+	private final int[] scales;
+	private final int rows;
+
+	/** values of all columns except REAL, DOUBLE and STRING */
+	final long[][] longs;
+	/** values of REAL and DOUBLE columns */
+	final double[][] doubles;
+	/** the NULL indicators per column */
+	final boolean[][] nulls;
+	/** the bytes the STRING columns refer to */
+	final byte[] data;
+	/** the start offset in data of each value of a STRING column */
+	final int[][] strStart;
+	/** the length in bytes of each value of a STRING column */
+	final int[][] strLen;
+
+	BinaryBlock(final byte[] kinds, final int[] scales, final int rows, final byte[] data) {
+		final int cols = kinds.length;
+		this.kinds = kinds;
+		this.scales = scales;
+		this.rows = rows;
+		this.data = data;
+		longs = new long[cols][];
+		doubles = new double[cols][];
+		nulls = new boolean[cols][];
+		strStart = new int[cols][];
+		strLen = new int[cols][];
+		for (int i = 0; i < cols; i++) {
+			nulls[i] = new boolean[rows];
+			switch (kinds[i]) {
+				case REAL:
+				case DOUBLE:
+					doubles[i] = new double[rows];
+					break;
+				case STRING:
+					strStart[i] = new int[rows];
+					strLen[i] = new int[rows];
+					break;
+				default:
+					longs[i] = new long[rows];
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of rows in this block.
+	 *
+	 * @return the number of rows
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Returns the message this block was decoded from, which can be
+	 * stored to decode the block again later.
+	 *
+	 * @return the message bytes, not to be modified
+	 */
+	public byte[] getMessage() {
+		return data;
+	}
+
+	/**
+	 * Returns whether the value at the given position is NULL.
+	 *
+	 * @param col the column, 0-based
+	 * @param row the row within this block, 0-based
+	 * @return true if the value is NULL
+	 */
+	public boolean isNull(final int col, final int row) {
+		return nulls[col][row];
+	}
+
+	/**
+	 * Returns whether the values of the given column are integers which
+	 * can be retrieved without loss using {@link #getLong(int, int)}.
+	 * This is the case for the integer types and for decimals with a
+	 * scale of zero.
+	 *
+	 * @param col the column, 0-based
+	 * @return true if the column holds integral values
+	 */
+	public boolean isIntegral(final int col) {
+		return kinds[col] == INTEGER || (kinds[col] == DECIMAL && scales[col] == 0);
+	}
+
+	/**
+	 * Returns whether the given column is of type boolean, whose values
+	 * can be retrieved as 0 or 1 using {@link #getLong(int, int)}.
+	 *
+	 * @param col the column, 0-based
+	 * @return true if the column holds boolean values
+	 */
+	public boolean isBoolean(final int col) {
+		return kinds[col] == BOOLEAN;
+	}
+
+	/**
+	 * Returns whether the values of the given column are numbers which
+	 * can be retrieved using {@link #getDouble(int, int)}.
+	 *
+	 * @param col the column, 0-based
+	 * @return true if the column holds numerical values
+	 */
+	public boolean isNumeric(final int col) {
+		switch (kinds[col]) {
+			case INTEGER:
+			case DECIMAL:
+			case REAL:
+			case DOUBLE:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Returns the value of an integral column, see {@link #isIntegral(int)}.
+	 *
+	 * @param col the column, 0-based
+	 * @param row the row within this block, 0-based
+	 * @return the value, 0 for NULL
+	 */
+	public long getLong(final int col, final int row) {
+		return longs[col][row];
+	}
+
+	/**
+	 * Returns the value of a numeric column, see {@link #isNumeric(int)}.
+	 *
+	 * @param col the column, 0-based
+	 * @param row the row within this block, 0-based
+	 * @return the value, 0 for NULL
+	 */
+	public double getDouble(final int col, final int row) {
+		switch (kinds[col]) {
+			case REAL:
+			case DOUBLE:
+				return doubles[col][row];
+			case DECIMAL:
+				if (scales[col] != 0)
+					return getBigDecimal(col, row).doubleValue();
+				return longs[col][row];
+			default:
+				return longs[col][row];
+		}
+	}
+
+	/**
+	 * Returns the value of a numeric column as BigDecimal, or null if
+	 * the column is not numeric or the value is NULL.
+	 *
+	 * @param col the column, 0-based
+	 * @param row the row within this block, 0-based
+	 * @return the value as BigDecimal or null
+	 */
+	public BigDecimal getBigDecimal(final int col, final int row) {
+		if (nulls[col][row])
+			return null;
+		switch (kinds[col]) {
+			case INTEGER:
+				return BigDecimal.valueOf(longs[col][row]);
+			case DECIMAL:
+				return BigDecimal.valueOf(longs[col][row], scales[col]);
+			case REAL:
+			case DOUBLE:
+				return new BigDecimal(getString(col, row));
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Returns the textual representation of the value at the given
+	 * position, in the same format as the server uses for its textual
+	 * result set format.
+	 *
+	 * @param col the column, 0-based
+	 * @param row the row within this block, 0-based
+	 * @return the value as String, or null for NULL
+	 */
+	public String getString(final int col, final int row) {
+		if (nulls[col][row])
+			return null;
+		switch (kinds[col]) {
+			case INTEGER:
+				return Long.toString(longs[col][row]);
+			case DECIMAL:
+				return BigDecimal.valueOf(longs[col][row], scales[col]).toPlainString();
+			case REAL:
+				return formatFloatingPoint(doubles[col][row], true);
+			case DOUBLE:
+				return formatFloatingPoint(doubles[col][row], false);
+			case BOOLEAN:
+				return longs[col][row] != 0 ? "true" : "false";
+			case DATE: {
+				final StringBuilder sb = new StringBuilder(10);
+				appendDate(sb, longs[col][row]);
+				return sb.toString();
+			}
+			case TIME: {
+				final StringBuilder sb = new StringBuilder(15);
+				appendTime(sb, longs[col][row], scales[col]);
+				return sb.toString();
+			}
+			case TIMESTAMP: {
+				final long micros = longs[col][row];
+				final long day = Math.floorDiv(micros, MICROS_PER_DAY);
+				final StringBuilder sb = new StringBuilder(26);
+				appendDate(sb, day);
+				sb.append(' ');
+				appendTime(sb, micros - day * MICROS_PER_DAY, scales[col]);
+				return sb.toString();
+			}
+			case STRING:
+				return new String(data, strStart[col][row], strLen[col][row], StandardCharsets.UTF_8);
+			default:
+				throw new AssertionError("unknown column kind " + kinds[col]);
+		}
+	}
+
+	/**
+	 * Formats a REAL or DOUBLE value the way the server's text output
+	 * does: printf("%.*g") with the smallest precision (starting at 4)
+	 * that reads back as the same value, so 3.0 becomes "3" and 1e20
+	 * becomes "1e+20".
+	 */
+	static String formatFloatingPoint(final double v, final boolean isReal) {
+		if (Double.isNaN(v) || Double.isInfinite(v))
+			return Double.toString(v);
+		final int maxPrecision = isReal ? 9 : 17;
+		String s = null;
+		for (int p = 4; p <= maxPrecision; p++) {
+			s = formatG(v, p);
+			if (isReal ? Float.parseFloat(s) == (float) v : Double.parseDouble(s) == v)
+				break;
+		}
+		return s;
+	}
+
+	/** Java equivalent of C's printf("%.*g", precision, v) for finite values */
+	private static String formatG(final double v, final int precision) {
+		if (v == 0)
+			return (1 / v) < 0 ? "-0" : "0";
+		// new BigDecimal(double) is exact, so rounding it matches C's conversion
+		final BigDecimal bd = new BigDecimal(v).round(new MathContext(precision, RoundingMode.HALF_EVEN));
+		final int exp = bd.precision() - bd.scale() - 1;
+		final StringBuilder sb = new StringBuilder(24);
+		if (exp >= -4 && exp < precision) {
+			sb.append(bd.setScale(Math.max(precision - 1 - exp, 0), RoundingMode.HALF_EVEN).toPlainString());
+			stripFractionZeros(sb);
+			return sb.toString();
+		}
+		final String digits = bd.unscaledValue().abs().toString();
+		if (bd.signum() < 0)
+			sb.append('-');
+		sb.append(digits.charAt(0));
+		if (digits.length() > 1) {
+			sb.append('.').append(digits, 1, digits.length());
+			stripFractionZeros(sb);
+		}
+		sb.append(exp < 0 ? "e-" : "e+");
+		final int absExp = Math.abs(exp);
+		if (absExp < 10)
+			sb.append('0');
+		sb.append(absExp);
+		return sb.toString();
+	}
+
+	/** Removes trailing zeros of a fraction and then a trailing decimal point */
+	private static void stripFractionZeros(final StringBuilder sb) {
+		if (sb.indexOf(".") < 0)
+			return;
+		int len = sb.length();
+		while (sb.charAt(len - 1) == '0')
+			len--;
+		if (sb.charAt(len - 1) == '.')
+			len--;
+		sb.setLength(len);
+	}
+
+	/**
+	 * Converts a calendar date to the number of days since 1970-01-01
+	 * (proleptic Gregorian calendar) without creating objects.
+	 */
+	static long toEpochDay(final int year, final int month, final int day) {
+		final long y = month <= 2 ? year - 1 : year;
+		final long era = Math.floorDiv(y, 400);
+		final long yoe = y - era * 400;
+		final long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		final long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+	/** Appends the day given as days since 1970-01-01 as yyyy-mm-dd */
+	private static void appendDate(final StringBuilder sb, final long epochDay) {
+		final long z = epochDay + 719468;
+		final long era = Math.floorDiv(z, 146097);
+		final long doe = z - era * 146097;
+		final long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		final long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		final long mp = (5 * doy + 2) / 153;
+		final int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+		if (year < 0) {
+			sb.append('-');
+			year = -year;
+		}
+		if (year < 1000) sb.append('0');
+		if (year < 100) sb.append('0');
+		if (year < 10) sb.append('0');
+		sb.append(year).append('-');
+		appendTwoDigits(sb, month);
+		sb.append('-');
+		appendTwoDigits(sb, day);
+	}
+
+	/** Appends the microseconds since midnight as hh:mm:ss with the requested number of fractional digits */
+	private static void appendTime(final StringBuilder sb, final long micros, final int fracDigits) {
+		final long secs = micros / 1000000;
+		appendTwoDigits(sb, (int) (secs / 3600));
+		sb.append(':');
+		appendTwoDigits(sb, (int) (secs / 60 % 60));
+		sb.append(':');
+		appendTwoDigits(sb, (int) (secs % 60));
+		if (fracDigits > 0) {
+			sb.append('.');
+			int frac = (int) (micros % 1000000);
+			int div = 100000;
+			for (int i = 0; i < fracDigits && i < 6; i++) {
+				sb.append((char) ('0' + frac / div));
+				frac %= div;
+				div /= 10;
+			}
+		}
+	}
+
+	private static void appendTwoDigits(final StringBuilder sb, final int v) {
+		sb.append((char) ('0' + v / 10)).append((char) ('0' + v % 10));
+	}
+}
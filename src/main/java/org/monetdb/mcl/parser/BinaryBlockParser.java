@@ -0,0 +1,311 @@
+/*
+ * SPDX-License-Identifier: MPL-2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.  If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright 2024, 2025 MonetDB Foundation;
+ * Copyright August 2008 - 2023 MonetDB B.V.;
+ * Copyright 1997 - July 2008 CWI.
+ */
+
+package org.monetdb.mcl.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The BinaryBlockParser decodes the reply to an <code>Xexportbin</code>
+ * command into a {@link BinaryBlock}.
+ *
+ * Servers which announce BINARY=1 (or higher) in their challenge can send
+ * result set blocks in binary form.  Such a reply is a single MAPI
+ * message holding the column data of all columns back to back, followed
+ * by a table of contents with for every column two 64-bit integers: the
+ * offset of the column data in the message and its length in bytes.
+ * All integers are in the byte order of the server, as announced in the
+ * challenge.
+ *
+ * Per column the data is encoded as follows:
+ * <pre>
+ *  tinyint, smallint, int, bigint  1, 2, 4 or 8 byte integer, minimum value is NULL
+ *  decimal                         unscaled value stored as the smallest integer
+ *                                  fitting its precision, minimum value is NULL
+ *  real, double                    4 or 8 byte IEEE 754 float, NaN is NULL
+ *  boolean                         1 byte, 0 or 1, 0x80 is NULL
+ *  date                            u8 day, u8 month, i16 year, day 0xFF is NULL
+ *  time                            u32 microseconds, u8 seconds, u8 minutes,
+ *                                  u8 hours, u8 padding, hours 0xFF is NULL
+ *  timestamp                       a time followed by a date
+ *  char, varchar, clob, json, url  NUL terminated UTF-8, "\200" is NULL
+ * </pre>
+ * Result sets with columns of any other type (e.g. hugeint, blob,
+ * timestamp with time zone or user defined types) cannot be decoded and
+ * must be fetched in the textual format.  Use {@link #forColumns} to
+ * find out whether a result set qualifies.
+ *
+ * @see BinaryBlock
+ */
+public final class BinaryBlockParser {
+	private final byte[] kinds;
+	private final int[] widths;
+	private final int[] scales;
+
+	private BinaryBlockParser(final byte[] kinds, final int[] widths, final int[] scales) {
+		this.kinds = kinds;
+		this.widths = widths;
+		this.scales = scales;
+	}
+
+	/**
+	 * Creates a BinaryBlockParser for a result set with the given
+	 * column metadata, as found in the result set header.
+	 *
+	 * @param types the MonetDB type names of the columns
+	 * @param precisions the precisions (digits) of the columns, may be null
+	 * @param colScales the scales of the columns, may be null
+	 * @return a parser, or null if the result set has one or more columns
+	 *         whose values cannot be transferred in binary form
+	 */
+	public static BinaryBlockParser forColumns(final String[] types, final int[] precisions, final int[] colScales) {
+		if (types == null)
+			return null;
+		final int cols = types.length;
+		final byte[] kinds = new byte[cols];
+		final int[] widths = new int[cols];
+		final int[] scales = new int[cols];
+		for (int i = 0; i < cols; i++) {
+			final int precision = precisions != null ? precisions[i] : 0;
+			final int scale = colScales != null ? colScales[i] : 0;
+			final String type = types[i];
+			if (type == null)
+				return null;
+			switch (type) {
+				case "tinyint":
+					kinds[i] = BinaryBlock.INTEGER;
+					widths[i] = 1;
+					break;
+				case "smallint":
+					kinds[i] = BinaryBlock.INTEGER;
+					widths[i] = 2;
+					break;
+				case "int":
+					kinds[i] = BinaryBlock.INTEGER;
+					widths[i] = 4;
+					break;
+				case "bigint":
+					kinds[i] = BinaryBlock.INTEGER;
+					widths[i] = 8;
+					break;
+				case "decimal":
+					kinds[i] = BinaryBlock.DECIMAL;
+					if (precision <= 0 || precision > 18)
+						return null;	// would be a hugeint, not supported
+					widths[i] = precision <= 2 ? 1 : precision <= 4 ? 2 : precision <= 9 ? 4 : 8;
+					scales[i] = scale;
+					break;
+				case "real":
+					kinds[i] = BinaryBlock.REAL;
+					widths[i] = 4;
+					break;
+				case "double":
+					kinds[i] = BinaryBlock.DOUBLE;
+					widths[i] = 8;
+					break;
+				case "boolean":
+					kinds[i] = BinaryBlock.BOOLEAN;
+					widths[i] = 1;
+					break;
+				case "date":
+					kinds[i] = BinaryBlock.DATE;
+					widths[i] = 4;
+					break;
+				case "time":
+					kinds[i] = BinaryBlock.TIME;
+					widths[i] = 8;
+					// the server reports the number of digits as precision + 1
+					scales[i] = precision > 1 ? precision - 1 : 0;
+					break;
+				case "timestamp":
+					kinds[i] = BinaryBlock.TIMESTAMP;
+					widths[i] = 12;
+					scales[i] = precision > 1 ? precision - 1 : 0;
+					break;
+				case "char":
+				case "varchar":
+				case "clob":
+				case "json":
+				case "url":
+					kinds[i] = BinaryBlock.STRING;
+					widths[i] = 0;
+					break;
+				default:
+					return null;
+			}
+		}
+		return new BinaryBlockParser(kinds, widths, scales);
+	}
+
+	/**
+	 * Decodes a binary result set block.
+	 *
+	 * @param data the complete reply message
+	 * @param len the number of valid bytes in data
+	 * @param rows the number of rows the block is expected to hold
+	 * @param bigEndian whether the server sends its integers big-endian
+	 * @return the decoded block
+	 * @throws MCLParseException if the message does not conform to the
+	 *         binary result set format
+	 */
+	public BinaryBlock parse(final byte[] data, final int len, final int rows, final boolean bigEndian)
+		throws MCLParseException
+	{
+		final int cols = kinds.length;
+		final int tocPos = len - 16 * cols;
+		if (tocPos < 0)
+			throw new MCLParseException("binary block too short: " + len + " bytes for " + cols + " columns");
+		final ByteBuffer buf = ByteBuffer.wrap(data, 0, len).order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		final BinaryBlock block = new BinaryBlock(kinds, scales, rows, data);
+
+		for (int col = 0; col < cols; col++) {
+			final long start = buf.getLong(tocPos + 16 * col);
+			final long length = buf.getLong(tocPos + 16 * col + 8);
+			if (start < 0 || length < 0 || start + length > tocPos)
+				throw new MCLParseException("column " + (col + 1) + " exceeds the binary block", tocPos + 16 * col);
+			final int pos = (int) start;
+			final int end = (int) (start + length);
+			final int width = widths[col];
+			if (width > 0 && length != (long) width * rows)
+				throw new MCLParseException("column " + (col + 1) + " holds " + length +
+						" bytes, expected " + rows + " values of " + width + " bytes", pos);
+
+			final boolean[] nulls = block.nulls[col];
+			switch (kinds[col]) {
+				case BinaryBlock.INTEGER:
+				case BinaryBlock.DECIMAL:
+					decodeIntegers(buf, pos, width, rows, block.longs[col], nulls);
+					break;
+				case BinaryBlock.REAL: {
+					final double[] v = block.doubles[col];
+					for (int r = 0, p = pos; r < rows; r++, p += 4) {
+						final float f = buf.getFloat(p);
+						nulls[r] = Float.isNaN(f);
+						v[r] = f;
+					}
+				} break;
+				case BinaryBlock.DOUBLE: {
+					final double[] v = block.doubles[col];
+					for (int r = 0, p = pos; r < rows; r++, p += 8) {
+						final double d = buf.getDouble(p);
+						nulls[r] = Double.isNaN(d);
+						v[r] = d;
+					}
+				} break;
+				case BinaryBlock.BOOLEAN: {
+					final long[] v = block.longs[col];
+					for (int r = 0, p = pos; r < rows; r++, p++) {
+						final byte b = data[p];
+						nulls[r] = b == (byte) 0x80;
+						v[r] = b == 1 ? 1 : 0;
+					}
+				} break;
+				case BinaryBlock.DATE: {
+					final long[] v = block.longs[col];
+					for (int r = 0, p = pos; r < rows; r++, p += 4) {
+						final int day = data[p] & 0xFF;
+						if (day == 0xFF) {
+							nulls[r] = true;
+							continue;
+						}
+						v[r] = BinaryBlock.toEpochDay(buf.getShort(p + 2), data[p + 1] & 0xFF, day);
+					}
+				} break;
+				case BinaryBlock.TIME: {
+					final long[] v = block.longs[col];
+					for (int r = 0, p = pos; r < rows; r++, p += 8) {
+						final int hours = data[p + 6] & 0xFF;
+						if (hours == 0xFF) {
+							nulls[r] = true;
+							continue;
+						}
+						v[r] = timeMicros(buf, p);
+					}
+				} break;
+				case BinaryBlock.TIMESTAMP: {
+					final long[] v = block.longs[col];
+					for (int r = 0, p = pos; r < rows; r++, p += 12) {
+						final int day = data[p + 8] & 0xFF;
+						if (day == 0xFF) {
+							nulls[r] = true;
+							continue;
+						}
+						final long epochDay = BinaryBlock.toEpochDay(buf.getShort(p + 10), data[p + 9] & 0xFF, day);
+						v[r] = epochDay * 86400000000L + timeMicros(buf, p);
+					}
+				} break;
+				case BinaryBlock.STRING: {
+					final int[] starts = block.strStart[col];
+					final int[] lens = block.strLen[col];
+					int p = pos;
+					for (int r = 0; r < rows; r++) {
+						int q = p;
+						while (q < end && data[q] != 0)
+							q++;
+						if (q >= end)
+							throw new MCLParseException("column " + (col + 1) + " holds less than " + rows + " strings", p);
+						nulls[r] = q - p == 1 && data[p] == (byte) 0x80;
+						starts[r] = p;
+						lens[r] = q - p;
+						p = q + 1;
+					}
+				} break;
+			}
+		}
+		return block;
+	}
+
+	private static void decodeIntegers(final ByteBuffer buf, final int pos, final int width, final int rows,
+			final long[] v, final boolean[] nulls)
+	{
+		switch (width) {
+			case 1:
+				for (int r = 0, p = pos; r < rows; r++, p++) {
+					final byte b = buf.get(p);
+					nulls[r] = b == Byte.MIN_VALUE;
+					v[r] = b;
+				}
+				break;
+			case 2:
+				for (int r = 0, p = pos; r < rows; r++, p += 2) {
+					final short s = buf.getShort(p);
+					nulls[r] = s == Short.MIN_VALUE;
+					v[r] = s;
+				}
+				break;
+			case 4:
+				for (int r = 0, p = pos; r < rows; r++, p += 4) {
+					final int i = buf.getInt(p);
+					nulls[r] = i == Integer.MIN_VALUE;
+					v[r] = i;
+				}
+				break;
+			default:
+				for (int r = 0, p = pos; r < rows; r++, p += 8) {
+					final long l = buf.getLong(p);
+					nulls[r] = l == Long.MIN_VALUE;
+					v[r] = l;
+				}
+				break;
+		}
+	}
+
+	/** Converts the time struct at position p into microseconds since midnight */
+	private static long timeMicros(final ByteBuffer buf, final int p) {
+		final long micros = buf.getInt(p) & 0xFFFFFFFFL;
+		final int seconds = buf.get(p + 4) & 0xFF;
+		final int minutes = buf.get(p + 5) & 0xFF;
+		final int hours = buf.get(p + 6) & 0xFF;
+		return ((hours * 60L + minutes) * 60L + seconds) * 1000000L + micros;
+	}
+}
@@ -12,17 +12,51 @@
 
 package org.monetdb.mcl.parser;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * The TupleLineParser extracts the values from a given tuple.
  * The number of values that are expected are known upfront to speed up
  * allocation and validation.
  *
+ * Besides textual tuple lines, the TupleLineParser can also present a
+ * row of a {@link BinaryBlock} as the current tuple, see
+ * {@link #load(BinaryBlock, int)}.  Callers should therefore use the
+ * accessor methods such as {@link #getValue(int)} and {@link #getLong(int)}
+ * rather than the values array, as the latter is only filled on demand.
+ *
+ * Tuple lines parsed with {@link #parse(byte[], int, int)} are decoded
+ * lazily as well: parsing only records where each field starts and ends
+ * and whether it is NULL or contains escapes.  The String for a field is
+ * created when it is first asked for, so columns which are never
+ * retrieved cost no allocations.
+ *
  * @author Fabian Groffen
  * @author Martin van Dinther
  */
 public final class TupleLineParser extends MCLParser {
 	private StringBuilder uesc = null;	// used for building field string value when an escape is present in the field value
 
+	/** The binary block the current row was loaded from, or null if the current row was parsed from text */
+	private BinaryBlock block = null;
+	/** The row within block of the current row */
+	private int blockRow;
+
+	/** The buffer holding the current tuple line, or null if the current row was not parsed from bytes */
+	private byte[] src = null;
+	/** Per column: the offset in src of the first byte of the field value */
+	private final int[] fieldStart;
+	/** Per column: the offset in src just after the last byte of the field value */
+	private final int[] fieldEnd;
+	/** Per column: how the field value must be decoded, one of the FIELD_ constants */
+	private final byte[] fieldFlags;
+
+	private static final byte FIELD_PLAIN = 0;	// UTF-8 bytes without escapes
+	private static final byte FIELD_ESCAPED = 1;	// UTF-8 bytes containing backslash escapes
+	private static final byte FIELD_NULL = 2;	// the NULL value
+
 	/**
 	 * Constructs a TupleLineParser which expects columncount columns.
 	 * The columncount argument is used for allocation of the public values array.
@@ -33,6 +67,9 @@ public final class TupleLineParser extends MCLParser {
 	 */
 	public TupleLineParser(final int columncount) {
 		super(columncount);
+		fieldStart = new int[columncount];
+		fieldEnd = new int[columncount];
+		fieldFlags = new byte[columncount];
 	}
 
 	/**
@@ -45,36 +82,67 @@ public final class TupleLineParser extends MCLParser {
 	 */
 	@Override
 	public int parse(final String source) throws MCLParseException {
-		final int len = source.length();
+		final byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+		parse(bytes, 0, bytes.length);
+		// callers of this method expect all values to be available in the values array
+		for (int i = 0; i < values.length; i++)
+			getValue(i);
+		return 0;
+	}
+
+	/**
+	 * Parses the UTF-8 encoded tuple line found in the given byte range.
+	 * If the line cannot be parsed, a MCLParseException is thrown.
+	 *
+	 * Only the positions of the fields are recorded, the field values are
+	 * not decoded into Strings (and their escapes are not removed) until
+	 * they are asked for using {@link #getValue(int)}.  The source buffer
+	 * is referenced until the next tuple is parsed or loaded, so the
+	 * caller must not modify the given byte range in the meantime.
+	 *
+	 * @param source the buffer holding the tuple line
+	 * @param off the offset of the tuple line in source
+	 * @param len the length in bytes of the tuple line, excluding the newline
+	 * @return 0, as there is no 'type' of TupleLine
+	 * @throws MCLParseException if source is not compliant to expected tuple/single value format
+	 */
+	public int parse(final byte[] source, final int off, final int len) throws MCLParseException {
+		block = null;
+		src = null;
+		Arrays.fill(values, null);
 		if (len <= 0)
 			throw new MCLParseException("Missing tuple data");
 
 		// first detect whether this is a single value line (=) or a real tuple ([)
-		char chr = source.charAt(0);
-		if (chr == '=') {
+		final byte first = source[off];
+		if (first == '=') {
 			if (values.length != 1)
 				throw new MCLParseException(values.length +
 						" columns expected, but only single value found");
 
-			// return the whole string but without the leading =
-			values[0] = source.substring(1);
+			// the whole string but without the leading =
+			src = source;
+			fieldStart[0] = off + 1;
+			fieldEnd[0] = off + len;
+			fieldFlags[0] = FIELD_PLAIN;
 
 			// reset colnr
 			colnr = 0;
 			return 0;
 		}
 
-		if (chr != '[')
+		if (first != '[')
 			throw new MCLParseException("Expected a data row starting with [");
 
-		// It is a tuple. Extract separate fields by examining the string data char for char
-		// For parsing it is faster to use an char[] to avoid overhead of source.charAt(i) method calls
-		final char[] chrLine = source.toCharArray();
+		// It is a tuple. Extract separate fields by examining the data byte for byte.
+		// The separators are all ASCII, which never occur inside a multi-byte UTF-8 sequence.
+		final int stop = off + len;
+		final int maxcols = values.length;
 		boolean inString = false, escaped = false, fieldHasEscape = false;
-		int column = 0, cursor = 2;
-		// scan the characters, when a field separator is found extract the field value as String dealing with possible escape characters
-		for (int i = 2; i < len; i++) {
-			switch(chrLine[i]) {
+		int column = 0, cursor = off + 2;
+		// scan the bytes, when a field separator is found record the position of the field value
+		for (int i = off + 2; i < stop; i++) {
+			switch(source[i]) {
 				case '\\':
 					escaped = !escaped;
 					fieldHasEscape = true;
@@ -103,111 +171,30 @@ public final class TupleLineParser extends MCLParser {
 					break;
 				case '\t':		// potential field separator found
 					if (!inString &&
-						((chrLine[i - 1] == ',') ||		// found field separator: ,\t
-						 ((i + 1 == len - 1) && chrLine[++i] == ']'))) // found last field: \t]
+						((source[i - 1] == ',') ||		// found field separator: ,\t
+						 ((i + 1 == stop - 1) && source[++i] == ']'))) // found last field: \t]
 					{
-						// extract the field value as a string, without the potential escape codes
+						if (column >= maxcols)
+							throw new MCLParseException("illegal result length: more than " + maxcols + " columns");
+						// record the position of the field value, excluding surrounding double quotes
 						final int endpos = i - 2;	// minus the tab and the comma or ]
-						if (chrLine[cursor] == '"' &&
-						    chrLine[endpos] == '"')	// field is surrounded by double quotes, so a string with possible escape codes
+						if (source[cursor] == '"' &&
+						    source[endpos] == '"')	// field is surrounded by double quotes, so a string with possible escape codes
 						{
-							cursor++;
-							final int fieldlen = endpos - cursor;
-							if (fieldHasEscape) {
-								if (uesc == null) {
-									// first time use, create it with enough capacity, minimum 1024
-									uesc = new StringBuilder(Math.max(fieldlen, 1024));
-								} else {
-									// reuse the StringBuilder by cleaning it
-									uesc.setLength(0);
-									if (fieldlen > 1024) {
-										// prevent multiple capacity increments during the append()'s in the inner loop
-										uesc.ensureCapacity(fieldlen);
-									}
-								}
-								// parse the field value (excluding the double quotes) and convert it to a string without any escape characters
-								for (int pos = cursor; pos < endpos; pos++) {
-									chr = chrLine[pos];
-									if (chr == '\\' && pos + 1 < endpos) {
-										// we detected an escape
-										// escapedStr and GDKstrFromStr in gdk_atoms.c only
-										// support \\ \f \n \r \t \" and \377
-										pos++;
-										chr = chrLine[pos];
-										switch (chr) {
-											case 'f':
-												uesc.append('\f');
-												break;
-											case 'n':
-												uesc.append('\n');
-												break;
-											case 'r':
-												uesc.append('\r');
-												break;
-											case 't':
-												uesc.append('\t');
-												break;
-											case '0': case '1': case '2': case '3':
-												// this could be an octal number, let's check it out
-												if (pos + 2 < endpos) {
-													char chr2 = chrLine[pos + 1];
-													char chr3 = chrLine[pos + 2];
-													if (chr2 >= '0' && chr2 <= '7' && chr3 >= '0' && chr3 <= '7') {
-														// we got an octal number between \000 and \377
-														try {
-															uesc.append((char)(Integer.parseInt(new String(chrLine, pos, 3), 8)));
-															pos += 2;
-														} catch (NumberFormatException e) {
-															// hmmm, this point should never be reached actually...
-															throw new AssertionError("Flow error, should never try to parse non-number");
-														}
-													} else {
-														// do default action if number seems not to be an octal number
-														uesc.append(chr);
-													}
-												} else {
-													// do default action if number seems not to be an octal number
-													uesc.append(chr);
-												}
-												break;
-											/* case '\\':	optimisation: this code does the same as the default case, so not needed
-												uesc.append('\\');
-												break;
-											*/
-											/* case '"':	optimisation: this code does the same as the default case, so not needed
-												uesc.append('"');
-												break;
-											*/
-											default:
-												// this is wrong usage of escape (except for '\\' and '"'), just ignore the \-escape and print the char
-												uesc.append(chr);
-												break;
-										}
-									} else {
-										uesc.append(chr);
-									}
-								}
-								// put the unescaped string in the right place
-								values[column] = uesc.toString();
-							} else {
-								// the field is a string surrounded by double quotes and without escape chars
-								values[column] = new String(chrLine, cursor, fieldlen);
-								// if (values[column].contains("\\")) {
-								//	throw new MCLParseException("Invalid parsing: detected a \\ in double quoted string: " + fieldVal);
-								// }
-							}
+							fieldStart[column] = cursor + 1;
+							fieldEnd[column] = endpos;
+							fieldFlags[column] = fieldHasEscape ? FIELD_ESCAPED : FIELD_PLAIN;
 						} else {
 							final int vlen = i - 1 - cursor;
+							fieldStart[column] = cursor;
+							fieldEnd[column] = cursor + vlen;
 							if (vlen == 4 &&
-							    chrLine[cursor] == 'N' && chrLine[cursor+1] == 'U' && chrLine[cursor+2] == 'L' && chrLine[cursor+3] == 'L') {
+							    source[cursor] == 'N' && source[cursor+1] == 'U' && source[cursor+2] == 'L' && source[cursor+3] == 'L') {
 								// the field contains NULL, so no value
-								values[column] = null;
+								fieldFlags[column] = FIELD_NULL;
 							} else {
 								// the field is a string NOT surrounded by double quotes and thus without escape chars
-								values[column] = new String(chrLine, cursor, vlen);
-								// if (values[column].contains("\\")) {
-								//	throw new MCLParseException("Invalid parsing: detected a \\ in unquoted string: " + fieldVal);
-								// }
+								fieldFlags[column] = FIELD_PLAIN;
 							}
 						}
 						cursor = i + 1;
@@ -224,11 +211,485 @@ public final class TupleLineParser extends MCLParser {
 		} // end of for()
 
 		// check if this result is of the size we expected it to be
-		if (column != values.length)
-			throw new MCLParseException("illegal result length: " + column + "\nlast read: " + (column > 0 ? values[column - 1] : "<none>"));
+		if (column != maxcols)
+			throw new MCLParseException("illegal result length: " + column + "\nlast read: " +
+					(column > 0 ? decodeField(source, column - 1) : "<none>"));
 
+		src = source;
 		// reset colnr
 		colnr = 0;
 		return 0;
 	}
+
+	/**
+	 * Decodes the recorded field of the given column in source into a
+	 * String, removing escape codes if needed.
+	 */
+	private String decodeField(final byte[] source, final int column) {
+		final int start = fieldStart[column];
+		final int flen = fieldEnd[column] - start;
+		switch (fieldFlags[column]) {
+			case FIELD_NULL:
+				return null;
+			case FIELD_ESCAPED:
+				return unescape(new String(source, start, flen, StandardCharsets.UTF_8));
+			default:
+				return new String(source, start, flen, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Removes the escape codes from a quoted field value.
+	 *
+	 * @param field the field value without the surrounding double quotes
+	 * @return the field value without escape codes
+	 */
+	private String unescape(final String field) {
+		final int endpos = field.length();
+		if (uesc == null) {
+			// first time use, create it with enough capacity, minimum 1024
+			uesc = new StringBuilder(Math.max(endpos, 1024));
+		} else {
+			// reuse the StringBuilder by cleaning it
+			uesc.setLength(0);
+			if (endpos > 1024) {
+				// prevent multiple capacity increments during the append()'s in the inner loop
+				uesc.ensureCapacity(endpos);
+			}
+		}
+		for (int pos = 0; pos < endpos; pos++) {
+			char chr = field.charAt(pos);
+			if (chr == '\\' && pos + 1 < endpos) {
+				// we detected an escape
+				// escapedStr and GDKstrFromStr in gdk_atoms.c only
+				// support \\ \f \n \r \t \" and \377
+				pos++;
+				chr = field.charAt(pos);
+				switch (chr) {
+					case 'f':
+						uesc.append('\f');
+						break;
+					case 'n':
+						uesc.append('\n');
+						break;
+					case 'r':
+						uesc.append('\r');
+						break;
+					case 't':
+						uesc.append('\t');
+						break;
+					case '0': case '1': case '2': case '3':
+						// this could be an octal number, let's check it out
+						if (pos + 2 < endpos) {
+							char chr2 = field.charAt(pos + 1);
+							char chr3 = field.charAt(pos + 2);
+							if (chr2 >= '0' && chr2 <= '7' && chr3 >= '0' && chr3 <= '7') {
+								// we got an octal number between \000 and \377
+								uesc.append((char)(((chr - '0') << 6) | ((chr2 - '0') << 3) | (chr3 - '0')));
+								pos += 2;
+							} else {
+								// do default action if number seems not to be an octal number
+								uesc.append(chr);
+							}
+						} else {
+							// do default action if number seems not to be an octal number
+							uesc.append(chr);
+						}
+						break;
+					/* case '\\':	optimisation: this code does the same as the default case, so not needed
+						uesc.append('\\');
+						break;
+					*/
+					/* case '"':	optimisation: this code does the same as the default case, so not needed
+						uesc.append('"');
+						break;
+					*/
+					default:
+						// this is wrong usage of escape (except for '\\' and '"'), just ignore the \-escape and print the char
+						uesc.append(chr);
+						break;
+				}
+			} else {
+				uesc.append(chr);
+			}
+		}
+		return uesc.toString();
+	}
+
+	/**
+	 * Makes the given row of a binary result set block the current tuple.
+	 * No values are decoded until they are asked for.
+	 *
+	 * @param binary the block holding the row
+	 * @param row the row within the block, 0-based
+	 * @throws IndexOutOfBoundsException if the block has no such row
+	 */
+	public void load(final BinaryBlock binary, final int row) {
+		if (row < 0 || row >= binary.getRowCount())
+			throw new IndexOutOfBoundsException("row " + row + " not in binary block of " + binary.getRowCount() + " rows");
+		block = binary;
+		blockRow = row;
+		src = null;
+		// the values are created lazily by getValue()
+		Arrays.fill(values, null);
+		colnr = 0;
+	}
+
+	/**
+	 * Returns whether the value of the given column in the current tuple is NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @return true if the value is NULL
+	 * @throws IndexOutOfBoundsException if column is not valid
+	 */
+	public boolean isNull(final int column) {
+		if (block != null)
+			return block.isNull(column, blockRow);
+		if (src != null)
+			return fieldFlags[column] == FIELD_NULL;
+		return values[column] == null;
+	}
+
+	/**
+	 * Returns the value of the given column in the current tuple as String.
+	 *
+	 * @param column the column, 0-based
+	 * @return the value, or null if it is NULL
+	 * @throws IndexOutOfBoundsException if column is not valid
+	 */
+	public String getValue(final int column) {
+		String val = values[column];
+		if (val == null) {
+			if (block != null) {
+				val = block.getString(column, blockRow);
+			} else if (src != null) {
+				val = decodeField(src, column);
+			} else {
+				return null;
+			}
+			values[column] = val;
+		}
+		return val;
+	}
+
+	/**
+	 * Returns whether the value of the given column in the current tuple
+	 * is one of the common boolean literals: true, false (both case
+	 * insensitive), 1 or 0.  The caller must have made sure the value is
+	 * not NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @return 1 for true, 0 for false or -1 if the value is something else
+	 */
+	public int matchBoolean(final int column) {
+		if (block != null && (block.isBoolean(column) || block.isIntegral(column)))
+			return block.getLong(column, blockRow) != 0 ? 1 : 0;
+		if (src != null && fieldFlags[column] == FIELD_PLAIN) {
+			final int start = fieldStart[column];
+			final int flen = fieldEnd[column] - start;
+			if (flen == 1) {
+				if (src[start] == '0')
+					return 0;
+				if (src[start] == '1')
+					return 1;
+			} else if (flen == 4 && equalsIgnoreCase(src, start, "true")) {
+				return 1;
+			} else if (flen == 5 && equalsIgnoreCase(src, start, "false")) {
+				return 0;
+			}
+			return -1;
+		}
+		final String val = getValue(column);
+		if ("false".equalsIgnoreCase(val) || "0".equals(val))
+			return 0;
+		if ("true".equalsIgnoreCase(val) || "1".equals(val))
+			return 1;
+		return -1;
+	}
+
+	/**
+	 * Returns the value of the given column in the current tuple as byte.
+	 * The caller must have made sure the value is not NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @return the value
+	 * @throws NumberFormatException if the value cannot be represented as byte
+	 */
+	public byte getByte(final int column) throws NumberFormatException {
+		if (parseIntegral(column, false) && parsed >= Byte.MIN_VALUE && parsed <= Byte.MAX_VALUE)
+			return (byte) parsed;
+		return Byte.parseByte(getValue(column));
+	}
+
+	/**
+	 * Returns the value of the given column in the current tuple as short.
+	 * The caller must have made sure the value is not NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @return the value
+	 * @throws NumberFormatException if the value cannot be represented as short
+	 */
+	public short getShort(final int column) throws NumberFormatException {
+		if (parseIntegral(column, false) && parsed >= Short.MIN_VALUE && parsed <= Short.MAX_VALUE)
+			return (short) parsed;
+		return Short.parseShort(getValue(column));
+	}
+
+	/**
+	 * Returns the value of the given column in the current tuple as int.
+	 * The caller must have made sure the value is not NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @return the value
+	 * @throws NumberFormatException if the value cannot be represented as int
+	 */
+	public int getInt(final int column) throws NumberFormatException {
+		return getInt(column, false);
+	}
+
+	/**
+	 * Returns the value of the given column in the current tuple as int,
+	 * optionally ignoring the @0 suffix of oid values.
+	 * The caller must have made sure the value is not NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @param oid whether a trailing @0 should be ignored
+	 * @return the value
+	 * @throws NumberFormatException if the value cannot be represented as int
+	 */
+	public int getInt(final int column, final boolean oid) throws NumberFormatException {
+		if (parseIntegral(column, oid) && parsed >= Integer.MIN_VALUE && parsed <= Integer.MAX_VALUE)
+			return (int) parsed;
+		return Integer.parseInt(stripOidSuffix(getValue(column), oid));
+	}
+
+	/**
+	 * Returns the value of the given column in the current tuple as long.
+	 * The caller must have made sure the value is not NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @return the value
+	 * @throws NumberFormatException if the value cannot be represented as long
+	 */
+	public long getLong(final int column) throws NumberFormatException {
+		return getLong(column, false);
+	}
+
+	/**
+	 * Returns the value of the given column in the current tuple as long,
+	 * optionally ignoring the @0 suffix of oid values.
+	 * The caller must have made sure the value is not NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @param oid whether a trailing @0 should be ignored
+	 * @return the value
+	 * @throws NumberFormatException if the value cannot be represented as long
+	 */
+	public long getLong(final int column, final boolean oid) throws NumberFormatException {
+		if (parseIntegral(column, oid))
+			return parsed;
+		return Long.parseLong(stripOidSuffix(getValue(column), oid));
+	}
+
+	/**
+	 * Returns the value of the given column in the current tuple as double.
+	 * The caller must have made sure the value is not NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @return the value
+	 * @throws NumberFormatException if the value cannot be represented as double
+	 */
+	public double getDouble(final int column) throws NumberFormatException {
+		if (block != null && block.isNumeric(column))
+			return block.getDouble(column, blockRow);
+		if (parseDecimal(column) && parsed <= (1L << 53) && parsedExp >= -22 && parsedExp <= 22) {
+			// both operands are exact, so the single rounding of the
+			// multiplication or division gives the correctly rounded result
+			final double v = parsedExp < 0 ? parsed / DOUBLE_POW10[-parsedExp] : parsed * DOUBLE_POW10[parsedExp];
+			return parsedNegative ? -v : v;
+		}
+		return Double.parseDouble(getValue(column));
+	}
+
+	/**
+	 * Returns the value of the given column in the current tuple as float.
+	 * The caller must have made sure the value is not NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @return the value
+	 * @throws NumberFormatException if the value cannot be represented as float
+	 */
+	public float getFloat(final int column) throws NumberFormatException {
+		if (block != null && block.isNumeric(column))
+			return (float) block.getDouble(column, blockRow);
+		if (parseDecimal(column) && parsed <= (1L << 24) && parsedExp >= -10 && parsedExp <= 10) {
+			final float v = parsedExp < 0 ? parsed / FLOAT_POW10[-parsedExp] : parsed * FLOAT_POW10[parsedExp];
+			return parsedNegative ? -v : v;
+		}
+		return Float.parseFloat(getValue(column));
+	}
+
+	/** The powers of ten which are exactly representable as double */
+	private static final double[] DOUBLE_POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	/** The powers of ten which are exactly representable as float */
+	private static final float[] FLOAT_POW10 = {
+		1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+	};
+
+	/* The results of the last successful parseIntegral() or parseDecimal() call.
+	 * Kept in fields so the primitive getters do not need to allocate. */
+	private long parsed;
+	private int parsedExp;
+	private boolean parsedNegative;
+
+	/**
+	 * Parses the value of the given column directly from the current row,
+	 * as integer.  On success the value is stored in parsed.
+	 * Returns false if the value cannot be handled here, e.g. because it
+	 * is not an integer or out of range, in which case the caller should
+	 * use the String value, which also produces the proper exception.
+	 */
+	private boolean parseIntegral(final int column, final boolean oid) {
+		if (block != null) {
+			if (!block.isIntegral(column))
+				return false;
+			parsed = block.getLong(column, blockRow);
+			return true;
+		}
+		if (src == null || fieldFlags[column] != FIELD_PLAIN)
+			return false;
+		final byte[] b = src;
+		int i = fieldStart[column];
+		int end = fieldEnd[column];
+		if (oid && end - i > 2 && b[end - 2] == '@' && b[end - 1] == '0')
+			end -= 2;
+		if (i >= end)
+			return false;
+		boolean negative = false;
+		if (b[i] == '-') {
+			negative = true;
+			i++;
+		} else if (b[i] == '+') {
+			i++;
+		}
+		if (i >= end)
+			return false;
+		// accumulate negatively, as Long.parseLong() does, to be able to represent Long.MIN_VALUE
+		final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		final long multmin = limit / 10;
+		long result = 0;
+		for (; i < end; i++) {
+			final int digit = b[i] - '0';
+			if (digit < 0 || digit > 9 || result < multmin)
+				return false;
+			result *= 10;
+			if (result < limit + digit)
+				return false;
+			result -= digit;
+		}
+		parsed = negative ? result : -result;
+		return true;
+	}
+
+	/**
+	 * Parses the value of the given column directly from the current row,
+	 * as decimal number with an optional exponent.  On success the
+	 * absolute value of the digits is stored in parsed, the power of ten
+	 * to apply in parsedExp and the sign in parsedNegative.
+	 * Returns false if the value cannot be handled here, e.g. because it
+	 * has too many digits or is not a plain number.
+	 */
+	private boolean parseDecimal(final int column) {
+		if (src == null || block != null || fieldFlags[column] != FIELD_PLAIN)
+			return false;
+		final byte[] b = src;
+		int i = fieldStart[column];
+		final int end = fieldEnd[column];
+		if (i >= end)
+			return false;
+		boolean negative = false;
+		if (b[i] == '-') {
+			negative = true;
+			i++;
+		} else if (b[i] == '+') {
+			i++;
+		}
+		long mantissa = 0;
+		int exp = 0, digits = 0;
+		boolean point = false;
+		for (; i < end; i++) {
+			final byte c = b[i];
+			if (c >= '0' && c <= '9') {
+				if (mantissa >= (1L << 53))
+					return false;	// too many significant digits for the fast path
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (point)
+					exp--;
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		if (digits == 0)
+			return false;
+		if (i < end) {
+			if (b[i] != 'e' && b[i] != 'E')
+				return false;
+			i++;
+			boolean negExp = false;
+			if (i < end && (b[i] == '-' || b[i] == '+')) {
+				negExp = b[i] == '-';
+				i++;
+			}
+			if (i >= end)
+				return false;
+			int e = 0;
+			for (; i < end; i++) {
+				final int digit = b[i] - '0';
+				if (digit < 0 || digit > 9 || e > 1000)
+					return false;
+				e = e * 10 + digit;
+			}
+			exp += negExp ? -e : e;
+		}
+		parsed = mantissa;
+		parsedExp = exp;
+		parsedNegative = negative;
+		return true;
+	}
+
+	/** Compares the bytes at start in b case insensitively with the given lowercase ASCII literal */
+	private static boolean equalsIgnoreCase(final byte[] b, final int start, final String literal) {
+		for (int i = 0; i < literal.length(); i++) {
+			if ((b[start + i] | 0x20) != literal.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	private static String stripOidSuffix(final String val, final boolean oid) {
+		// oid values have a @0 suffix in their textual representation
+		if (oid && val.endsWith("@0"))
+			return val.substring(0, val.length() - 2);
+		return val;
+	}
+
+	/**
+	 * Returns the value of the given column in the current tuple as BigDecimal.
+	 * The caller must have made sure the value is not NULL.
+	 *
+	 * @param column the column, 0-based
+	 * @return the value
+	 * @throws NumberFormatException if the value cannot be represented as BigDecimal
+	 */
+	public BigDecimal getBigDecimal(final int column) throws NumberFormatException {
+		if (block != null && block.isNumeric(column))
+			return block.getBigDecimal(column, blockRow);
+		return new BigDecimal(getValue(column));
+	}
 }
@@ -0,0 +1,62 @@
+/*
+ * SPDX-License-Identifier: MPL-2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.  If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright 2024, 2025 MonetDB Foundation;
+ * Copyright August 2008 - 2023 MonetDB B.V.;
+ * Copyright 1997 - July 2008 CWI.
+ */
+
+package org.monetdb.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compressed file format which {@link FileTransferHandler} can read
+ * and possibly write, recognized by its file name extension.
+ *
+ * Only gzip is built in, as other formats would introduce dependencies
+ * on external libraries.  Support for formats such as .zst, .lz4, .bz2
+ * or .xz can be added without changing the driver by implementing this
+ * interface, for instance on top of Apache Commons Compress, and either
+ * listing the implementation class in a
+ * <code>META-INF/services/org.monetdb.util.CompressionCodec</code> file
+ * on the class path, so it is found by {@link java.util.ServiceLoader},
+ * or registering it with {@link FileTransferHandler#addCodec(CompressionCodec)}.
+ */
+public interface CompressionCodec {
+	/**
+	 * Get the file name extension of this format.
+	 *
+	 * @return the extension including the leading dot, for instance ".zst"
+	 */
+	String getExtension();
+
+	/**
+	 * Wrap the given stream of compressed data in a stream which
+	 * returns the decompressed data.
+	 *
+	 * @param in the compressed data
+	 * @return the decompressed data
+	 * @throws IOException when the data cannot be read or decompressed
+	 */
+	InputStream decompress(InputStream in) throws IOException;
+
+	/**
+	 * Wrap the given stream in a stream which compresses the data
+	 * written to it.
+	 *
+	 * @param out the stream to write the compressed data to
+	 * @return the stream to write the uncompressed data to, or null if
+	 *         this codec can only decompress
+	 * @throws IOException when the stream cannot be set up
+	 */
+	default OutputStream compress(OutputStream out) throws IOException {
+		return null;
+	}
+}
@@ -19,14 +19,23 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -39,9 +48,12 @@ import java.util.zip.GZIPOutputStream;
  *   COPY SELECT_query INTO 'file-name' ON CLIENT ...
  * handling.
  *
- * Currently only file compression format .gz is supported. This is intentionally
+ * Only file compression format .gz is built in. This is intentionally
  * as other compression formats would introduce dependencies on external
  * libraries which complicates usage of JDBC driver or JdbcClient application.
+ * Other formats can be added by providing a {@link CompressionCodec},
+ * see there.  Compressed files are decompressed on a separate thread,
+ * so decompression overlaps with sending the data to the server.
  * Developers can of course build their own MyFileTransferHandler class
  * and use it instead of this default implementation.
  *
@@ -54,8 +66,12 @@ import java.util.zip.GZIPOutputStream;
  * @version 1.1
  */
 public class FileTransferHandler implements MonetConnection.UploadHandler, MonetConnection.DownloadHandler {
+	/** File name extensions of compression formats, used to refuse files for which no codec is available */
+	private static final String[] COMPRESSION_EXTENSIONS = { ".gz", ".bz2", ".lz4", ".xz", ".zip", ".zst" };
+
 	private final Path root;
 	private final Charset encoding;
+	private final ArrayList<CompressionCodec> codecs = new ArrayList<>();
 
 	/**
 	 * Create a new FileTransferHandler which serves the given directory.
@@ -67,6 +83,7 @@ public class FileTransferHandler implements MonetConnection.UploadHandler, Monet
 	public FileTransferHandler(final Path dir, final Charset encoding) {
 		this.root = dir.toAbsolutePath().normalize();
 		this.encoding = encoding != null ? encoding: Charset.defaultCharset();
+		loadCodecs();
 	}
 
 	/**
@@ -80,6 +97,87 @@ public class FileTransferHandler implements MonetConnection.UploadHandler, Monet
 		this(FileSystems.getDefault().getPath(dir), encoding);
 	}
 
+	/**
+	 * Register an additional compression format.  It takes precedence
+	 * over the codecs registered earlier and the ones found by the
+	 * ServiceLoader, including the built-in gzip support.
+	 *
+	 * @param codec the CompressionCodec to add
+	 */
+	public void addCodec(final CompressionCodec codec) {
+		codecs.add(0, codec);
+	}
+
+	/**
+	 * Collects the codecs listed in META-INF/services, followed by the
+	 * built-in gzip codec.
+	 */
+	private void loadCodecs() {
+		final Iterator<CompressionCodec> it = ServiceLoader.load(CompressionCodec.class).iterator();
+		while (true) {
+			try {
+				if (!it.hasNext())
+					break;
+				codecs.add(it.next());
+			} catch (ServiceConfigurationError e) {
+				// a provider which cannot be loaded is skipped, its
+				// file extension is then refused as unsupported
+			}
+		}
+		codecs.add(new CompressionCodec() {
+			@Override
+			public String getExtension() {
+				return ".gz";
+			}
+
+			@Override
+			public InputStream decompress(final InputStream in) throws IOException {
+				return new GZIPInputStream(in, 128 * 1024);
+			}
+
+			@Override
+			public OutputStream compress(final OutputStream out) throws IOException {
+				return new GZIPOutputStream(out, 128 * 1024);
+			}
+		});
+	}
+
+	/**
+	 * Find the codec for the given file name.
+	 *
+	 * @param name the file name
+	 * @return the matching CompressionCodec or null if there is none
+	 */
+	CompressionCodec findCodec(final String name) {
+		for (CompressionCodec c : codecs) {
+			if (name.endsWith(c.getExtension()))
+				return c;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the extension if the name is that of a file in a known
+	 * compression format, else null.
+	 */
+	static String compressionExtension(final String name) {
+		for (String ext : COMPRESSION_EXTENSIONS) {
+			if (name.endsWith(ext))
+				return ext;
+		}
+		return null;
+	}
+
+	/** The supported extensions, for use in error messages */
+	String supportedExtensions() {
+		final StringBuilder sb = new StringBuilder();
+		for (CompressionCodec c : codecs) {
+			if (sb.indexOf(c.getExtension()) < 0)
+				sb.append(sb.length() == 0 ? "" : ", ").append(c.getExtension());
+		}
+		return sb.toString();
+	}
+
 	/**
 	 * Read the data from the specified file (in the root directory) and upload it to the server.
 	 */
@@ -98,28 +196,43 @@ public class FileTransferHandler implements MonetConnection.UploadHandler, Monet
 			return;
 		}
 
-		// In this implementation we ONLY support gzip compression format and none of the other compression formats.
-		if (name.endsWith(".bz2") || name.endsWith(".lz4") || name.endsWith(".xz") || name.endsWith(".zip")) {
-			final String extension = name.substring(name.lastIndexOf('.'));
-			handle.sendError("Specified file compression format " + extension + " is not supported. Only .gz is supported.");
+		final CompressionCodec codec = findCodec(name);
+		if (codec == null && compressionExtension(name) != null) {
+			handle.sendError("Specified file compression format " + compressionExtension(name) + " is not supported. Supported are: " + supportedExtensions() + ".");
+			return;
+		}
+
+		if (!textMode && codec == null) {
+			// uncompressed binary data is sent as is, straight from the file channel
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				handle.uploadFrom(channel);
+			}
 			return;
 		}
 
 		InputStream byteStream = Files.newInputStream(path);
-		if (name.endsWith(".gz")) {
-			byteStream = new GZIPInputStream(byteStream, 128 * 1024);
+		if (codec != null) {
+			try {
+				byteStream = new ReadAheadInputStream(codec.decompress(byteStream));
+			} catch (IOException | RuntimeException e) {
+				byteStream.close();
+				throw e;
+			}
 		}
 
-		if (!textMode || (linesToSkip == 0 && utf8Encoded())) {
-			// when !textMode we must upload as a byte stream
-			// when utf8Encoded and linesToSkip is 0 it is more efficient to upload as a byte stream
-			handle.uploadFrom(byteStream);
+		try {
+			if (!textMode || (linesToSkip == 0 && utf8Encoded())) {
+				// when !textMode we must upload as a byte stream
+				// when utf8Encoded and linesToSkip is 0 it is more efficient to upload as a byte stream
+				handle.uploadFrom(byteStream);
+			} else {
+				// cannot upload as a byte stream, must deal with encoding and/or linesToSkip
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(byteStream, encoding));
+				handle.uploadFrom(reader, linesToSkip);
+			}
+		} finally {
+			// also stops the decompression thread if the upload failed
 			byteStream.close();
-		} else {
-			// cannot upload as a byte stream, must deal with encoding and/or linesToSkip
-			final BufferedReader reader = new BufferedReader(new InputStreamReader(byteStream, encoding));
-			handle.uploadFrom(reader, linesToSkip);
-			reader.close();
 		}
 	}
 
@@ -128,13 +241,8 @@ public class FileTransferHandler implements MonetConnection.UploadHandler, Monet
 	 * When a file with the same name already exists the download request will send an error and NOT overwrite the existing file.
 	 */
 	public void handleDownload(final MonetConnection.Download handle, final String name, final boolean textMode) throws IOException {
-		if (name == null || name.isEmpty()) {
-			handle.sendError("Missing file name");
-			return;
-		}
-		final Path path = root.resolve(name).normalize();
-		if (!path.startsWith(root)) {
-			handle.sendError("File is not in download directory: " + root.toString());
+		final Path path = resolveDownload(handle, name);
+		if (path == null) {
 			return;
 		}
 		if (Files.exists(path)) {
@@ -142,16 +250,22 @@ public class FileTransferHandler implements MonetConnection.UploadHandler, Monet
 			return;
 		}
 
-		// In this implementation we ONLY support gzip compression format and none of the other compression formats.
-		if (name.endsWith(".bz2") || name.endsWith(".lz4") || name.endsWith(".xz") || name.endsWith(".zip")) {
-			final String extension = name.substring(name.lastIndexOf('.'));
-			handle.sendError("Requested file compression format " + extension + " is not supported. Use .gz instead.");
+		final CompressionCodec codec = findCodec(name);
+		if (codec == null && compressionExtension(name) != null) {
+			handle.sendError("Requested file compression format " + compressionExtension(name) + " is not supported. Supported are: " + supportedExtensions() + ".");
 			return;
 		}
 
 		OutputStream byteStream = Files.newOutputStream(path, StandardOpenOption.CREATE_NEW);
-		if (name.endsWith(".gz")) {
-			byteStream = new GZIPOutputStream(byteStream, 128 * 1024);
+		if (codec != null) {
+			final OutputStream compressed = codec.compress(byteStream);
+			if (compressed == null) {
+				byteStream.close();
+				Files.delete(path);
+				handle.sendError("Requested file compression format " + codec.getExtension() + " can only be read, not written.");
+				return;
+			}
+			byteStream = compressed;
 		}
 
 		if (!textMode || utf8Encoded()) {
@@ -170,4 +284,139 @@ public class FileTransferHandler implements MonetConnection.UploadHandler, Monet
 	public boolean utf8Encoded() {
 		return encoding.equals(StandardCharsets.UTF_8);
 	}
+
+	/**
+	 * Get the encoding of the data files.
+	 * @return the Charset used for the data files in text mode
+	 */
+	Charset getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Resolve the name of a file to download to against the root directory.
+	 *
+	 * @param handle the download, used to refuse invalid names
+	 * @param name the file name requested by the server
+	 * @return the Path to write to, or null if an error has been sent
+	 * @throws IOException when the error cannot be sent
+	 */
+	Path resolveDownload(final MonetConnection.Download handle, final String name) throws IOException {
+		if (name == null || name.isEmpty()) {
+			handle.sendError("Missing file name");
+			return null;
+		}
+		final Path path = root.resolve(name).normalize();
+		if (!path.startsWith(root)) {
+			handle.sendError("File is not in download directory: " + root.toString());
+			return null;
+		}
+		return path;
+	}
+
+	/**
+	 * Reads its source on a separate thread, so the work done by the
+	 * source, such as decompression, overlaps with the work done by the
+	 * reader, such as sending the data to the server.  The data is handed
+	 * over in chunks through a bounded queue, so the thread never gets
+	 * more than QUEUE_CHUNKS chunks ahead.  The chunk buffers are reused.
+	 */
+	private static final class ReadAheadInputStream extends InputStream {
+		private static final int CHUNK_SIZE = 128 * 1024;
+		private static final int QUEUE_CHUNKS = 4;
+		/** Queued after the last chunk */
+		private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+		private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(QUEUE_CHUNKS + 1);
+		private final BlockingQueue<ByteBuffer> empty = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+		private final Thread worker;
+		private volatile IOException failure = null;
+		private volatile boolean closed = false;
+		private ByteBuffer current = null;
+
+		ReadAheadInputStream(final InputStream source) {
+			for (int i = 0; i < QUEUE_CHUNKS; i++)
+				empty.add(ByteBuffer.allocate(CHUNK_SIZE));
+			worker = new Thread("MonetDB decompressor") {
+				@Override
+				public void run() {
+					fill(source);
+				}
+			};
+			worker.setDaemon(true);
+			worker.start();
+		}
+
+		/** Runs on the worker thread */
+		private void fill(final InputStream source) {
+			try {
+				int nread = 0;
+				while (nread >= 0 && !closed) {
+					final ByteBuffer buf = empty.take();
+					final byte[] array = buf.array();
+					int len = 0;
+					while (len < array.length && (nread = source.read(array, len, array.length - len)) >= 0)
+						len += nread;
+					buf.clear();
+					buf.limit(len);
+					if (len > 0)
+						filled.put(buf);
+				}
+			} catch (IOException e) {
+				failure = e;
+			} catch (RuntimeException e) {
+				failure = new IOException(e.getMessage(), e);
+			} catch (InterruptedException e) {
+				// closed by the reader
+			} finally {
+				try {
+					source.close();
+				} catch (IOException e) {
+					// ignore, data has been read or failure is set already
+				}
+				// END always fits, filled has a slot for each buffer and one more
+				filled.offer(END);
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (current == null || !current.hasRemaining()) {
+				if (current == END)
+					return -1;
+				if (current != null)
+					empty.offer(current);
+				try {
+					current = filled.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted while waiting for decompressed data");
+				}
+				if (current == END) {
+					if (failure != null)
+						throw failure;
+					return -1;
+				}
+			}
+			final int n = Math.min(len, current.remaining());
+			current.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public void close() {
+			if (closed)
+				return;
+			closed = true;
+			worker.interrupt();
+		}
+	}
 }
@@ -0,0 +1,353 @@
+/*
+ * SPDX-License-Identifier: MPL-2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.  If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright 2024, 2025 MonetDB Foundation;
+ * Copyright August 2008 - 2023 MonetDB B.V.;
+ * Copyright 1997 - July 2008 CWI.
+ */
+
+package org.monetdb.util;
+
+import org.monetdb.jdbc.MonetConnection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a large text file into a table using several connections at once.
+ *
+ * The file is split on line boundaries into one byte range per connection.
+ * Each range is uploaded with its own
+ *   COPY INTO staging_table FROM ... ON CLIENT ...
+ * into a staging table created like the target table, so the ranges are
+ * parsed and stored by the server in parallel.  When all uploads have
+ * succeeded the staging tables are merged into the target table with a
+ * single INSERT INTO table SELECT ... statement, and dropped afterwards.
+ *
+ * Because the file is split on newline characters without looking at
+ * its contents, it must not contain quoted values with embedded newlines.
+ * The data must be UTF-8 encoded, as is required for ON CLIENT uploads.
+ *
+ * Example:
+ * <pre>
+ *   ParallelLoader loader = new ParallelLoader(url, props, 4);
+ *   loader.setCopyOptions("DELIMITERS ',', E'\\n', '\"'");
+ *   loader.setSkipLines(1);
+ *   long rows = loader.load("/data/big.csv", "sys.measurements");
+ * </pre>
+ */
+public class ParallelLoader {
+	private final String url;
+	private final Properties info;
+	private final int connections;
+	private String copyOptions = "";
+	private long skipLines = 0;
+
+	/**
+	 * Create a new ParallelLoader which uses the given number of
+	 * connections to the database at the given JDBC URL.
+	 *
+	 * @param url the JDBC URL of the database, as passed to {@link DriverManager#getConnection(String, Properties)}
+	 * @param info the connection properties such as user and password, may be null
+	 * @param connections the number of connections, and therefore file ranges, to use
+	 */
+	public ParallelLoader(final String url, final Properties info, final int connections) {
+		if (connections <= 0)
+			throw new IllegalArgumentException("number of connections must be positive");
+		this.url = url;
+		this.info = info != null ? info : new Properties();
+		this.connections = connections;
+	}
+
+	/**
+	 * Set the options appended to each COPY INTO statement, for instance
+	 * the delimiters and the NULL representation.  OFFSET and RECORDS
+	 * cannot be used as they would apply to every range.
+	 *
+	 * @param options the options, for instance "DELIMITERS ',', E'\\n'"
+	 */
+	public void setCopyOptions(final String options) {
+		copyOptions = options != null ? options : "";
+	}
+
+	/**
+	 * Set the number of lines to skip at the start of the file, for
+	 * instance to skip a header line.
+	 *
+	 * @param lines the number of lines to skip
+	 */
+	public void setSkipLines(final long lines) {
+		skipLines = Math.max(lines, 0);
+	}
+
+	/**
+	 * Load the given file into the given table.
+	 *
+	 * @param file the name of the file to load
+	 * @param table the name of the table, possibly schema qualified and quoted as needed in SQL
+	 * @return the number of rows inserted into the table
+	 * @throws IOException if the file cannot be read
+	 * @throws SQLException if a connection, upload or statement failed
+	 */
+	public long load(final String file, final String table) throws IOException, SQLException {
+		return load(FileSystems.getDefault().getPath(file), table);
+	}
+
+	/**
+	 * Load the given file into the given table.
+	 *
+	 * @param file the Path of the file to load
+	 * @param table the name of the table, possibly schema qualified and quoted as needed in SQL
+	 * @return the number of rows inserted into the table
+	 * @throws IOException if the file cannot be read
+	 * @throws SQLException if a connection, upload or statement failed
+	 */
+	public long load(final Path file, final String table) throws IOException, SQLException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long[] bounds = split(channel);
+			final int n = bounds.length - 1;
+			final MonetConnection[] conns = new MonetConnection[n];
+			final String[] stages = new String[n];
+			ExecutorService pool = null;
+			try {
+				for (int i = 0; i < n; i++)
+					conns[i] = connect();
+
+				// create the staging tables up front, from a single connection
+				final String prefix = "parallel_load_" + Long.toHexString(System.nanoTime()) + "_";
+				try (Statement st = conns[0].createStatement()) {
+					for (int i = 0; i < n; i++) {
+						st.executeUpdate("CREATE TABLE " + prefix + i + " AS SELECT * FROM " + table + " WITH NO DATA");
+						stages[i] = prefix + i;
+					}
+				}
+
+				pool = Executors.newFixedThreadPool(n);
+				final List<Future<Long>> uploads = new ArrayList<>(n);
+				for (int i = 0; i < n; i++)
+					uploads.add(pool.submit(new RangeUpload(conns[i], stages[i], channel, bounds[i], bounds[i + 1])));
+				awaitAll(uploads);
+
+				final StringBuilder merge = new StringBuilder(64 + n * 48);
+				merge.append("INSERT INTO ").append(table);
+				for (int i = 0; i < n; i++)
+					merge.append(i == 0 ? " SELECT * FROM " : " UNION ALL SELECT * FROM ").append(stages[i]);
+				try (Statement st = conns[0].createStatement()) {
+					return st.executeLargeUpdate(merge.toString());
+				}
+			} finally {
+				if (pool != null)
+					pool.shutdown();
+				dropStages(conns[0], stages);
+				for (MonetConnection c : conns) {
+					if (c != null)
+						c.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens one connection and checks it is a MonetDB connection.
+	 */
+	private MonetConnection connect() throws SQLException {
+		final Connection c = DriverManager.getConnection(url, info);
+		if (c instanceof MonetConnection)
+			return (MonetConnection) c;
+		c.close();
+		throw new SQLException("ParallelLoader requires a MonetDB JDBC connection", "M1M05");
+	}
+
+	/**
+	 * Waits for all uploads, even when one of them fails, so no
+	 * connection is still in use when the staging tables are dropped.
+	 * The first failure is thrown, the others are added to it as
+	 * suppressed exceptions.
+	 */
+	private static void awaitAll(final List<Future<Long>> uploads) throws IOException, SQLException {
+		Exception failure = null;
+		boolean interrupted = false;
+		for (Future<Long> f : uploads) {
+			while (true) {
+				try {
+					f.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					final Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					if (failure == null)
+						failure = cause;
+					else
+						failure.addSuppressed(cause);
+					break;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (failure instanceof SQLException)
+			throw (SQLException) failure;
+		if (failure instanceof IOException)
+			throw (IOException) failure;
+		if (failure != null)
+			throw new SQLException("Upload failed: " + failure.getMessage(), "M1M05", failure);
+	}
+
+	/**
+	 * Drops the staging tables which have been created.  Failures are
+	 * ignored, as an exception may already be on its way.
+	 */
+	private static void dropStages(final MonetConnection conn, final String[] stages) {
+		if (conn == null)
+			return;
+		try (Statement st = conn.createStatement()) {
+			for (String stage : stages) {
+				if (stage != null)
+					st.executeUpdate("DROP TABLE " + stage);
+			}
+		} catch (SQLException e) {
+			// ignore, nothing more we can do here
+		}
+	}
+
+	/**
+	 * Computes the byte ranges to upload.  Range i runs from bounds[i]
+	 * up to bounds[i + 1], and every range except the first starts
+	 * right after a newline.
+	 */
+	private long[] split(final FileChannel channel) throws IOException {
+		final long size = channel.size();
+		final ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+		long start = 0;
+		for (long i = 0; i < skipLines && start < size; i++)
+			start = nextLine(channel, buf, start, size);
+
+		final long[] bounds = new long[connections + 1];
+		int n = 0;
+		bounds[0] = start;
+		for (int i = 1; i < connections; i++) {
+			final long guess = start + (size - start) / connections * i;
+			if (guess <= bounds[n])
+				continue;
+			// start scanning one byte earlier, in case guess already starts a line
+			final long pos = nextLine(channel, buf, guess - 1, size);
+			if (pos > bounds[n] && pos < size)
+				bounds[++n] = pos;
+		}
+		bounds[++n] = size;
+		return Arrays.copyOf(bounds, n + 1);
+	}
+
+	/**
+	 * Returns the position right after the first newline at or after
+	 * pos, or size if there is none.
+	 */
+	private static long nextLine(final FileChannel channel, final ByteBuffer buf, long pos, final long size) throws IOException {
+		while (pos < size) {
+			buf.clear();
+			final int nread = channel.read(buf, pos);
+			if (nread <= 0)
+				break;
+			for (int i = 0; i < nread; i++) {
+				if (buf.get(i) == '\n')
+					return pos + i + 1;
+			}
+			pos += nread;
+		}
+		return size;
+	}
+
+	/**
+	 * Uploads one byte range of the file into its staging table.
+	 */
+	private final class RangeUpload implements Callable<Long>, MonetConnection.UploadHandler {
+		private final MonetConnection conn;
+		private final String stage;
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+
+		RangeUpload(final MonetConnection conn, final String stage, final FileChannel channel, final long start, final long end) {
+			this.conn = conn;
+			this.stage = stage;
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Long call() throws SQLException {
+			conn.setUploadHandler(this);
+			try (Statement st = conn.createStatement()) {
+				return st.executeLargeUpdate("COPY INTO " + stage + " FROM 'range-" + start + "-" + end + "' ON CLIENT " + copyOptions);
+			}
+		}
+
+		@Override
+		public void handleUpload(final MonetConnection.Upload handle, final String name, final boolean textMode, final long linesToSkip) throws IOException {
+			if (linesToSkip > 0) {
+				handle.sendError("OFFSET is not supported by ParallelLoader, use setSkipLines()");
+				return;
+			}
+			handle.uploadFrom(new RangeInputStream(channel, start, end));
+		}
+	}
+
+	/**
+	 * Reads a byte range of a FileChannel using positional reads, so
+	 * all ranges can share the same channel.
+	 */
+	private static final class RangeInputStream extends InputStream {
+		private final FileChannel channel;
+		private long pos;
+		private final long end;
+
+		RangeInputStream(final FileChannel channel, final long start, final long end) {
+			this.channel = channel;
+			this.pos = start;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (pos >= end)
+				return -1;
+			final int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - pos)), pos);
+			if (n < 0)
+				return -1;
+			pos += n;
+			return n;
+		}
+	}
+}
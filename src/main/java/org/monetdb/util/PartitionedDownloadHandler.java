@@ -0,0 +1,469 @@
+/*
+ * SPDX-License-Identifier: MPL-2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.  If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright 2024, 2025 MonetDB Foundation;
+ * Copyright August 2008 - 2023 MonetDB B.V.;
+ * Copyright 1997 - July 2008 CWI.
+ */
+
+package org.monetdb.util;
+
+import org.monetdb.jdbc.MonetConnection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * FileTransferHandler which writes each download to a series of part
+ * files instead of a single file, starting a new part every N bytes
+ * and/or every N rows.  For
+ *   COPY SELECT ... INTO 'export.csv.gz' ON CLIENT
+ * the parts are named export-00001.csv.gz, export-00002.csv.gz, and so
+ * on.  Compression, as selected by the file name extension just like in
+ * {@link FileTransferHandler}, is done on a pool of worker threads, one
+ * part per thread, while the connection keeps receiving the next part.
+ *
+ * The data is passed on in byte chunks and never decoded into lines.
+ * In text mode parts are only cut after a newline, so a part may end up
+ * somewhat larger than the byte limit.  In binary mode the byte limit is
+ * exact and the row limit does not apply.
+ *
+ * Uploads are handled the same as by {@link FileTransferHandler}.
+ */
+public class PartitionedDownloadHandler extends FileTransferHandler {
+	private static final int CHUNK_SIZE = 256 * 1024;
+
+	private long maxPartBytes = 0;
+	private long maxPartRows = 0;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Create a new PartitionedDownloadHandler which serves the given directory.
+	 *
+	 * @param dir directory Path to read and write files from
+	 * @param encoding the specified characterSet encoding is used for all data files in the directory
+	 *                 when null the Charset.defaultCharset() is used.
+	 */
+	public PartitionedDownloadHandler(final Path dir, final Charset encoding) {
+		super(dir, encoding);
+	}
+
+	/**
+	 * Create a new PartitionedDownloadHandler which serves the given directory.
+	 *
+	 * @param dir directory String to read and write files from
+	 * @param encoding the specified characterSet encoding is used for all data files in the directory
+	 *                 when null the Charset.defaultCharset() is used.
+	 */
+	public PartitionedDownloadHandler(final String dir, final Charset encoding) {
+		this(FileSystems.getDefault().getPath(dir), encoding);
+	}
+
+	/**
+	 * Set the size in bytes after which a new part is started.
+	 * The size is measured before compression.
+	 *
+	 * @param bytes the maximum part size, 0 for no limit
+	 */
+	public void setMaxPartBytes(final long bytes) {
+		maxPartBytes = Math.max(bytes, 0);
+	}
+
+	/**
+	 * Set the number of rows after which a new part is started.
+	 * Only used for text mode downloads.
+	 *
+	 * @param rows the maximum number of rows per part, 0 for no limit
+	 */
+	public void setMaxPartRows(final long rows) {
+		maxPartRows = Math.max(rows, 0);
+	}
+
+	/**
+	 * Set the number of threads writing and compressing parts.
+	 * The default is the number of available processors.
+	 *
+	 * @param threads the number of threads, at least 1
+	 */
+	public void setThreads(final int threads) {
+		this.threads = Math.max(threads, 1);
+	}
+
+	/**
+	 * Returns the name of the given part: the number is inserted before
+	 * the first dot of the file name, so the extensions are kept.
+	 */
+	static Path partPath(final Path path, final int partNr) {
+		final String fileName = path.getFileName().toString();
+		final int dot = fileName.indexOf('.', 1);
+		final String number = String.format("-%05d", partNr);
+		if (dot < 0)
+			return path.resolveSibling(fileName + number);
+		return path.resolveSibling(fileName.substring(0, dot) + number + fileName.substring(dot));
+	}
+
+	/**
+	 * Download the data from the server and write it to new part files
+	 * in the root directory.  When the first part file already exists
+	 * the download request will send an error and NOT overwrite it.
+	 */
+	@Override
+	public void handleDownload(final MonetConnection.Download handle, final String name, final boolean textMode) throws IOException {
+		final Path path = resolveDownload(handle, name);
+		if (path == null) {
+			return;
+		}
+		final Path firstPart = partPath(path, 1);
+		if (Files.exists(firstPart)) {
+			handle.sendError("File already exists: " + firstPart.toString());
+			return;
+		}
+		final CompressionCodec codec = findCodec(name);
+		if (codec == null && compressionExtension(name) != null) {
+			handle.sendError("Requested file compression format " + compressionExtension(name) + " is not supported. Supported are: " + supportedExtensions() + ".");
+			return;
+		}
+		final OutputStream first = openPart(firstPart, codec);
+		if (first == null) {
+			handle.sendError("Requested file compression format " + codec.getExtension() + " can only be read, not written.");
+			return;
+		}
+		new Splitter(path, codec, textMode, first).run(handle.getStream());
+	}
+
+	/**
+	 * Creates a part file and wraps it in the compressor.
+	 *
+	 * @return the stream to write to, or null if the codec cannot compress
+	 */
+	private static OutputStream openPart(final Path part, final CompressionCodec codec) throws IOException {
+		final OutputStream out = Files.newOutputStream(part, StandardOpenOption.CREATE_NEW);
+		if (codec == null)
+			return out;
+		boolean ok = false;
+		try {
+			final OutputStream compressed = codec.compress(out);
+			ok = compressed != null;
+			return compressed;
+		} finally {
+			if (!ok) {
+				out.close();
+				Files.delete(part);
+			}
+		}
+	}
+
+	/**
+	 * Reads one download in chunks, cuts it into parts and hands the
+	 * chunks of each part to a PartWriter.  All chunk buffers come from
+	 * a fixed pool, which bounds the memory used and makes the download
+	 * wait when the writers fall behind.
+	 */
+	private final class Splitter {
+		private final Path path;
+		private final CompressionCodec codec;
+		private final boolean textMode;
+		/** Whether chunks must be cut on character boundaries for transcoding */
+		private final boolean transcode;
+		private final BlockingQueue<byte[]> buffers;
+		private final ExecutorService pool;
+		private final ArrayList<Future<Void>> written = new ArrayList<>();
+		private volatile IOException failure = null;
+		private OutputStream nextOut;
+		private int partNr = 0;
+		private PartWriter part = null;
+		private long partBytes = 0;
+		private long partRows = 0;
+		/** Set by findCut() when the current part is complete */
+		private boolean partDone = false;
+
+		Splitter(final Path path, final CompressionCodec codec, final boolean textMode, final OutputStream first) {
+			this.path = path;
+			this.codec = codec;
+			this.textMode = textMode;
+			this.transcode = textMode && !utf8Encoded();
+			this.nextOut = first;
+			final int nbuffers = threads * 4 + 2;
+			buffers = new ArrayBlockingQueue<>(nbuffers);
+			for (int i = 0; i < nbuffers; i++)
+				buffers.add(new byte[CHUNK_SIZE]);
+			pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread t = new Thread(r, "MonetDB download writer");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		void run(final InputStream in) throws IOException {
+			try {
+				byte[] buf = takeBuffer();
+				int len = fill(in, buf, 0);
+				while (len > 0) {
+					if (failure != null)
+						throw failure;
+					if (part == null)
+						startPart();
+					final int cut = findCut(buf, len);
+					if (cut == len) {
+						part.add(buf, len);
+						if (partDone)
+							endPart();
+						buf = takeBuffer();
+						len = fill(in, buf, 0);
+					} else {
+						// move the remainder to a fresh buffer and top it up
+						final byte[] next = takeBuffer();
+						System.arraycopy(buf, cut, next, 0, len - cut);
+						part.add(buf, cut);
+						if (partDone)
+							endPart();
+						buf = next;
+						len = fill(in, buf, len - cut);
+					}
+				}
+				buffers.offer(buf);
+				if (partNr == 0) {
+					// no data at all, still produce the (empty) first part
+					startPart();
+				}
+			} finally {
+				if (part != null)
+					endPart();
+				if (nextOut != null)
+					nextOut.close();
+				pool.shutdown();
+				awaitWriters();
+			}
+		}
+
+		/** Reads until buf is full or the end of the data is reached */
+		private int fill(final InputStream in, final byte[] buf, int len) throws IOException {
+			while (len < buf.length) {
+				final int nread = in.read(buf, len, buf.length - len);
+				if (nread < 0)
+					break;
+				len += nread;
+			}
+			return len;
+		}
+
+		/**
+		 * Returns how many bytes of buf belong to the current part, and
+		 * updates the part's byte and row counts accordingly.  Sets
+		 * partDone if the part ends after these bytes.
+		 */
+		private int findCut(final byte[] buf, final int len) {
+			if (!textMode) {
+				if (maxPartBytes > 0 && maxPartBytes - partBytes <= len) {
+					final int cut = (int) (maxPartBytes - partBytes);
+					partBytes = maxPartBytes;
+					partDone = true;
+					return cut;
+				}
+				partBytes += len;
+				return len;
+			}
+			// only scan for newlines where they can end the part
+			int i = 0;
+			if (maxPartRows == 0) {
+				i = maxPartBytes == 0 ? len : (int) Math.max(0, Math.min(len, maxPartBytes - partBytes - 1));
+			}
+			for (; i < len; i++) {
+				if (buf[i] == '\n') {
+					partRows++;
+					if ((maxPartRows > 0 && partRows >= maxPartRows) || (maxPartBytes > 0 && partBytes + i + 1 >= maxPartBytes)) {
+						partBytes += i + 1;
+						partDone = true;
+						return i + 1;
+					}
+				}
+			}
+			partBytes += len;
+			if (!transcode || len < buf.length)
+				return len;	// a buffer which is not full holds the last bytes
+			// do not split a multi-byte UTF-8 character over two chunks
+			int start = len;
+			while (start > 0 && len - start < 4 && (buf[start - 1] & 0xC0) == 0x80)
+				start--;
+			if (start > 0) {
+				final int lead = buf[start - 1] & 0xFF;
+				final int charLen = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+				if (len - (start - 1) < charLen) {
+					partBytes -= len - (start - 1);
+					return start - 1;
+				}
+			}
+			return len;
+		}
+
+		private void startPart() throws IOException {
+			partNr++;
+			OutputStream out = nextOut;
+			nextOut = null;
+			if (out == null) {
+				final Path p = partPath(path, partNr);
+				if (Files.exists(p))
+					throw new IOException("File already exists: " + p.toString());
+				out = openPart(p, codec);
+			}
+			part = new PartWriter(out);
+			partBytes = 0;
+			partRows = 0;
+			partDone = false;
+			written.add(pool.submit(part));
+		}
+
+		private void endPart() {
+			part.finish();
+			part = null;
+		}
+
+		private byte[] takeBuffer() throws IOException {
+			try {
+				return buffers.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for a download buffer");
+			}
+		}
+
+		/** Waits for all parts to be written and rethrows the first failure */
+		private void awaitWriters() throws IOException {
+			boolean interrupted = false;
+			for (Future<Void> f : written) {
+				while (true) {
+					try {
+						f.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					} catch (ExecutionException e) {
+						break;	// recorded in failure
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			if (failure != null)
+				throw failure;
+		}
+
+		/**
+		 * Writes the chunks of one part to its file, returning each
+		 * buffer to the pool once written.
+		 */
+		private final class PartWriter implements Callable<Void> {
+			private final LinkedBlockingQueue<ByteBuffer> chunks = new LinkedBlockingQueue<>();
+			private final ByteBuffer end = ByteBuffer.allocate(0);
+			private final OutputStream out;
+
+			PartWriter(final OutputStream out) {
+				this.out = out;
+			}
+
+			void add(final byte[] buf, final int len) {
+				chunks.add(ByteBuffer.wrap(buf, 0, len));
+			}
+
+			void finish() {
+				chunks.add(end);
+			}
+
+			@Override
+			public Void call() throws IOException, InterruptedException {
+				final CharsetDecoder decoder = transcode ? StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE) : null;
+				final CharBuffer chars = transcode ? CharBuffer.allocate(CHUNK_SIZE) : null;
+				final Writer writer = transcode ? new OutputStreamWriter(out, getEncoding()) : null;
+				boolean ok = false;
+				try {
+					while (true) {
+						final ByteBuffer chunk = chunks.take();
+						if (chunk == end)
+							break;
+						try {
+							if (failure == null) {
+								if (writer != null)
+									transcode(decoder, chunk, chars, writer);
+								else
+									out.write(chunk.array(), chunk.position(), chunk.remaining());
+							}
+						} finally {
+							buffers.offer(chunk.array());
+						}
+					}
+					if (writer != null)
+						writer.close();
+					else
+						out.close();
+					ok = true;
+				} catch (IOException | RuntimeException e) {
+					if (failure == null)
+						failure = e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+					throw e;
+				} finally {
+					if (!ok) {
+						// keep returning buffers so the download does not get stuck
+						ByteBuffer chunk;
+						while ((chunk = chunks.take()) != end)
+							buffers.offer(chunk.array());
+						try {
+							out.close();
+						} catch (IOException e) {
+							// already failing
+						}
+					}
+				}
+				return null;
+			}
+
+			/** Chunks always end on a character boundary, see findCut() */
+			private void transcode(final CharsetDecoder decoder, final ByteBuffer chunk, final CharBuffer chars, final Writer writer) throws IOException {
+				decoder.reset();
+				while (true) {
+					final CoderResult r = decoder.decode(chunk, chars, true);
+					writer.write(chars.array(), 0, chars.position());
+					chars.clear();
+					if (r.isUnderflow())
+						break;
+				}
+				decoder.flush(chars);
+				writer.write(chars.array(), 0, chars.position());
+				chars.clear();
+			}
+		}
+	}
+}
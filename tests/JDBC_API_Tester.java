@@ -10,6 +10,7 @@
  * Copyright 1997 - July 2008 CWI.
  */
 
+import java.io.ByteArrayInputStream;
 import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -19,6 +20,8 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 
 import org.monetdb.jdbc.MonetConnection;
+import org.monetdb.jdbc.MonetConnectionPoolDataSource;
+import org.monetdb.jdbc.MonetPreparedStatement;
 import org.monetdb.jdbc.types.INET;
 import org.monetdb.jdbc.types.URL;
 
@@ -92,6 +95,7 @@ public final class JDBC_API_Tester {
 		jt.Test_CisValid();
 		jt.Test_Clargequery();
 		jt.Test_Cmanycon(con_URL);
+		jt.Test_Cpooling(con_URL);
 		jt.Test_Creplysize();
 		jt.Test_Csavepoints();
 		jt.Test_Ctransaction();
@@ -103,6 +107,10 @@ public final class JDBC_API_Tester {
 		jt.Test_Int128();
 		jt.Test_Interval_Types();
 		jt.Test_PlanExplainTraceDebugCmds(skipMALoutput);
+		jt.Test_PSbatchinsert(con_URL);
+		jt.Test_PScache(con_URL);
+		jt.Test_PScolumns();
+		jt.Test_PSstreams();
 		jt.Test_PSgeneratedkeys();
 		jt.Test_PSgetObject();
 		jt.Test_PSlargebatchval();
@@ -120,12 +128,16 @@ public final class JDBC_API_Tester {
 		jt.Test_Rmetadata();
 		jt.Test_RfetchManyColumnsInfo();
 		jt.Test_Rpositioning();
+		jt.Test_Rprefetch(con_URL);
 		jt.Test_Rsqldata();
 		jt.Test_Rtimedate();
 		jt.Test_RSgetMetaData();
 		jt.Test_Sbatching();
+		jt.Test_SpipelinedBatch(con_URL);
 		jt.Test_SgeneratedKeys();
 		jt.Test_Smoreresults();
+		jt.Test_Spipelined();
+		jt.Test_Sasync();
 		jt.Test_Wrapper();
 		if (jt.isPostDec2023)
 			jt.Test_ClientInfo(con_URL);
@@ -403,6 +415,77 @@ public final class JDBC_API_Tester {
 			"51, 52, 53, 54, 55, 56, 57, 58, 59, 60, ");
 	}
 
+	private void Test_Cpooling(String arg0) {
+		sb.setLength(0);	// clear the output log buffer
+
+		final MonetConnectionPoolDataSource pool = new MonetConnectionPoolDataSource();
+		pool.setURL(arg0);
+		pool.setMaxIdle(2);
+		try {
+			final Connection c1 = pool.getConnection();
+			c1.setAutoCommit(false);
+			final Statement st = c1.createStatement();
+			st.execute("SET SCHEMA tmp");
+			sb.append("1. schema ").append(c1.getSchema()).append(", autocommit ").append(c1.getAutoCommit()).append("\n");
+			c1.close();
+			sb.append("2. closed ").append(c1.isClosed()).append(", statement closed ").append(st.isClosed()).append(", idle ").append(pool.getIdleCount()).append("\n");
+
+			final Connection c2 = pool.getConnection();
+			sb.append("3. reused, idle ").append(pool.getIdleCount()).append(", schema ").append(c2.getSchema()).append(", autocommit ").append(c2.getAutoCommit()).append(", active ").append(pool.getActiveCount()).append("\n");
+			final Connection c3 = pool.getConnection();
+			sb.append("4. new, idle ").append(pool.getIdleCount()).append(", active ").append(pool.getActiveCount()).append("\n");
+			final Statement st2 = c2.createStatement();
+			sb.append("5. statement connection is handle ").append(st2.getConnection() == c2)
+				.append(", metadata connection is handle ").append(c2.getMetaData().getConnection() == c2).append("\n");
+			final ResultSet rs2 = st2.executeQuery("SELECT 1");
+			final ResultSet mrs2 = c2.getMetaData().getTables(null, null, null, null);
+			sb.append("6. result set statement is wrapper ").append(rs2.getStatement() == st2)
+				.append(", metadata result set connection is handle ").append(mrs2.getStatement().getConnection() == c2).append("\n");
+			mrs2.close();
+			rs2.close();
+			st2.getConnection().close();
+			c3.close();
+			sb.append("7. idle ").append(pool.getIdleCount()).append(", active ").append(pool.getActiveCount()).append("\n");
+			try {
+				c2.createStatement();
+				sb.append("8. no error, how can that be?\n");
+			} catch (SQLException e) {
+				sb.append("8. ").append(e.getMessage()).append("\n");
+			}
+
+			// a connection whose physical connection escaped is not reused
+			final Connection c4 = pool.getConnection();
+			final MonetConnection m4 = c4.unwrap(MonetConnection.class);
+			c4.close();
+			sb.append("9. unwrapped connection closed ").append(m4.isClosed()).append(", idle ").append(pool.getIdleCount()).append(", active ").append(pool.getActiveCount()).append("\n");
+
+			// only the configured user is pooled
+			try {
+				pool.getConnection("someoneelse", "secret");
+				sb.append("10. no error, how can that be?\n");
+			} catch (SQLFeatureNotSupportedException e) {
+				sb.append("10. ").append(e.getSQLState()).append(", active ").append(pool.getActiveCount()).append("\n");
+			}
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+		pool.close();
+		sb.append("11. idle after close ").append(pool.getIdleCount()).append("\n");
+
+		compareExpectedOutput("Test_Cpooling",
+				"1. schema tmp, autocommit false\n" +
+				"2. closed true, statement closed true, idle 1\n" +
+				"3. reused, idle 0, schema sys, autocommit true, active 1\n" +
+				"4. new, idle 0, active 2\n" +
+				"5. statement connection is handle true, metadata connection is handle true\n" +
+				"6. result set statement is wrapper true, metadata result set connection is handle true\n" +
+				"7. idle 2, active 0\n" +
+				"8. Connection is closed\n" +
+				"9. unwrapped connection closed true, idle 1, active 0\n" +
+				"10. 0A000, active 0\n" +
+				"11. idle after close 0\n");
+	}
+
 	private void Test_Creplysize() {
 		sb.setLength(0);	// clear the output log buffer
 
@@ -757,15 +840,26 @@ public final class JDBC_API_Tester {
 			"5  autocommit  false  true  initial value of autocommit\n" +
 			"6  schema  false    initial schema\n" +
 			"7  timezone  false  <tz>  client time zone as minutes east of UTC\n" +
-			"8  replysize  false  250  rows beyond this limit are retrieved on demand, <1 means unlimited\n" +
-			"9  debug  false  false  enable tracing of socket communication for debugging\n" +
-			"10  logfile  false    when debug is enabled its output will be written to this logfile\n" +
-			"11  so_timeout  false  0  abort if network I/O does not complete in this many milliseconds, 0 means no timeout\n" +
-			"12  treat_clob_as_varchar  false  true  map CLOB/TEXT data to type VARCHAR instead of type CLOB\n" +
-			"13  treat_blob_as_binary  false  true  map BLOB data to type BINARY instead of type BLOB\n" +
-			"14  client_info  false  true  whether to send ClientInfo when connecting\n" +
-			"15  client_application  false    application name to send in ClientInfo\n" +
-			"16  client_remark  false    any client remark to send in ClientInfo\n" +
+			"8  binary  false  on  whether to use binary result set format (number or bool)\n" +
+			"9  replysize  false  250  rows beyond this limit are retrieved on demand, <1 means unlimited\n" +
+			"10  fetch_budget  false  0  grow result set blocks up to this many bytes, 0 means grow once tenfold\n" +
+			"11  debug  false  false  enable tracing of socket communication for debugging\n" +
+			"12  logfile  false    when debug is enabled its output will be written to this logfile\n" +
+			"13  so_timeout  false  0  abort if network I/O does not complete in this many milliseconds, 0 means no timeout\n" +
+			"14  nio  false  false  use a SocketChannel with direct buffers for the connection, not used with TLS\n" +
+			"15  prefetch_blocks  false  0  number of result set blocks to request ahead for forward-only result sets, 0 means no prefetching\n" +
+			"16  prefetch_threshold  false  50  percentage of a result set block to be read before the next blocks are requested\n" +
+			"17  max_cached_blocks  false  0  maximum number of result set blocks a scrollable result set keeps in memory, 0 means no limit\n" +
+			"18  spill_blocks  false  false  keep blocks evicted because of max_cached_blocks in a temporary file instead of fetching them again\n" +
+			"19  prepared_cache_size  false  0  number of server side prepared statements each connection keeps for reuse by prepareStatement() with the same SQL, 0 means no caching\n" +
+			"20  validation_window  false  0  isValid() does not contact the server if it received data in the last this many milliseconds, 0 means always check\n" +
+			"21  batch_pipeline  false  0  number of executeBatch() chunks sent to the server before the replies to the first one are read, 0 means one at a time\n" +
+			"22  batch_insert_rows  false  0  number of rows a batch of a prepared single-row INSERT sends as one multi-row INSERT, 0 means one exec per row\n" +
+			"23  treat_clob_as_varchar  false  true  map CLOB/TEXT data to type VARCHAR instead of type CLOB\n" +
+			"24  treat_blob_as_binary  false  true  map BLOB data to type BINARY instead of type BLOB\n" +
+			"25  client_info  false  true  whether to send ClientInfo when connecting\n" +
+			"26  client_application  false    application name to send in ClientInfo\n" +
+			"27  client_remark  false    any client remark to send in ClientInfo\n" +
 			"getPropertyInfo of jdbc:monetdbs:\n" +
 			"0  user  true    user name to authenticate as\n" +
 			"1  password  true    password to authenticate with\n" +
@@ -780,15 +874,26 @@ public final class JDBC_API_Tester {
 			"10  autocommit  false  true  initial value of autocommit\n" +
 			"11  schema  false    initial schema\n" +
 			"12  timezone  false  <tz>  client time zone as minutes east of UTC\n" +
-			"13  replysize  false  250  rows beyond this limit are retrieved on demand, <1 means unlimited\n" +
-			"14  debug  false  false  enable tracing of socket communication for debugging\n" +
-			"15  logfile  false    when debug is enabled its output will be written to this logfile\n" +
-			"16  so_timeout  false  0  abort if network I/O does not complete in this many milliseconds, 0 means no timeout\n" +
-			"17  treat_clob_as_varchar  false  true  map CLOB/TEXT data to type VARCHAR instead of type CLOB\n" +
-			"18  treat_blob_as_binary  false  true  map BLOB data to type BINARY instead of type BLOB\n" +
-			"19  client_info  false  true  whether to send ClientInfo when connecting\n" +
-			"20  client_application  false    application name to send in ClientInfo\n" +
-			"21  client_remark  false    any client remark to send in ClientInfo\n");
+			"13  binary  false  on  whether to use binary result set format (number or bool)\n" +
+			"14  replysize  false  250  rows beyond this limit are retrieved on demand, <1 means unlimited\n" +
+			"15  fetch_budget  false  0  grow result set blocks up to this many bytes, 0 means grow once tenfold\n" +
+			"16  debug  false  false  enable tracing of socket communication for debugging\n" +
+			"17  logfile  false    when debug is enabled its output will be written to this logfile\n" +
+			"18  so_timeout  false  0  abort if network I/O does not complete in this many milliseconds, 0 means no timeout\n" +
+			"19  nio  false  false  use a SocketChannel with direct buffers for the connection, not used with TLS\n" +
+			"20  prefetch_blocks  false  0  number of result set blocks to request ahead for forward-only result sets, 0 means no prefetching\n" +
+			"21  prefetch_threshold  false  50  percentage of a result set block to be read before the next blocks are requested\n" +
+			"22  max_cached_blocks  false  0  maximum number of result set blocks a scrollable result set keeps in memory, 0 means no limit\n" +
+			"23  spill_blocks  false  false  keep blocks evicted because of max_cached_blocks in a temporary file instead of fetching them again\n" +
+			"24  prepared_cache_size  false  0  number of server side prepared statements each connection keeps for reuse by prepareStatement() with the same SQL, 0 means no caching\n" +
+			"25  validation_window  false  0  isValid() does not contact the server if it received data in the last this many milliseconds, 0 means always check\n" +
+			"26  batch_pipeline  false  0  number of executeBatch() chunks sent to the server before the replies to the first one are read, 0 means one at a time\n" +
+			"27  batch_insert_rows  false  0  number of rows a batch of a prepared single-row INSERT sends as one multi-row INSERT, 0 means one exec per row\n" +
+			"28  treat_clob_as_varchar  false  true  map CLOB/TEXT data to type VARCHAR instead of type CLOB\n" +
+			"29  treat_blob_as_binary  false  true  map BLOB data to type BINARY instead of type BLOB\n" +
+			"30  client_info  false  true  whether to send ClientInfo when connecting\n" +
+			"31  client_application  false    application name to send in ClientInfo\n" +
+			"32  client_remark  false    any client remark to send in ClientInfo\n");
 	}
 
 	private void listDriverProperties(String url) throws SQLException {
@@ -2152,6 +2257,296 @@ public final class JDBC_API_Tester {
 		closeStmtResSet(stmt, rs);
 	}
 
+	private void Test_PScache(String arg0) {
+		sb.setLength(0);	// clear the output log buffer
+
+		final Properties props = new Properties();
+		props.setProperty("prepared_cache_size", "1");
+		Connection conn = null;
+		Statement stmt = null;
+		try {
+			conn = DriverManager.getConnection(arg0, props);
+			stmt = conn.createStatement();
+			final String countPrepared = "SELECT count(*) FROM sys.prepared_statements";
+
+			PreparedStatement ps1 = conn.prepareStatement("SELECT ? + 1");
+			PreparedStatement ps2 = conn.prepareStatement("SELECT ? + 1");
+			sb.append("1. prepared on server: ").append(countRows(stmt, countPrepared)).append("\n");
+			ps2.setInt(1, 41);
+			ResultSet rs = ps2.executeQuery();
+			rs.next();
+			sb.append("2. result: ").append(rs.getInt(1)).append("\n");
+			rs.close();
+			ps1.close();
+			ps2.close();
+			sb.append("3. prepared on server after close: ").append(countRows(stmt, countPrepared)).append("\n");
+
+			PreparedStatement ps3 = conn.prepareStatement("SELECT ? * 2");
+			sb.append("4. prepared on server after eviction: ").append(countRows(stmt, countPrepared)).append("\n");
+			ps3.close();
+
+			conn.setSchema("sys");
+			sb.append("5. prepared on server after setSchema: ").append(countRows(stmt, countPrepared)).append("\n");
+
+			// a schema change in SQL also makes the cached statements stale
+			PreparedStatement ps4 = conn.prepareStatement("SELECT ? + 1");
+			stmt.execute("SET SCHEMA sys");
+			PreparedStatement ps5 = conn.prepareStatement("SELECT ? + 1");
+			sb.append("6. prepared on server after SET SCHEMA: ").append(countRows(stmt, countPrepared)).append("\n");
+			ps4.close();
+			ps5.close();
+			sb.append("7. prepared on server after close: ").append(countRows(stmt, countPrepared)).append("\n");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, null);
+		closeConx(conn);
+
+		compareExpectedOutput("Test_PScache",
+			"1. prepared on server: 1\n" +
+			"2. result: 42\n" +
+			"3. prepared on server after close: 1\n" +
+			"4. prepared on server after eviction: 1\n" +
+			"5. prepared on server after setSchema: 0\n" +
+			"6. prepared on server after SET SCHEMA: 2\n" +
+			"7. prepared on server after close: 1\n");
+	}
+
+	private void Test_PSbatchinsert(String arg0) {
+		sb.setLength(0);	// clear the output log buffer
+
+		// the same results with one exec per row and with multi-row INSERTs
+		for (String rows : new String[] { "0", "100" }) {
+			final Properties props = new Properties();
+			props.setProperty("batch_insert_rows", rows);
+			Connection conn = null;
+			Statement stmt = null;
+			PreparedStatement pstmt = null;
+			ResultSet rs = null;
+			try {
+				conn = DriverManager.getConnection(arg0, props);
+				stmt = conn.createStatement();
+				stmt.executeUpdate("CREATE TABLE Test_PSbatchinsert (id INT PRIMARY KEY, s VARCHAR(10))");
+				pstmt = conn.prepareStatement("INSERT INTO Test_PSbatchinsert (id, s) VALUES (?, ?)");
+				// 250 rows, three INSERTs of at most 100 rows, the last row repeats id 7
+				for (int i = 0; i < 250; i++) {
+					pstmt.setInt(1, i == 249 ? 7 : i);
+					pstmt.setString(2, "row" + i);
+					pstmt.addBatch();
+				}
+				int[] cnts;
+				try {
+					cnts = pstmt.executeBatch();
+					sb.append("executeBatch should have failed\n");
+				} catch (BatchUpdateException e) {
+					cnts = e.getUpdateCounts();
+				}
+				int ok = 0;
+				final StringBuilder failed = new StringBuilder();
+				for (int i = 0; i < cnts.length; i++) {
+					if (cnts[i] == 1)
+						ok++;
+					else
+						failed.append(' ').append(i).append('=').append(cnts[i]);
+				}
+				sb.append(rows).append(". update counts: ").append(cnts.length).append(", 1: ").append(ok).append(", other:").append(failed).append("\n");
+
+				rs = stmt.executeQuery("SELECT COUNT(*), SUM(id) FROM Test_PSbatchinsert");
+				rs.next();
+				sb.append(rows).append(". rows in table: ").append(rs.getInt(1)).append(", sum: ").append(rs.getLong(2)).append("\n");
+				rs.close();
+				stmt.executeUpdate("DROP TABLE Test_PSbatchinsert");
+			} catch (SQLException e) {
+				sb.append("FAILED: ").append(e.getMessage()).append("\n");
+			}
+
+			closeStmtResSet(pstmt, null);
+			closeStmtResSet(stmt, rs);
+			closeConx(conn);
+		}
+
+		compareExpectedOutput("Test_PSbatchinsert",
+			"0. update counts: 250, 1: 249, other: 249=-3\n" +
+			"0. rows in table: 249, sum: 30876\n" +
+			"100. update counts: 250, 1: 249, other: 249=-3\n" +
+			"100. rows in table: 249, sum: 30876\n");
+	}
+
+	private void Test_PScolumns() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_PScolumns (i INT, l BIGINT, d DOUBLE, s VARCHAR(20), b BLOB)");
+
+			pstmt = con.prepareStatement("INSERT INTO Test_PScolumns VALUES (?, ?, ?, ?, ?)");
+			MonetPreparedStatement mps = pstmt.unwrap(MonetPreparedStatement.class);
+			// one row added the usual way, executed before the columns
+			pstmt.setInt(1, 0);
+			pstmt.setLong(2, 0L);
+			pstmt.setDouble(3, 0.5);
+			pstmt.setString(4, "row");
+			pstmt.setBytes(5, new byte[] { 0 });
+			pstmt.addBatch();
+			mps.setColumn(1, new int[] { 1, 2, 3 }, new boolean[] { false, true, false });
+			mps.setColumn(2, new long[] { 10000000000L, 20000000000L, 30000000000L }, null);
+			mps.setColumn(3, new double[] { 1.5, 2.5, 3.5 }, new boolean[] { false, false, true });
+			mps.setColumn(4, new String[] { "a'b", null, "c\\d" });
+			mps.setColumn(5, new byte[][] { { 1, 2 }, null, { (byte) 0xFF } });
+			try {
+				mps.setColumn(1, new int[] { 1, 2 }, null);
+				sb.append("setColumn with 2 rows should have failed\n");
+			} catch (SQLException e) {
+				sb.append("1. ").append(e.getMessage()).append("\n");
+			}
+			int[] counts = pstmt.executeBatch();
+			sb.append("2. update counts:");
+			for (int c : counts)
+				sb.append(' ').append(c);
+			sb.append("\n");
+			pstmt.close();
+
+			// not an INSERT, so executed per row, with a value set for all rows
+			pstmt = con.prepareStatement("UPDATE Test_PScolumns SET s = ? WHERE l = ?");
+			mps = pstmt.unwrap(MonetPreparedStatement.class);
+			pstmt.setString(1, "updated");
+			mps.setColumn(2, new long[] { 10000000000L, 40000000000L }, null);
+			counts = pstmt.executeBatch();
+			sb.append("3. update counts:");
+			for (int c : counts)
+				sb.append(' ').append(c);
+			sb.append("\n");
+
+			rs = stmt.executeQuery("SELECT i, l, d, s, b FROM Test_PScolumns ORDER BY l");
+			while (rs.next()) {
+				sb.append(rs.getString(1)).append(", ").append(rs.getString(2)).append(", ")
+					.append(rs.getString(3)).append(", ").append(rs.getString(4)).append(", ")
+					.append(rs.getString(5)).append("\n");
+			}
+			rs.close();
+			stmt.executeUpdate("DROP TABLE Test_PScolumns");
+
+			// a failing row added with addBatch() does not drop the rows of the columns
+			stmt.executeUpdate("CREATE TABLE Test_PScolumns (s VARCHAR(3))");
+			pstmt.close();
+			pstmt = con.prepareStatement("INSERT INTO Test_PScolumns VALUES (?)");
+			mps = pstmt.unwrap(MonetPreparedStatement.class);
+			pstmt.setString(1, "too long");
+			pstmt.addBatch();
+			mps.setColumn(1, new String[] { "a", "b" });
+			try {
+				pstmt.executeBatch();
+				sb.append("4. executeBatch should have failed\n");
+			} catch (BatchUpdateException e) {
+				sb.append("4. update counts:");
+				for (int c : e.getUpdateCounts())
+					sb.append(' ').append(c);
+				sb.append("\n");
+			}
+			sb.append("5. rows inserted: ").append(countRows(stmt, "SELECT COUNT(*) FROM Test_PScolumns")).append("\n");
+			stmt.executeUpdate("DROP TABLE Test_PScolumns");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+			while ((e = e.getNextException()) != null)
+				sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(pstmt, rs);
+		closeStmtResSet(stmt, null);
+
+		compareExpectedOutput("Test_PScolumns",
+			"1. Column for parameter 1 has 2 rows, expected 3\n" +
+			"2. update counts: 1 1 1 1\n" +
+			"3. update counts: 1 0\n" +
+			"0, 0, 0.5, row, 00\n" +
+			"1, 10000000000, 1.5, updated, 0102\n" +
+			"null, 20000000000, 2.5, null, null\n" +
+			"3, 30000000000, null, c\\d, FF\n" +
+			"4. update counts: -3 1 1\n" +
+			"5. rows inserted: 2\n");
+	}
+
+	private void Test_PSstreams() {
+		sb.setLength(0);	// clear the output log buffer
+
+		StringBuilder large = new StringBuilder(100000);
+		for (int i = 0; i < 10000; i++)
+			large.append("it's \\ 10");
+		byte[] bytes = new byte[50000];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) i;
+
+		Statement stmt = null;
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_PSstreams (i INT, s CLOB, b BLOB)");
+
+			pstmt = con.prepareStatement("INSERT INTO Test_PSstreams VALUES (?, ?, ?)");
+			pstmt.setInt(1, 1);
+			pstmt.setCharacterStream(2, new StringReader(large.toString()));
+			pstmt.setBinaryStream(3, new ByteArrayInputStream(bytes));
+			sb.append("1. inserted ").append(pstmt.executeUpdate()).append("\n");
+
+			pstmt.setInt(1, 2);
+			pstmt.setClob(2, new StringReader("abcdef"), 3L);
+			pstmt.setBlob(3, new ByteArrayInputStream(bytes), 2L);
+			sb.append("2. inserted ").append(pstmt.executeUpdate()).append("\n");
+
+			// the streams have been consumed
+			try {
+				pstmt.executeUpdate();
+				sb.append("3. execute without streams should have failed\n");
+			} catch (SQLException e) {
+				sb.append("3. ").append(e.getMessage()).append("\n");
+			}
+
+			pstmt.setInt(1, 3);
+			pstmt.setString(2, "short");
+			pstmt.setBinaryStream(3, new ByteArrayInputStream(bytes, 0, 4), 10L);
+			try {
+				pstmt.executeUpdate();
+				sb.append("4. execute with a short stream should have failed\n");
+			} catch (SQLException e) {
+				sb.append("4. ").append(e.getSQLState()).append(" ").append(e.getMessage()).append("\n");
+			}
+			pstmt.close();
+
+			rs = stmt.executeQuery("SELECT i, length(s), s = '" + large.toString().replace("\\", "\\\\").replace("'", "\\'")
+				+ "', length(b) FROM Test_PSstreams WHERE i = 1");
+			while (rs.next())
+				sb.append(rs.getInt(1)).append(", ").append(rs.getInt(2)).append(", ")
+					.append(rs.getBoolean(3)).append(", ").append(rs.getInt(4)).append("\n");
+			rs.close();
+			rs = stmt.executeQuery("SELECT i, s, b FROM Test_PSstreams WHERE i > 1 ORDER BY i");
+			while (rs.next())
+				sb.append(rs.getInt(1)).append(", ").append(rs.getString(2)).append(", ")
+					.append(rs.getString(3)).append("\n");
+			rs.close();
+			stmt.executeUpdate("DROP TABLE Test_PSstreams");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+			while ((e = e.getNextException()) != null)
+				sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(pstmt, rs);
+		closeStmtResSet(stmt, null);
+
+		compareExpectedOutput("Test_PSstreams",
+			"1. inserted 1\n" +
+			"2. inserted 1\n" +
+			"3. Cannot execute, parameter 2 is missing.\n" +
+			"4. M1M25 failed to read from stream: Stream ended unexpectedly at position 4 out of 10\n" +
+			"1, 100000, true, 50000\n" +
+			"2, abc, 0001\n");
+	}
+
 	private void Test_PSgeneratedkeys() {
 		sb.setLength(0);	// clear the output log buffer
 
@@ -4371,6 +4766,52 @@ public final class JDBC_API_Tester {
 			"12. true	true\n");
 	}
 
+	private void Test_Rprefetch(String arg0) {
+		sb.setLength(0);	// clear the output log buffer
+
+		final Properties props = new Properties();
+		props.setProperty("prefetch_blocks", "3");
+		Connection conn = null;
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = DriverManager.getConnection(arg0, props);
+			stmt = conn.createStatement();
+			// blocks of 10 rows, so many more blocks than are requested ahead
+			stmt.setFetchSize(10);
+			rs = stmt.executeQuery("SELECT value FROM sys.generate_series(0, 1000)");
+			long sum = 0;
+			int rows = 0;
+			while (rs.next()) {
+				sum += rs.getInt(1);
+				rows++;
+			}
+			rs.close();
+			sb.append("1. rows: ").append(rows).append(", sum: ").append(sum).append("\n");
+
+			// stop halfway, the outstanding blocks must not disturb the next query
+			rs = stmt.executeQuery("SELECT value FROM sys.generate_series(0, 1000)");
+			for (int i = 0; i < 55; i++)
+				rs.next();
+			sb.append("2. value: ").append(rs.getInt(1)).append("\n");
+			rs.close();
+
+			rs = stmt.executeQuery("SELECT 42");
+			rs.next();
+			sb.append("3. next query: ").append(rs.getInt(1)).append("\n");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+		closeConx(conn);
+
+		compareExpectedOutput("Test_Rprefetch",
+			"1. rows: 1000, sum: 499500\n" +
+			"2. value: 54\n" +
+			"3. next query: 42\n");
+	}
+
 	private void Test_Rsqldata() {
 		sb.setLength(0);	// clear the output log buffer
 
@@ -4822,6 +5263,60 @@ public final class JDBC_API_Tester {
 			"0. true	true\n");
 	}
 
+	private void Test_SpipelinedBatch(String arg0) {
+		sb.setLength(0);	// clear the output log buffer
+
+		final Properties props = new Properties();
+		props.setProperty("batch_pipeline", "3");
+		Connection conn = null;
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = DriverManager.getConnection(arg0, props);
+			stmt = conn.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_SpipelinedBatch ( id int )");
+
+			// many chunks, with a failing statement in one of the first ones
+			for (int i = 1; i <= 3000; i++) {
+				stmt.addBatch("INSERT INTO Test_SpipelinedBatch VALUES (" + i + ")");
+				if (i == 500)
+					stmt.addBatch("INSERT INTO Test_SpipelinedBatch_missing VALUES (" + i + ")");
+			}
+			long[] cnts;
+			try {
+				cnts = stmt.executeLargeBatch();
+				sb.append("executeLargeBatch should have failed\n");
+			} catch (BatchUpdateException e) {
+				cnts = e.getLargeUpdateCounts();
+			}
+			sb.append("1. update counts: ").append(cnts.length).append("\n");
+			sb.append("2. failing statement: ").append(cnts[500] == Statement.EXECUTE_FAILED).append("\n");
+			boolean ok = true;
+			for (int i = 2000; i < cnts.length; i++)
+				ok &= cnts[i] == 1;
+			sb.append("3. later update counts all 1: ").append(ok).append("\n");
+
+			rs = stmt.executeQuery("SELECT COUNT(*) FROM Test_SpipelinedBatch WHERE id >= 2000");
+			rs.next();
+			sb.append("4. later rows inserted: ").append(rs.getInt(1)).append("\n");
+			rs.close();
+			stmt.executeUpdate("DROP TABLE Test_SpipelinedBatch");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+			while ((e = e.getNextException()) != null)
+				sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+		closeConx(conn);
+
+		compareExpectedOutput("Test_SpipelinedBatch",
+			"1. update counts: 3001\n" +
+			"2. failing statement: true\n" +
+			"3. later update counts all 1: true\n" +
+			"4. later rows inserted: 1001\n");
+	}
+
 	private void Test_SgeneratedKeys() {
 		sb.setLength(0);	// clear the output log buffer
 
@@ -4905,6 +5400,114 @@ public final class JDBC_API_Tester {
 				"4. even more results?... nope :)\n");
 	}
 
+	private void Test_Spipelined() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			final MonetConnection mcon = con.unwrap(MonetConnection.class);
+			final java.util.concurrent.Future<Statement> f1 = mcon.executePipelined("SELECT 1");
+			final java.util.concurrent.Future<Statement> f2 = mcon.executePipelined("SELECT * FROM pipelined_doesnotexist");
+			final java.util.concurrent.Future<Statement> f3 = mcon.executePipelined("SELECT 3");
+			final java.util.concurrent.Future<Statement> f4 = mcon.executePipelined("SELECT 4");
+
+			// reads the replies of f1 and f2 as well
+			Statement st = f3.get();
+			rs = st.getResultSet();
+			sb.append("3. ").append(rs.next()).append(" ").append(rs.getInt(1)).append("\n");
+			st.close();
+
+			st = f1.get();
+			rs = st.getResultSet();
+			sb.append("1. ").append(rs.next()).append(" ").append(rs.getInt(1)).append("\n");
+			st.close();
+
+			try {
+				f2.get();
+				sb.append("2. no error, how can that be?\n");
+			} catch (java.util.concurrent.ExecutionException e) {
+				sb.append("2. ").append(((SQLException) e.getCause()).getSQLState()).append("\n");
+			}
+
+			// reads the reply of f4 before executing the query
+			stmt = con.createStatement();
+			rs = stmt.executeQuery("SELECT 5");
+			sb.append("5. ").append(rs.next()).append(" ").append(rs.getInt(1)).append("\n");
+			sb.append("4. done? ").append(f4.isDone()).append("\n");
+			st = f4.get();
+			sb.append("4. ").append(st.getResultSet().next()).append(" ").append(st.getResultSet().getInt(1)).append("\n");
+			st.close();
+
+			// a different reply size is set by a command pipelined ahead of the query
+			rs.close();
+			stmt.setFetchSize(7);
+			rs = stmt.executeQuery("SELECT 6");
+			rs.close();
+			final java.util.concurrent.Future<Statement> f7 = mcon.executePipelined("SELECT 7");
+			final java.util.concurrent.Future<Statement> f8 = mcon.executePipelined("SELECT 8");
+			sb.append("7. done? ").append(f7.isDone()).append("\n");
+			st = f8.get();
+			sb.append("8. ").append(st.getResultSet().next()).append(" ").append(st.getResultSet().getInt(1)).append("\n");
+			st.close();
+			st = f7.get();
+			sb.append("7. ").append(st.getResultSet().next()).append(" ").append(st.getResultSet().getInt(1)).append("\n");
+			st.close();
+		} catch (Exception e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+
+		compareExpectedOutput("Test_Spipelined",
+				"3. true 3\n" +
+				"1. true 1\n" +
+				"2. 42S02\n" +
+				"5. true 5\n" +
+				"4. done? true\n" +
+				"4. true 4\n" +
+				"7. done? false\n" +
+				"8. true 8\n" +
+				"7. true 7\n");
+	}
+
+	private void Test_Sasync() {
+		sb.setLength(0);	// clear the output log buffer
+
+		ResultSet rs = null;
+		try {
+			final MonetConnection mcon = con.unwrap(MonetConnection.class);
+			final java.util.concurrent.CompletableFuture<Long> upd = mcon.executeUpdateAsync("CREATE TABLE async_tbl (i int)");
+			final java.util.concurrent.CompletableFuture<Long> ins = mcon.executeUpdateAsync("INSERT INTO async_tbl VALUES (1), (2), (3)");
+			final java.util.concurrent.CompletableFuture<ResultSet> sel = mcon.executeQueryAsync("SELECT sum(i) FROM async_tbl");
+			final java.util.concurrent.CompletableFuture<ResultSet> err = mcon.executeQueryAsync("DROP TABLE async_tbl");
+
+			sb.append("1. ").append(upd.get()).append("\n");
+			sb.append("2. ").append(ins.get()).append("\n");
+			rs = sel.get();
+			sb.append("3. ").append(rs.next()).append(" ").append(rs.getLong(1)).append("\n");
+			rs.close();
+			sb.append("3. statement closed? ").append(rs.getStatement().isClosed()).append("\n");
+			try {
+				err.get();
+				sb.append("4. no error, how can that be?\n");
+			} catch (java.util.concurrent.ExecutionException e) {
+				sb.append("4. ").append(e.getCause().getMessage()).append("\n");
+			}
+		} catch (Exception e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(null, rs);
+
+		compareExpectedOutput("Test_Sasync",
+				"1. 0\n" +
+				"2. 3\n" +
+				"3. true 6\n" +
+				"3. statement closed? true\n" +
+				"4. Query did not produce a result set\n");
+	}
+
 	private void Test_Wrapper() {
 		sb.setLength(0);	// clear the output log buffer
 
@@ -7512,6 +8115,12 @@ public final class JDBC_API_Tester {
 		}
 	}
 
+	private int countRows(Statement st, String query) throws SQLException {
+		try (ResultSet rs = st.executeQuery(query)) {
+			return rs.next() ? rs.getInt(1) : -1;
+		}
+	}
+
 	private void closeStmtResSet(Statement st, ResultSet rs) {
 		if (rs != null) {
 			try {
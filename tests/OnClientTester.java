@@ -14,6 +14,8 @@ import org.monetdb.jdbc.MonetConnection;
 import org.monetdb.jdbc.MonetConnection.UploadHandler;
 import org.monetdb.jdbc.MonetConnection.DownloadHandler;
 import org.monetdb.util.FileTransferHandler;
+import org.monetdb.util.ParallelLoader;
+import org.monetdb.util.PartitionedDownloadHandler;
 
 import java.io.*;
 import java.lang.Character.UnicodeBlock;
@@ -189,6 +191,10 @@ public final class OnClientTester {
 				test_FileTransferHandlerUploadCompressedSkip();
 			if (isSelected("FileTransferHandlerDownloadRefused"))
 				test_FileTransferHandlerDownloadRefused();
+			if (isSelected("ParallelLoader"))
+				test_ParallelLoader();
+			if (isSelected("PartitionedDownload"))
+				test_PartitionedDownload();
 		} catch (Failure e) {
 			failures++;
 			System.err.println();
@@ -958,6 +964,46 @@ public final class OnClientTester {
 		exitTest();
 	}
 
+	private void test_PartitionedDownload() throws SQLException, Failure, IOException {
+		initTest("test_PartitionedDownload");
+		prepare();
+		update("INSERT INTO foo SELECT value, 'item' || value FROM sys.generate_series(0, 2500)");
+		Path d = getTmpDir(currentTestName);
+		PartitionedDownloadHandler handler = new PartitionedDownloadHandler(d, StandardCharsets.UTF_8);
+		handler.setMaxPartRows(1000);
+		conn.setDownloadHandler(handler);
+		update("COPY SELECT * FROM foo ORDER BY i INTO 'data.txt' ON CLIENT");
+		assertEq("part 1 lines", 1000, Files.readAllLines(d.resolve("data-00001.txt"), StandardCharsets.UTF_8).size());
+		assertEq("part 2 lines", 1000, Files.readAllLines(d.resolve("data-00002.txt"), StandardCharsets.UTF_8).size());
+		List<String> lines = Files.readAllLines(d.resolve("data-00003.txt"), StandardCharsets.UTF_8);
+		assertEq("part 3 lines", 500, lines.size());
+		assertEq("last line", "2499|\"item2499\"", lines.get(499));
+		assertEq("part 4 exists", false, Files.exists(d.resolve("data-00004.txt")));
+		exitTest();
+	}
+
+	private void test_ParallelLoader() throws SQLException, Failure, IOException {
+		initTest("test_ParallelLoader");
+		prepare();
+		Path d = getTmpDir(currentTestName);
+		Path f = d.resolve("data.txt");
+		PrintStream ps = new PrintStream(Files.newOutputStream(f, CREATE_NEW), false, "UTF-8");
+		ps.println("i|t");
+		int expectedSum = 0;
+		for (int i = 1; i <= 10_000; i++) {
+			ps.println(i + "|item" + i);
+			expectedSum += i;
+		}
+		ps.close();
+		ParallelLoader loader = new ParallelLoader(jdbcUrl, null, 4);
+		loader.setSkipLines(1);
+		long rows = loader.load(f, "foo");
+		assertEq("rows loaded", 10_000L, rows);
+		assertQueryInt("SELECT SUM(i) FROM foo", expectedSum);
+		assertQueryInt("SELECT COUNT(*) FROM sys.tables WHERE name LIKE 'parallel_load_%'", 0);
+		exitTest();
+	}
+
 
 	/* utility methods */
 	private void say(String message) throws Failure {